@@ -0,0 +1,264 @@
+package benchmark;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import com.sun.tools.attach.VirtualMachine;
+
+/**
+ * Prova di carico con molte sessioni inattive contemporanee. Avvia il server
+ * in una JVM figlia su una copia di server/resources, con executor e modalita'
+ * scelti e senza limite di sessioni, apre le connessioni e le lascia inattive,
+ * poi legge dal server via JMX i thread di piattaforma (i thread virtuali non
+ * sono contati) e l'heap occupato dopo una garbage collection. Un campione di
+ * connessioni invia una richiesta per verificare che le sessioni siano
+ * servite.
+ *
+ * Il server usa la stessa JVM del driver: i thread virtuali richiedono di
+ * eseguirlo con Java 21 o successivo. Ogni sessione occupa un descrittore di
+ * file nel driver e uno nel server (ulimit -n).
+ *
+ * Uso, dalla radice del repository: java -cp benchmark/target/benchmarks.jar
+ * benchmark.CaricoSessioni [sessioni] [executor] [modalitaServer]
+ */
+public class CaricoSessioni {
+
+	// attesa massima dell'avvio del server e delle sessioni, in millisecondi
+	private static final long attesaMassima = 60000;
+
+	// una connessione ogni tante invia una richiesta di verifica
+	private static final int passoVerifica = 1000;
+
+	public static void main(String[] args) throws Exception {
+		int sessioni = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		String executor = args.length > 1 ? args[1] : "virtual";
+		String modalita = args.length > 2 ? args[2] : "thread";
+
+		Path lavoro = Paths.get("benchmark/target/carico");
+		int porta = preparaRisorse(lavoro, executor, modalita, sessioni);
+
+		Process server = avviaServer(lavoro);
+		List<Socket> connessioni = new ArrayList<>(sessioni);
+		try (JMXConnector jmx = collega(server)) {
+			MBeanServerConnection mbean = jmx.getMBeanServerConnection();
+			ThreadMXBean thread = ManagementFactory.newPlatformMXBeanProxy(mbean,
+					ManagementFactory.THREAD_MXBEAN_NAME, ThreadMXBean.class);
+			MemoryMXBean memoria = ManagementFactory.newPlatformMXBeanProxy(mbean,
+					ManagementFactory.MEMORY_MXBEAN_NAME, MemoryMXBean.class);
+
+			attendiServer(porta);
+			memoria.gc();
+			int threadIniziali = thread.getThreadCount();
+			long heapIniziale = memoria.getHeapMemoryUsage().getUsed();
+			thread.resetPeakThreadCount();
+
+			// connessioni aperte e lasciate inattive
+			long inizio = System.nanoTime();
+			for (int i = 0; i < sessioni; i++) {
+				Socket socket = new Socket();
+				socket.connect(new InetSocketAddress("localhost", porta), (int) attesaMassima);
+				connessioni.add(socket);
+			}
+			long apertura = (System.nanoTime() - inizio) / 1000000;
+
+			// il campione verifica anche che il server abbia accettato tutte le
+			// connessioni precedenti
+			int servite = 0;
+			for (int i = sessioni - 1; i >= 0; i -= passoVerifica) {
+				if (verifica(connessioni.get(i)))
+					servite++;
+			}
+
+			memoria.gc();
+			int threadSessioni = thread.getThreadCount();
+			int piccoThread = thread.getPeakThreadCount();
+			long heapSessioni = memoria.getHeapMemoryUsage().getUsed();
+
+			System.out.println("Sessioni: " + sessioni + " (executor " + executor + ", modalita' " + modalita
+					+ "), aperte in " + apertura + " ms, verificate " + servite + "/"
+					+ ((sessioni - 1) / passoVerifica + 1));
+			System.out.println("Thread di piattaforma del server: " + threadIniziali + " a vuoto, " + threadSessioni
+					+ " con le sessioni, picco " + piccoThread);
+			System.out.println("Heap del server dopo GC: " + heapIniziale / (1024 * 1024) + " MiB a vuoto, "
+					+ heapSessioni / (1024 * 1024) + " MiB con le sessioni, "
+					+ (heapSessioni - heapIniziale) / Math.max(1, sessioni) + " byte per sessione");
+		} finally {
+			for (Socket socket : connessioni)
+				socket.close();
+
+			// terminazione ordinata, come CTRL+C; la directory di lavoro resta con
+			// server.log fino alla prova successiva
+			server.destroy();
+			server.waitFor();
+		}
+	}
+
+	/**
+	 * Metodo che copia server/resources nella directory di lavoro e configura il
+	 * server della prova su una porta libera
+	 *
+	 * @param lavoro   directory di lavoro del server
+	 * @param executor executor delle sessioni
+	 * @param modalita modalita' del server
+	 * @param sessioni sessioni della prova, usate come backlog
+	 *
+	 * @return porta di ascolto del server
+	 *
+	 * @throws IOException errore di copia o di scrittura della configurazione
+	 */
+	private static int preparaRisorse(Path lavoro, String executor, String modalita, int sessioni)
+			throws IOException {
+		elimina(lavoro);
+		Path origine = Paths.get("server/resources");
+		Path risorse = lavoro.resolve(origine);
+		Files.createDirectories(risorse);
+		try (Stream<Path> file = Files.list(origine)) {
+			for (Path percorso : (Iterable<Path>) file::iterator) {
+				if (Files.isRegularFile(percorso))
+					Files.copy(percorso, risorse.resolve(percorso.getFileName()));
+			}
+		}
+
+		int porta;
+		try (ServerSocket libera = new ServerSocket(0)) {
+			porta = libera.getLocalPort();
+		}
+
+		Path file = risorse.resolve("server.properties");
+		Properties configurazione = new Properties();
+		try (FileInputStream input = new FileInputStream(file.toFile())) {
+			configurazione.load(input);
+		}
+		configurazione.setProperty("porta", String.valueOf(porta));
+		configurazione.setProperty("executor", executor);
+		configurazione.setProperty("modalitaServer", modalita);
+		configurazione.setProperty("backlogConnessioni", String.valueOf(sessioni));
+		configurazione.setProperty("sessioniMassime", "0");
+		try (FileOutputStream output = new FileOutputStream(file.toFile())) {
+			configurazione.store(output, "Prova di carico CaricoSessioni");
+		}
+
+		return porta;
+	}
+
+	/**
+	 * @param lavoro directory di lavoro del server
+	 *
+	 * @return processo del server, con la stessa JVM e classpath del driver
+	 *
+	 * @throws IOException errore di avvio
+	 */
+	private static Process avviaServer(Path lavoro) throws IOException {
+		String java = ProcessHandle.current().info().command().orElse("java");
+		String classpath = Paths.get(System.getProperty("java.class.path")).toAbsolutePath().toString();
+
+		return new ProcessBuilder(java, "-cp", classpath, "server.WordleServerMain").directory(lavoro.toFile())
+				.redirectErrorStream(true).redirectOutput(lavoro.resolve("server.log").toFile()).start();
+	}
+
+	/**
+	 * Metodo che avvia l'agente JMX locale del server e vi si collega
+	 *
+	 * @param server processo del server
+	 *
+	 * @return connessione JMX al server
+	 *
+	 * @throws Exception errore di collegamento
+	 */
+	private static JMXConnector collega(Process server) throws Exception {
+		long limite = System.currentTimeMillis() + attesaMassima;
+		while (true) {
+			try {
+				VirtualMachine jvm = VirtualMachine.attach(String.valueOf(server.pid()));
+				try {
+					return JMXConnectorFactory.connect(new JMXServiceURL(jvm.startLocalManagementAgent()));
+				} finally {
+					jvm.detach();
+				}
+			} catch (IOException | com.sun.tools.attach.AttachNotSupportedException e) {
+				// JVM ancora in avvio
+				if (!server.isAlive() || System.currentTimeMillis() > limite)
+					throw e;
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Metodo che attende che il server accetti connessioni
+	 *
+	 * @param porta porta di ascolto del server
+	 *
+	 * @throws Exception server non avviato entro l'attesa massima
+	 */
+	private static void attendiServer(int porta) throws Exception {
+		long limite = System.currentTimeMillis() + attesaMassima;
+		while (true) {
+			try (Socket socket = new Socket("localhost", porta)) {
+				return;
+			} catch (IOException e) {
+				if (System.currentTimeMillis() > limite)
+					throw e;
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	/**
+	 * Metodo che invia su una connessione inattiva il login di un utente
+	 * inesistente, che non calcola password, e attende la risposta
+	 *
+	 * @param socket connessione da verificare
+	 *
+	 * @return TRUE se la sessione ha risposto utente non presente, FALSE se la
+	 *         connessione e' stata rifiutata o chiusa
+	 */
+	private static boolean verifica(Socket socket) {
+		try {
+			socket.setSoTimeout((int) attesaMassima);
+			DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+			output.writeUTF("20;utente-inesistente;password");
+			output.flush();
+			return new DataInputStream(socket.getInputStream()).readUTF().startsWith("300;Utente non presente");
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param directory directory da eliminare con il contenuto, se esiste
+	 *
+	 * @throws IOException errore di eliminazione
+	 */
+	private static void elimina(Path directory) throws IOException {
+		if (!Files.exists(directory))
+			return;
+		try (Stream<Path> file = Files.walk(directory)) {
+			for (Path percorso : (Iterable<Path>) file.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(percorso);
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package benchmark;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.Credenziali;
+import server.FunzioneDerivazione;
+
+/**
+ * Derivazione dell'hash di una password (l'hashPassword delle versioni
+ * precedenti) con le funzioni di Credenziali: sha256 senza sale e pbkdf2 al
+ * costo predefinito di server.properties. hashPasswordOriginale misura la
+ * copia di WordleServerThread.hashPassword delle versioni precedenti, con
+ * conversione in esadecimale tramite BigInteger, indipendente dai parametri.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredenzialiBenchmark {
+
+	@Param({ "sha256", "pbkdf2" })
+	public String funzione;
+
+	// iterazioni PBKDF2, ignorate da sha256
+	@Param("600000")
+	public int costo;
+
+	private FunzioneDerivazione derivazione;
+	private byte[] sale;
+
+	@Setup
+	public void prepara() {
+		derivazione = Credenziali.funzione(funzione);
+		sale = new byte[derivazione.salata() ? Credenziali.byteSale : 0];
+	}
+
+	@Benchmark
+	public byte[] deriva() {
+		return derivazione.deriva("password123", sale, costo);
+	}
+
+	@Benchmark
+	public String hashPasswordOriginale() throws NoSuchAlgorithmException {
+		MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+		byte[] hash = messageDigest.digest("password123".getBytes(StandardCharsets.UTF_8));
+
+		BigInteger numberoHash = new BigInteger(1, hash);
+		StringBuilder hashedPassword = new StringBuilder(numberoHash.toString(16));
+		while (hashedPassword.length() < 64) {
+			hashedPassword.insert(0, '0');
+		}
+
+		return hashedPassword.toString();
+	}
+
+}
@@ -0,0 +1,153 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+import com.google.gson.stream.JsonWriter;
+
+import server.Credenziali;
+import server.FunzioneDerivazione;
+
+/**
+ * Generatore dei file di stato usati dai benchmark: un stato.json nel formato
+ * delle versioni precedenti (utenti nel file di stato, password SHA-256 in
+ * esadecimale) con il numero di utenti richiesto. Le statistiche sono casuali
+ * ma plausibili e, a parita' di utenti, il file generato e' sempre lo stesso.
+ *
+ * Uso: java -cp benchmark/target/benchmarks.jar benchmark.GeneraStato
+ * directory utenti...
+ */
+public class GeneraStato {
+
+	// giorno in millisecondi, distanza tra due parole
+	private static final long giorno = 24L * 60 * 60 * 1000;
+
+	// funzione delle password delle versioni precedenti
+	private static final FunzioneDerivazione sha256 = Credenziali.funzione("sha256");
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Uso: java benchmark.GeneraStato directory utenti...");
+			System.exit(1);
+		}
+
+		try {
+			for (int i = 1; i < args.length; i++) {
+				long inizio = System.nanoTime();
+				Path file = fixture(Paths.get(args[0]), Integer.parseInt(args[i]));
+				System.out.println(file + "\t" + Files.size(file) / (1024 * 1024) + " MiB\t"
+						+ (System.nanoTime() - inizio) / 1000000 + " ms");
+			}
+		} catch (IOException e) {
+			System.err.println("Errore generazione stato: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Metodo che restituisce il file di stato con il numero di utenti dato,
+	 * generandolo se non esiste
+	 *
+	 * @param directory directory dei file generati
+	 * @param utenti    numero di utenti
+	 *
+	 * @return percorso di stato-utenti.json nella directory
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	public static Path fixture(Path directory, int utenti) throws IOException {
+		Path file = directory.resolve("stato-" + utenti + ".json");
+		if (Files.exists(file))
+			return file;
+
+		// scrittura su file temporaneo, un file interrotto non viene riusato
+		Files.createDirectories(directory);
+		Path temporaneo = directory.resolve(file.getFileName() + ".tmp");
+		genera(temporaneo, utenti);
+		Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		return file;
+	}
+
+	/**
+	 * Metodo che scrive un file di stato con utenti dalle statistiche casuali
+	 *
+	 * @param file   file da scrivere
+	 * @param utenti numero di utenti
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	public static void genera(Path file, int utenti) throws IOException {
+		Random casuale = new Random(utenti);
+
+		// parola in corso, scaduta tra un giorno
+		long adesso = System.currentTimeMillis();
+
+		try (JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8), 1 << 16))) {
+			jsonWriter.beginObject();
+			jsonWriter.name("parola").value("macrophoma");
+			jsonWriter.name("id").value(14105);
+			jsonWriter.name("scadenza").value(adesso + giorno);
+
+			jsonWriter.name("utenti");
+			jsonWriter.beginArray();
+			for (int i = 0; i < utenti; i++)
+				scriviUtente(jsonWriter, i, casuale, adesso);
+			jsonWriter.endArray();
+
+			jsonWriter.endObject();
+		}
+	}
+
+	/**
+	 * Metodo che scrive un utente con password "password" seguita dal numero
+	 * dell'utente
+	 *
+	 * @param jsonWriter writer su cui scrivere
+	 * @param numero     numero dell'utente
+	 * @param casuale    generatore delle statistiche
+	 * @param adesso     istante di generazione
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private static void scriviUtente(JsonWriter jsonWriter, int numero, Random casuale, long adesso)
+			throws IOException {
+		String username = "utente" + numero;
+		byte[] hash = sha256.deriva("password" + numero, new byte[0], 0);
+
+		// partite giocate fino a un anno, vittorie soprattutto tra il terzo e il
+		// sesto tentativo
+		int partiteGiocate = casuale.nextInt(366);
+		int partiteVinte = partiteGiocate == 0 ? 0 : casuale.nextInt(partiteGiocate + 1);
+		int[] distribuzione = new int[12];
+		for (int v = 0; v < partiteVinte; v++)
+			distribuzione[Math.min(11, (int) Math.abs(casuale.nextGaussian() * 2 + 4))]++;
+		int miglioreStreak = partiteVinte == 0 ? 0 : 1 + casuale.nextInt(Math.min(partiteVinte, 30));
+		int streakAttuale = casuale.nextInt(miglioreStreak + 1);
+		long scadenzaParolaGiocata = partiteGiocate == 0 ? 0 : adesso - casuale.nextInt(30) * giorno;
+
+		jsonWriter.beginObject();
+		jsonWriter.name("username").value(username);
+		jsonWriter.name("password").value(new Credenziali(sha256, 0, new byte[0], hash).testo());
+		jsonWriter.name("partiteGiocate").value(partiteGiocate);
+		jsonWriter.name("partiteVinte").value(partiteVinte);
+		jsonWriter.name("miglioreStreakVittorie").value(miglioreStreak);
+		jsonWriter.name("streakVittorieAttuale").value(streakAttuale);
+		jsonWriter.name("distribuzioneTentativi");
+		jsonWriter.beginArray();
+		for (int tentativi : distribuzione)
+			jsonWriter.value(tentativi);
+		jsonWriter.endArray();
+		jsonWriter.name("scadenzaParolaGiocata").value(scadenzaParolaGiocata);
+		jsonWriter.endObject();
+	}
+
+}
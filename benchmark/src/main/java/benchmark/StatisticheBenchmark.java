@@ -0,0 +1,75 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.Credenziali;
+import server.DatiUtente;
+import server.DatiUtenteHeap;
+
+/**
+ * Composizione delle statistiche di un utente inviate al client
+ * (DatiUtente.getStatistiche), confrontata con la concatenazione di stringhe
+ * di DatiUtente.getStatistiche delle versioni precedenti
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticheBenchmark {
+
+	private DatiUtente utente;
+
+	// campi dell'utente delle versioni precedenti
+	private final String username = "utente12345";
+	private final int partiteGiocate = 180;
+	private final int partiteVinte = 150;
+	private final int miglioreStreakVittorie = 21;
+	private final int streakVittorieInCorso = 7;
+	private final int[] distribuzioneTentativiImpiegati = { 2, 9, 31, 48, 35, 16, 6, 2, 1, 0, 0, 0 };
+
+	@Setup
+	public void prepara() {
+		Credenziali credenziali = new Credenziali(Credenziali.funzione("sha256"), 0, new byte[0],
+				new byte[Credenziali.byteHash]);
+		utente = new DatiUtenteHeap(username, credenziali, partiteGiocate, partiteVinte, miglioreStreakVittorie,
+				streakVittorieInCorso, distribuzioneTentativiImpiegati, System.currentTimeMillis(), 0);
+
+		// i due testi devono coincidere
+		if (!utente.getStatistiche().equals(getStatisticheOriginale()))
+			throw new IllegalStateException("Statistiche diverse:\n" + getStatisticheOriginale());
+	}
+
+	@Benchmark
+	public String getStatistiche() {
+		return utente.getStatistiche();
+	}
+
+	@Benchmark
+	public String getStatisticheOriginale() {
+		String statistiche = "Utente " + username + ":\n- Partite giocate: " + partiteGiocate + "\n- Partite vinte: "
+				+ partiteVinte + "\n- Streak di vittorie in corso: " + streakVittorieInCorso
+				+ "\n- Migliore streak di vittorie: " + miglioreStreakVittorie;
+
+		statistiche += "\n- Distribuzione vittorie: ";
+
+		for (int i = 0; i < 12; i++) {
+			statistiche += "\n\tVittorie al " + (i + 1) + " tentativo: " + distribuzioneTentativiImpiegati[i];
+		}
+
+		return statistiche;
+	}
+
+}
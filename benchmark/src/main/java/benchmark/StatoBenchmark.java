@@ -0,0 +1,92 @@
+package benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.FileStatoJson;
+import server.ParolaCorrente;
+import server.RegistroUtenti;
+import server.RegistroUtentiHeap;
+
+/**
+ * Salvataggio del file di stato JSON (la scrittura della terminazione e della
+ * compattazione) e ripristino dello stato all'avvio, con 10k, 100k e 1M utenti
+ * generati da GeneraStato, su file unico e divisi in shard
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StatoBenchmark {
+
+	// directory dei file di stato generati, relativa alla radice del repository
+	@Param("benchmark/target/stato")
+	public String directory;
+
+	@Param({ "10000", "100000", "1000000" })
+	public int utenti;
+
+	// shard degli utenti, 0 per un unico file di stato
+	@Param({ "0", "8" })
+	public int shard;
+
+	// stato letto dal file generato
+	private final ParolaCorrente parola = new ParolaCorrente();
+	private final RegistroUtenti registro = new RegistroUtentiHeap();
+
+	// copia di lavoro scritta e riletta dai benchmark
+	private Path lavoro;
+	private FileStatoJson fileStato;
+
+	@Setup
+	public void prepara() throws IOException {
+		Path fixture = GeneraStato.fixture(Paths.get(directory), utenti);
+		new FileStatoJson(fixture, 0).leggi(parola, registro);
+
+		lavoro = Files.createTempDirectory(Paths.get(directory), "lavoro");
+		fileStato = new FileStatoJson(lavoro.resolve("stato.json"), shard);
+		fileStato.scrivi(parola, registro, () -> 0);
+	}
+
+	@TearDown
+	public void elimina() throws IOException {
+		try (Stream<Path> file = Files.walk(lavoro)) {
+			for (Path percorso : (Iterable<Path>) file.sorted(Comparator.reverseOrder())::iterator)
+				Files.delete(percorso);
+		}
+	}
+
+	@Benchmark
+	public FileStatoJson salva() throws IOException {
+		fileStato.scrivi(parola, registro, () -> 0);
+		return fileStato;
+	}
+
+	@Benchmark
+	public RegistroUtenti ripristina() throws IOException {
+		RegistroUtenti ripristinati = new RegistroUtentiHeap();
+		new FileStatoJson(lavoro.resolve("stato.json"), shard).leggi(new ParolaCorrente(), ripristinati);
+		return ripristinati;
+	}
+
+}
@@ -0,0 +1,139 @@
+package benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.Valutatore;
+import server.Vocabolario;
+
+/**
+ * Calcolo del risultato di un tentativo (Valutatore.valuta) su parole del
+ * vocabolario reale, e composizione del testo inviato dal protocollo testuale.
+ * valutaOriginale misura sulle stesse coppie di parole l'algoritmo delle
+ * versioni precedenti (WordleServerThread.gestisciIndovinaParola), i cui
+ * risultati sono verificati uguali a quelli di Valutatore; con -prof gc si
+ * confrontano anche le allocazioni.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValutatoreBenchmark {
+
+	// tentativi valutati per invocazione
+	private static final int numeroTentativi = 1024;
+
+	// percorso del vocabolario, relativo alla radice del repository
+	@Param("server/resources/words.txt")
+	public String wordsFile;
+
+	private final Valutatore valutatore = new Valutatore();
+	private String parola;
+	private final String[] tentativi = new String[numeroTentativi];
+	private final int[] risultati = new int[numeroTentativi];
+	private int lunghezza;
+
+	@Setup
+	public void prepara() throws IOException {
+		Vocabolario vocabolario = Vocabolario.apri(wordsFile, false);
+		Random casuale = new Random(1);
+
+		parola = vocabolario.parola(casuale.nextInt(vocabolario.numeroParole()));
+		valutatore.impostaParola(parola);
+		lunghezza = vocabolario.lunghezzaParola();
+		for (int i = 0; i < numeroTentativi; i++) {
+			tentativi[i] = vocabolario.parola(casuale.nextInt(vocabolario.numeroParole()));
+			risultati[i] = valutatore.valuta(tentativi[i]);
+
+			// i due algoritmi devono dare lo stesso risultato
+			String originale = originale(parola, tentativi[i]);
+			if (!originale.equals(Valutatore.testo(risultati[i], lunghezza)))
+				throw new IllegalStateException("Risultati diversi per " + tentativi[i] + ": " + originale);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numeroTentativi)
+	public int valuta() {
+		int risultato = 0;
+		for (String tentativo : tentativi)
+			risultato ^= valutatore.valuta(tentativo);
+		return risultato;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numeroTentativi)
+	public int valutaOriginale() {
+		int risultato = 0;
+		for (String tentativo : tentativi)
+			risultato ^= originale(parola, tentativo).hashCode();
+		return risultato;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numeroTentativi)
+	public int testo() {
+		int caratteri = 0;
+		for (int risultato : risultati)
+			caratteri += Valutatore.testo(risultato, lunghezza).length();
+		return caratteri;
+	}
+
+	/**
+	 * Copia del calcolo del risultato delle versioni precedenti: copia della
+	 * parola in uno StringBuilder, lettere in posizione esatta e poi ricerca con
+	 * indexOf delle lettere restanti
+	 *
+	 * @param parolaDaIndovinare parola da indovinare
+	 * @param tentativo          parola tentata
+	 *
+	 * @return risultato testuale del tentativo
+	 */
+	private static String originale(String parolaDaIndovinare, String tentativo) {
+		StringBuilder parolaStringa = new StringBuilder(parolaDaIndovinare);
+		StringBuilder risultato = new StringBuilder("");
+
+		for (int i = 0; i < parolaStringa.length(); i++) {
+			if (tentativo.charAt(i) == parolaStringa.charAt(i)) {
+				risultato.append('+');
+				parolaStringa.setCharAt(i, '-');
+			} else {
+				risultato.append('x');
+			}
+		}
+
+		if (risultato.indexOf("x") == -1)
+			return risultato.toString();
+
+		int i = 0;
+		int k;
+		while ((k = risultato.indexOf("x", i)) != -1) {
+			int j;
+			String c = tentativo.charAt(k) + "";
+			if ((j = parolaStringa.indexOf(c)) != -1) {
+				risultato.setCharAt(k, '?');
+				parolaStringa.setCharAt(j, '-');
+			}
+			i = k + 1;
+		}
+
+		return risultato.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+package benchmark;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import server.Sessione;
+import server.Vocabolario;
+
+/**
+ * Controllo di un tentativo nel vocabolario reale (Sessione.binarySearch), con
+ * e senza indice in heap. Meta' dei tentativi sono parole del vocabolario,
+ * meta' sequenze casuali di lettere quasi sempre assenti. binarySearchOriginale
+ * misura sugli stessi tentativi la ricerca delle versioni precedenti, una
+ * seek e una readLine sul file per ogni passo, indipendente da
+ * indiceInMemoria.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VocabolarioBenchmark {
+
+	// tentativi controllati per invocazione
+	private static final int numeroTentativi = 1024;
+
+	// percorso del vocabolario, relativo alla radice del repository
+	@Param("server/resources/words.txt")
+	public String wordsFile;
+
+	@Param({ "true", "false" })
+	public boolean indiceInMemoria;
+
+	private Vocabolario vocabolario;
+	private RandomAccessFile file;
+	private final String[] tentativi = new String[numeroTentativi];
+
+	@Setup
+	public void prepara() throws IOException {
+		vocabolario = Vocabolario.apri(wordsFile, indiceInMemoria);
+		file = new RandomAccessFile(wordsFile, "r");
+
+		Random casuale = new Random(1);
+		char[] lettere = new char[vocabolario.lunghezzaParola()];
+		for (int i = 0; i < numeroTentativi; i++) {
+			if (i % 2 == 0) {
+				tentativi[i] = vocabolario.parola(casuale.nextInt(vocabolario.numeroParole()));
+			} else {
+				for (int j = 0; j < lettere.length; j++)
+					lettere[j] = (char) ('a' + casuale.nextInt(26));
+				tentativi[i] = new String(lettere);
+			}
+		}
+	}
+
+	@TearDown
+	public void chiudi() throws IOException {
+		file.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numeroTentativi)
+	public int binarySearch() {
+		int trovate = 0;
+		for (String tentativo : tentativi) {
+			if (Sessione.binarySearch(vocabolario, tentativo))
+				trovate++;
+		}
+		return trovate;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(numeroTentativi)
+	public int binarySearchOriginale() throws IOException {
+		int trovate = 0;
+		for (String tentativo : tentativi) {
+			if (originale(file, tentativo))
+				trovate++;
+		}
+		return trovate;
+	}
+
+	/**
+	 * Copia di WordleServerThread.binarySearch delle versioni precedenti
+	 *
+	 * @param vocabolario file vocabolario, righe di 10 lettere e newline
+	 * @param parola      parola cercata
+	 *
+	 * @return TRUE se la parola e' nel vocabolario
+	 *
+	 * @throws IOException errore di lettura del file
+	 */
+	private static boolean originale(RandomAccessFile vocabolario, String parola) throws IOException {
+		final int byteParola = 11;
+
+		final int numParole = ((int) vocabolario.length()) / byteParola;
+		int lower = 0;
+		int upper = numParole - 1;
+		int mid;
+
+		while (lower <= upper) {
+			mid = (lower + upper) / 2;
+			vocabolario.seek(mid * byteParola);
+			String value = vocabolario.readLine();
+
+			int confronto = parola.compareTo(value);
+
+			if (confronto == 0)
+				return true;
+
+			if (confronto < 0)
+				upper = mid - 1;
+			else
+				lower = mid + 1;
+		}
+
+		return false;
+	}
+
+}
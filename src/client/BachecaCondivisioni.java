@@ -0,0 +1,112 @@
+package client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Bacheca dei risultati condivisi: buffer circolare di capacita' fissa in cui
+ * il thread ricevitore scrive senza lock, sovrascrivendo le condivisioni meno
+ * recenti quando e' pieno. La lettura copia un'istantanea senza bloccare il
+ * ricevitore: dopo la copia si rilegge il numero di condivisioni scritte e si
+ * scartano le celle che il ricevitore puo' aver sovrascritto nel frattempo.
+ *
+ * Un solo thread scrive (il ricevitore multicast), piu' thread possono leggere.
+ */
+public class BachecaCondivisioni {
+
+	// celle del buffer, potenza di 2 per ricavare la cella con una maschera; una
+	// cella e' sempre riservata alla scrittura in corso
+	private final AtomicReferenceArray<Condivisione> celle;
+	private final int maschera;
+
+	// condivisioni scritte dall'avvio, pubblicato dopo la scrittura della cella
+	private volatile long scritte;
+
+	/**
+	 * @param capacita condivisioni conservate almeno, arrotondata alla potenza di
+	 *                 2 successiva meno una
+	 */
+	public BachecaCondivisioni(int capacita) {
+		int dimensione = Integer.highestOneBit(Math.max(1, capacita)) << 1;
+		this.celle = new AtomicReferenceArray<>(dimensione);
+		this.maschera = dimensione - 1;
+	}
+
+	/**
+	 * Metodo che aggiunge una condivisione, eliminando la meno recente se la
+	 * bacheca e' piena. Da chiamare solo dal thread ricevitore.
+	 *
+	 * @param condivisione condivisione ricevuta
+	 */
+	public void aggiungi(Condivisione condivisione) {
+		long posizione = scritte;
+		celle.set((int) posizione & maschera, condivisione);
+		scritte = posizione + 1;
+	}
+
+	/**
+	 * @return numero di condivisioni eliminate perche' la bacheca era piena
+	 */
+	public long eliminate() {
+		return Math.max(0, scritte - maschera);
+	}
+
+	/**
+	 * @return istantanea delle condivisioni conservate, dalla meno recente
+	 */
+	public List<Condivisione> istantanea() {
+		return istantanea(condivisione -> true);
+	}
+
+	/**
+	 * @param idParola id della parola
+	 *
+	 * @return istantanea delle condivisioni della parola, dalla meno recente
+	 */
+	public List<Condivisione> perParola(int idParola) {
+		return istantanea(condivisione -> condivisione.getIdParola() == idParola);
+	}
+
+	/**
+	 * @param username username dell'utente
+	 *
+	 * @return istantanea delle condivisioni dell'utente, dalla meno recente
+	 */
+	public List<Condivisione> perUtente(String username) {
+		return istantanea(condivisione -> condivisione.getUsername().equals(username));
+	}
+
+	/**
+	 * Metodo che copia le condivisioni conservate che soddisfano il filtro
+	 *
+	 * @param filtro condizione sulle condivisioni da restituire
+	 *
+	 * @return istantanea delle condivisioni filtrate, dalla meno recente
+	 */
+	public List<Condivisione> istantanea(Predicate<Condivisione> filtro) {
+		// conservate al piu' tutte le celle meno quella in scrittura
+		int capacita = maschera;
+		long fine = scritte;
+		long inizio = Math.max(0, fine - capacita);
+
+		Condivisione[] copia = new Condivisione[(int) (fine - inizio)];
+		for (long i = inizio; i < fine; i++)
+			copia[(int) (i - inizio)] = celle.get((int) i & maschera);
+
+		// celle sovrascritte durante la copia, compresa quella che il ricevitore
+		// puo' star scrivendo ora
+		long valide = Math.max(inizio, scritte - capacita);
+
+		List<Condivisione> risultato = new ArrayList<>(copia.length);
+		for (long i = valide; i < fine; i++) {
+			Condivisione condivisione = copia[(int) (i - inizio)];
+			if (filtro.test(condivisione))
+				risultato.add(condivisione);
+		}
+
+		return risultato;
+	}
+
+}
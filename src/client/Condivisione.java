@@ -0,0 +1,98 @@
+package client;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Risultato condiviso da un utente, ricevuto in multicast in forma binaria
+ * compatta: username (lunghezza su un byte e UTF-8), id parola (int),
+ * tentativi e lunghezza della parola (byte), risultati con 2 bit per lettera,
+ * tentativo per tentativo e 4 lettere per byte dai bit meno significativi.
+ * Il testo mostrato all'utente viene composto solo alla stampa.
+ */
+public class Condivisione {
+
+	// codici a 2 bit del risultato di una lettera e relativi simboli
+	private static final char[] simboli = { 'x', '?', '+', '?' };
+
+	private final String username;
+	private final int idParola;
+	private final int tentativi;
+	private final int lunghezza;
+
+	// risultati impacchettati, 4 lettere per byte
+	private final byte[] risultati;
+
+	private Condivisione(String username, int idParola, int tentativi, int lunghezza, byte[] risultati) {
+		this.username = username;
+		this.idParola = idParola;
+		this.tentativi = tentativi;
+		this.lunghezza = lunghezza;
+		this.risultati = risultati;
+	}
+
+	/**
+	 * Metodo che decodifica una condivisione
+	 *
+	 * @param dati       array che contiene la condivisione
+	 * @param inizio     posizione della condivisione
+	 * @param dimensione lunghezza della condivisione
+	 *
+	 * @return la condivisione, null se non valida
+	 */
+	public static Condivisione decodifica(byte[] dati, int inizio, int dimensione) {
+		int fine = inizio + dimensione;
+		if (dimensione < 1)
+			return null;
+
+		int lunghezzaNome = dati[inizio] & 0xFF;
+		int posizione = inizio + 1 + lunghezzaNome;
+		if (posizione + 6 > fine)
+			return null;
+
+		String username = new String(dati, inizio + 1, lunghezzaNome, StandardCharsets.UTF_8);
+		int idParola = ((dati[posizione] & 0xFF) << 24) | ((dati[posizione + 1] & 0xFF) << 16)
+				| ((dati[posizione + 2] & 0xFF) << 8) | (dati[posizione + 3] & 0xFF);
+		int tentativi = dati[posizione + 4] & 0xFF;
+		int lunghezza = dati[posizione + 5] & 0xFF;
+		posizione += 6;
+
+		int byteRisultati = (tentativi * lunghezza + 3) / 4;
+		if (posizione + byteRisultati != fine)
+			return null;
+
+		byte[] risultati = new byte[byteRisultati];
+		System.arraycopy(dati, posizione, risultati, 0, byteRisultati);
+
+		return new Condivisione(username, idParola, tentativi, lunghezza, risultati);
+	}
+
+	// getters
+
+	public String getUsername() {
+		return username;
+	}
+
+	public int getIdParola() {
+		return idParola;
+	}
+
+	/**
+	 * @return rappresentazione testuale della condivisione, un tentativo per riga
+	 */
+	public String testo() {
+		StringBuilder testo = new StringBuilder(32 + username.length() + tentativi * (24 + lunghezza));
+
+		testo.append("Condiviso da ").append(username).append(" - Parola ").append(idParola).append(":\n");
+
+		int codice = 0;
+		for (int t = 1; t <= tentativi; t++) {
+			testo.append("- Tentativo nr. ").append(t).append(": ");
+			for (int i = 0; i < lunghezza; i++, codice++)
+				testo.append(simboli[(risultati[codice / 4] >>> (2 * (codice % 4))) & 0b11]);
+			testo.append('\n');
+		}
+
+		return testo.toString();
+	}
+
+}
@@ -0,0 +1,63 @@
+package client;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Richieste del client al server, indipendenti dal protocollo usato sulla
+ * connessione (testuale o binario). Ogni metodo invia la richiesta e attende
+ * la risposta, se prevista. Tentativi e statistiche possono essere inviati in
+ * pipeline: i metodi invia restano nel buffer della connessione, il primo
+ * metodo ricevi li spedisce tutti insieme e le risposte arrivano nello stesso
+ * ordine.
+ */
+public interface Protocollo extends Closeable {
+
+	Risposta registrazione(String username, String password) throws IOException;
+
+	Risposta login(String username, String password) throws IOException;
+
+	Risposta gioca() throws IOException;
+
+	/**
+	 * @param parola parola tentata, normalizzata in minuscolo
+	 *
+	 * @return risultato del tentativo, codice 201 se la partita e' terminata
+	 */
+	default Risposta tentativo(String parola) throws IOException {
+		inviaTentativo(parola);
+		return riceviTentativo();
+	}
+
+	void inviaTentativo(String parola) throws IOException;
+
+	Risposta riceviTentativo() throws IOException;
+
+	void arrenditi() throws IOException;
+
+	Risposta condividi() throws IOException;
+
+	void nonCondividere() throws IOException;
+
+	default Risposta statistiche() throws IOException {
+		inviaStatistiche();
+		return riceviStatistiche();
+	}
+
+	void inviaStatistiche() throws IOException;
+
+	Risposta riceviStatistiche() throws IOException;
+
+	/**
+	 * @return primi in classifica e posizione dell'utente
+	 */
+	Risposta classifica() throws IOException;
+
+	/**
+	 * @return statistiche delle ultime parole estratte
+	 */
+	Risposta statisticheParole() throws IOException;
+
+	void esci() throws IOException;
+
+}
@@ -0,0 +1,438 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocollo binario: opcode di un byte e campi con lunghezza, risposte con un
+ * codice esito numerico e i soli dati, da cui il client compone i messaggi.
+ * Il risultato di un tentativo arriva con 2 bit per lettera. Il formato dei
+ * messaggi e' descritto in server.ProtocolloBinario.
+ */
+public class ProtocolloBinario implements Protocollo {
+
+	// opcode negoziazione e versione supportata
+	private static final int opcodeVersione = 1;
+	private static final int versione = 1;
+
+	// opcode richieste
+	private static final int codiceRegistrazione = 10;
+	private static final int codiceLogin = 20;
+	private static final int codiceGioca = 30;
+	private static final int codiceTentativo = 31;
+	private static final int codiceArrenditi = 32;
+	private static final int codiceStatistiche = 40;
+	private static final int codiceEsci = 50;
+	private static final int codiceCondividi = 60;
+	private static final int codiceNonCondividere = 61;
+	private static final int codiceClassifica = 70;
+	private static final int codiceStatisticheParole = 80;
+
+	// codici esito
+	private static final int esitoOK = 0;
+	private static final int esitoFinePartita = 1;
+	private static final int esitoOccupato = 2;
+
+	// codici risposta del protocollo testuale restituiti al chiamante
+	private static final int codiceOK = 200;
+	private static final int finePartita = 201;
+	private static final int codiceErrore = 300;
+	private static final int codiceOccupato = 301;
+
+	// codice a 2 bit di una lettera in posizione esatta e simboli dei codici
+	private static final int esatta = 2;
+	private static final char[] simboli = { 'x', '?', '+' };
+
+	// socket e stream associati
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	// buffer di composizione delle richieste
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+	private final DataOutputStream richiesta = new DataOutputStream(buffer);
+
+	// contenuto dell'ultima risposta
+	private byte[] frame = new byte[256];
+	private DataInputStream risposta;
+
+	// username dell'utente loggato, per le statistiche
+	private String username;
+
+	private ProtocolloBinario(Socket socket) throws IOException {
+		this.socket = socket;
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		// invio deciso dai flush, Nagle ritarderebbe solo le richieste
+		socket.setTcpNoDelay(true);
+	}
+
+	/**
+	 * Metodo che negozia il protocollo binario su una connessione appena aperta
+	 *
+	 * @param socket connessione con il server
+	 *
+	 * @return il protocollo negoziato
+	 *
+	 * @throws java.io.EOFException se il server chiude la connessione perche'
+	 *                              supporta solo il protocollo testuale
+	 * @throws ConnectException     se il server rifiuta la connessione
+	 * @throws IOException          errore lettura o scrittura sulla socket
+	 */
+	public static ProtocolloBinario negozia(Socket socket) throws IOException {
+		ProtocolloBinario protocollo = new ProtocolloBinario(socket);
+
+		protocollo.inizia(opcodeVersione);
+		protocollo.richiesta.writeByte(versione);
+		int lunghezza = protocollo.invia();
+
+		if (lunghezza > 0 && protocollo.frame[0] != esitoOK) {
+			// risposta testuale inviata prima della negoziazione, server occupato
+			String testo = new String(protocollo.frame, 0, lunghezza, StandardCharsets.UTF_8);
+			throw new ConnectException(ProtocolloTesto.decodifica(testo).getMessaggio().trim());
+		}
+
+		if (protocollo.risposta.readUnsignedByte() != esitoOK || protocollo.risposta.readUnsignedByte() < 1)
+			throw new IOException("Negoziazione non valida");
+
+		return protocollo;
+	}
+
+	@Override
+	public Risposta registrazione(String username, String password) throws IOException {
+		return accesso(codiceRegistrazione, username, password, "Registrato con successo\n");
+	}
+
+	@Override
+	public Risposta login(String username, String password) throws IOException {
+		return accesso(codiceLogin, username, password, "Login effettuato con successo\n");
+	}
+
+	@Override
+	public Risposta gioca() throws IOException {
+		inizia(codiceGioca);
+		invia();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		return new Risposta(codiceOK, "\nParola " + risposta.readInt() + ":");
+	}
+
+	@Override
+	public void inviaTentativo(String parola) throws IOException {
+		inizia(codiceTentativo);
+		campo(parola);
+		scrivi();
+	}
+
+	@Override
+	public Risposta riceviTentativo() throws IOException {
+		ricevi();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK && esito != esitoFinePartita)
+			return errore(esito);
+
+		int round = risposta.readUnsignedByte();
+		int lunghezza = risposta.readUnsignedByte();
+		int risultato = risposta.readInt();
+
+		// rappresentazione testuale, parola indovinata se tutte le lettere sono esatte
+		char[] testo = new char[lunghezza];
+		boolean indovinata = true;
+		for (int i = 0; i < lunghezza; i++) {
+			int codice = (risultato >>> (2 * i)) & 0b11;
+			testo[i] = simboli[codice];
+			indovinata &= codice == esatta;
+		}
+
+		if (indovinata)
+			return new Risposta(finePartita, "Parola corretta! Indovinata al tentativo nr. " + round + "\n");
+
+		String messaggio = "Tentativo nr. " + round + ": " + new String(testo) + "\n";
+		if (esito == esitoFinePartita)
+			return new Risposta(finePartita,
+					messaggio + "\nTentativi possibili terminati, riprova alla prossima parola\n");
+
+		return new Risposta(codiceOK, messaggio);
+	}
+
+	@Override
+	public void arrenditi() throws IOException {
+		inizia(codiceArrenditi);
+		scrivi();
+		out.flush();
+	}
+
+	@Override
+	public Risposta condividi() throws IOException {
+		inizia(codiceCondividi);
+		invia();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		return new Risposta(codiceOK, "\nRisultato condiviso\n");
+	}
+
+	@Override
+	public void nonCondividere() throws IOException {
+		inizia(codiceNonCondividere);
+		scrivi();
+		out.flush();
+	}
+
+	@Override
+	public void inviaStatistiche() throws IOException {
+		inizia(codiceStatistiche);
+		scrivi();
+	}
+
+	@Override
+	public Risposta riceviStatistiche() throws IOException {
+		ricevi();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		String statistiche = "Utente " + username + ":\n- Partite giocate: " + risposta.readInt()
+				+ "\n- Partite vinte: " + risposta.readInt() + "\n- Streak di vittorie in corso: "
+				+ risposta.readInt() + "\n- Migliore streak di vittorie: " + risposta.readInt();
+
+		statistiche += "\n- Distribuzione vittorie: ";
+
+		int tentativi = risposta.readUnsignedByte();
+		for (int i = 0; i < tentativi; i++) {
+			statistiche += "\n\tVittorie al " + (i + 1) + " tentativo: " + risposta.readInt();
+		}
+
+		return new Risposta(codiceOK, statistiche);
+	}
+
+	@Override
+	public Risposta classifica() throws IOException {
+		inizia(codiceClassifica);
+		invia();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		int posizione = risposta.readInt();
+		int punteggio = risposta.readInt();
+		int voci = risposta.readUnsignedByte();
+
+		StringBuilder classifica = new StringBuilder("Classifica (vittorie pesate per tentativi):");
+		if (voci == 0)
+			classifica.append("\nNessun utente in classifica");
+		for (int i = 0; i < voci; i++) {
+			classifica.append("\n").append(risposta.readInt()).append(". ");
+
+			byte[] username = new byte[risposta.readUnsignedByte()];
+			risposta.readFully(username);
+			classifica.append(new String(username, StandardCharsets.UTF_8));
+
+			classifica.append(" - punteggio ").append(risposta.readInt());
+		}
+
+		if (posizione > 0)
+			classifica.append("\n\nLa tua posizione: ").append(posizione).append(" (punteggio ").append(punteggio)
+					.append(")");
+		else
+			classifica.append("\n\nNon sei ancora in classifica, vinci una partita");
+
+		return new Risposta(codiceOK, classifica.toString());
+	}
+
+	@Override
+	public Risposta statisticheParole() throws IOException {
+		inizia(codiceStatisticheParole);
+		invia();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		int parole = risposta.readUnsignedByte();
+
+		StringBuilder statistiche = new StringBuilder("Statistiche ultime parole:");
+		if (parole == 0)
+			statistiche.append("\nNessuna parola giocata");
+		for (int i = 0; i < parole; i++) {
+			int id = risposta.readInt();
+			int giocate = risposta.readInt();
+			int vinte = risposta.readInt();
+
+			statistiche.append("\nParola ").append(id).append(": giocate ").append(giocate).append(", vinte ")
+					.append(vinte);
+			if (giocate > 0)
+				statistiche.append(" (").append((long) vinte * 100 / giocate).append("%)");
+
+			statistiche.append("\n\tVittorie per tentativi:");
+			int tentativi = risposta.readUnsignedByte();
+			for (int j = 0; j < tentativi; j++)
+				statistiche.append(' ').append(risposta.readInt());
+		}
+
+		return new Risposta(codiceOK, statistiche.toString());
+	}
+
+	@Override
+	public void esci() throws IOException {
+		inizia(codiceEsci);
+		scrivi();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/**
+	 * Metodo che invia una richiesta di registrazione o login
+	 *
+	 * @param codice    opcode della richiesta
+	 * @param username  username
+	 * @param password  password
+	 * @param messaggio messaggio in caso di successo
+	 *
+	 * @return risposta del server
+	 *
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private Risposta accesso(int codice, String username, String password, String messaggio) throws IOException {
+		inizia(codice);
+		campo(username);
+		campo(password);
+		invia();
+
+		int esito = risposta.readUnsignedByte();
+		if (esito != esitoOK)
+			return errore(esito);
+
+		this.username = username;
+		return new Risposta(codiceOK, messaggio);
+	}
+
+	/**
+	 * Metodo che compone la risposta ad un esito di errore
+	 *
+	 * @param esito codice esito ricevuto
+	 *
+	 * @return risposta con codice e messaggio del protocollo testuale
+	 */
+	private static Risposta errore(int esito) {
+		switch (esito) {
+		case esitoOccupato:
+			return new Risposta(codiceOccupato, "Server occupato, riprovare piu' tardi\n");
+		case 10:
+			return new Risposta(codiceErrore, "Utente non presente\n");
+		case 11:
+			return new Risposta(codiceErrore, "Password errata\n");
+		case 12:
+			return new Risposta(codiceErrore, "Utente gia loggato\n");
+		case 13:
+			return new Risposta(codiceErrore, "Username gia' usato\n");
+		case 14:
+			return new Risposta(codiceErrore, "Username troppo lungo\n");
+		case 20:
+			return new Risposta(codiceErrore, "\nHai gia' giocato, aspetta la prossima parola\n");
+		case 21:
+			return new Risposta(codiceErrore, "Parola non valida\n");
+		case 22:
+			return new Risposta(codiceErrore, "Partita terminata\n");
+		default:
+			return new Risposta(codiceErrore, "Errore " + esito + "\n");
+		}
+	}
+
+	/**
+	 * Metodo che inizia una richiesta con il suo opcode, lasciando spazio alla
+	 * lunghezza del frame
+	 *
+	 * @param codice opcode della richiesta
+	 */
+	private void inizia(int codice) {
+		buffer.reset();
+		buffer.write(0);
+		buffer.write(0);
+		buffer.write(codice);
+	}
+
+	/**
+	 * Metodo che aggiunge alla richiesta un campo stringa con lunghezza su un
+	 * byte
+	 *
+	 * @param campo campo da aggiungere
+	 *
+	 * @throws IOException se il campo supera i 255 byte
+	 */
+	private void campo(String campo) throws IOException {
+		byte[] byteCampo = campo.getBytes(StandardCharsets.UTF_8);
+		if (byteCampo.length > 255)
+			throw new IOException("Campo troppo lungo");
+
+		richiesta.writeByte(byteCampo.length);
+		richiesta.write(byteCampo);
+	}
+
+	/**
+	 * Metodo che scrive la richiesta composta in un frame nel buffer della
+	 * connessione
+	 *
+	 * @throws IOException errore scrittura sulla socket
+	 */
+	private void scrivi() throws IOException {
+		byte[] dati = buffer.toByteArray();
+		dati[0] = (byte) ((dati.length - 2) >>> 8);
+		dati[1] = (byte) (dati.length - 2);
+		out.write(dati);
+	}
+
+	/**
+	 * Metodo che scrive la richiesta composta e legge il frame di risposta
+	 *
+	 * @return lunghezza del contenuto della risposta
+	 *
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private int invia() throws IOException {
+		scrivi();
+		return ricevi();
+	}
+
+	/**
+	 * Metodo che spedisce le richieste nel buffer e legge il prossimo frame di
+	 * risposta, letto poi dallo stream risposta
+	 *
+	 * @return lunghezza del contenuto della risposta
+	 *
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private int ricevi() throws IOException {
+		out.flush();
+
+		int lunghezza = in.readUnsignedShort();
+		if (frame.length < lunghezza)
+			frame = new byte[lunghezza];
+		in.readFully(frame, 0, lunghezza);
+
+		risposta = new DataInputStream(new ByteArrayInputStream(frame, 0, lunghezza));
+		return lunghezza;
+	}
+
+}
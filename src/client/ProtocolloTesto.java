@@ -0,0 +1,163 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Protocollo testuale: richieste "codice;campi" e risposte "codice;messaggio"
+ * con readUTF/writeUTF, compatibile con tutte le versioni del server. Le
+ * richieste sono bufferizzate e spedite prima di leggere una risposta.
+ */
+public class ProtocolloTesto implements Protocollo {
+
+	// codici richiesta
+	private static final int codiceRegistrazione = 10;
+	private static final int codiceLogin = 20;
+	private static final int codiceGioca = 30;
+	private static final int codiceStatistiche = 40;
+	private static final int codiceEsci = 50;
+	private static final int codiceCondividi = 60;
+	private static final int codiceClassifica = 70;
+	private static final int codiceStatisticheParole = 80;
+
+	// risposta inviata per non condividere il risultato
+	private static final int codiceOK = 200;
+
+	// socket e stream associati
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+
+	public ProtocolloTesto(Socket socket) throws IOException {
+		this.socket = socket;
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		// invio deciso dai flush, Nagle ritarderebbe solo le richieste
+		socket.setTcpNoDelay(true);
+	}
+
+	@Override
+	public Risposta registrazione(String username, String password) throws IOException {
+		return richiesta(codiceRegistrazione + ";" + username + ";" + password);
+	}
+
+	@Override
+	public Risposta login(String username, String password) throws IOException {
+		return richiesta(codiceLogin + ";" + username + ";" + password);
+	}
+
+	@Override
+	public Risposta gioca() throws IOException {
+		return richiesta(codiceGioca + ";");
+	}
+
+	@Override
+	public void inviaTentativo(String parola) throws IOException {
+		out.writeUTF(parola);
+	}
+
+	@Override
+	public Risposta riceviTentativo() throws IOException {
+		return ricevi();
+	}
+
+	@Override
+	public void arrenditi() throws IOException {
+		out.writeUTF("exit");
+		out.flush();
+	}
+
+	@Override
+	public Risposta condividi() throws IOException {
+		return richiesta(codiceCondividi + ";");
+	}
+
+	@Override
+	public void nonCondividere() throws IOException {
+		out.writeUTF(codiceOK + ";");
+		out.flush();
+	}
+
+	@Override
+	public void inviaStatistiche() throws IOException {
+		out.writeUTF(codiceStatistiche + ";");
+	}
+
+	@Override
+	public Risposta riceviStatistiche() throws IOException {
+		return ricevi();
+	}
+
+	@Override
+	public Risposta classifica() throws IOException {
+		return richiesta(codiceClassifica + ";");
+	}
+
+	@Override
+	public Risposta statisticheParole() throws IOException {
+		return richiesta(codiceStatisticheParole + ";");
+	}
+
+	@Override
+	public void esci() throws IOException {
+		out.writeUTF(codiceEsci + ";");
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+
+	/**
+	 * Metodo che invia una richiesta e legge la risposta
+	 *
+	 * @param richiesta richiesta da inviare
+	 *
+	 * @return risposta del server
+	 *
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private Risposta richiesta(String richiesta) throws IOException {
+		out.writeUTF(richiesta);
+		return ricevi();
+	}
+
+	/**
+	 * Metodo che spedisce le richieste nel buffer e legge la prossima risposta
+	 *
+	 * @return risposta del server
+	 *
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private Risposta ricevi() throws IOException {
+		out.flush();
+		return decodifica(in.readUTF());
+	}
+
+	/**
+	 * Metodo che decodifica una risposta testuale, usato anche dal protocollo
+	 * binario quando il server rifiuta la connessione prima della negoziazione
+	 *
+	 * @param testo risposta "codice;messaggio"
+	 *
+	 * @return risposta del server
+	 *
+	 * @throws IOException se la risposta non ha un codice
+	 */
+	static Risposta decodifica(String testo) throws IOException {
+		int separatore = testo.indexOf(';');
+
+		try {
+			return new Risposta(Integer.parseInt(testo.substring(0, separatore)), testo.substring(separatore + 1));
+		} catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+			throw new IOException("Risposta non valida: " + testo);
+		}
+	}
+
+}
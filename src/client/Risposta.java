@@ -0,0 +1,29 @@
+package client;
+
+/**
+ * Risposta del server nella forma del protocollo testuale: codice (200 ok, 201
+ * fine partita, 300 errore, 301 server occupato) e messaggio da mostrare. Con
+ * il protocollo binario il messaggio e' composto dal client.
+ */
+public class Risposta {
+
+	// codice e messaggio della risposta
+	private final int codice;
+	private final String messaggio;
+
+	public Risposta(int codice, String messaggio) {
+		this.codice = codice;
+		this.messaggio = messaggio;
+	}
+
+	// getters
+
+	public int getCodice() {
+		return codice;
+	}
+
+	public String getMessaggio() {
+		return messaggio;
+	}
+
+}
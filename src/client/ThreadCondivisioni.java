@@ -8,10 +8,19 @@ import java.net.MulticastSocket;
 import java.net.NetworkInterface;
 import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
-import java.util.List;
 
+/**
+ * Thread che riceve i risultati condivisi dal gruppo multicast. Il server
+ * impacchetta piu' condivisioni in un datagramma, ciascuna preceduta dalla
+ * lunghezza su 2 byte e codificata in forma binaria compatta (vedi
+ * Condivisione).
+ */
 public class ThreadCondivisioni extends Thread {
 
+	// contenuto massimo di un datagramma del server (MTU Ethernet meno
+	// intestazioni IPv4 e UDP)
+	private static final int dimensioneDatagramma = 1500 - 20 - 8;
+
 	// Indirizzo (stringa) e porta gruppo multicast
 	private final String indirizzoMulticast;
 	private final int portaMulticast;
@@ -23,10 +32,10 @@ public class ThreadCondivisioni extends Thread {
 	// Multicast socket
 	private MulticastSocket ms;
 
-	// lista contenente i risultati condivisi come stringa
-	private final List<String> condivisioni;
+	// bacheca dei risultati condivisi decodificati, scritta senza lock
+	private final BachecaCondivisioni condivisioni;
 
-	public ThreadCondivisioni(String stringaIndirizzo, int portaMulticast, List<String> condivisioni) {
+	public ThreadCondivisioni(String stringaIndirizzo, int portaMulticast, BachecaCondivisioni condivisioni) {
 		this.indirizzoMulticast = stringaIndirizzo;
 		this.portaMulticast = portaMulticast;
 		this.condivisioni = condivisioni;
@@ -59,7 +68,7 @@ public class ThreadCondivisioni extends Thread {
 			ms.setSoTimeout(4000);
 
 			// pacchetto di ricezione dati
-			DatagramPacket pacchetto = new DatagramPacket(new byte[512], 512);
+			DatagramPacket pacchetto = new DatagramPacket(new byte[dimensioneDatagramma], dimensioneDatagramma);
 
 			boolean continua = true;
 			while (continua) {
@@ -68,8 +77,8 @@ public class ThreadCondivisioni extends Thread {
 					// ricezione risultato condiviso
 					ms.receive(pacchetto);
 
-					// add alla lista, sincronizzato
-					condivisioni.add(new String(pacchetto.getData(), 0, pacchetto.getLength()));
+					// aggiunta alla bacheca di ogni condivisione del datagramma
+					separa(pacchetto.getData(), pacchetto.getLength());
 
 				} catch (SocketTimeoutException e) {
 					// se è stato ricevuto un interrupt bisogna terminare
@@ -95,4 +104,26 @@ public class ThreadCondivisioni extends Thread {
 
 	}
 
+	/**
+	 * Metodo che separa e decodifica le condivisioni impacchettate in un
+	 * datagramma, ignorando quelle troncate o non valide
+	 *
+	 * @param dati      contenuto del datagramma
+	 * @param lunghezza lunghezza del contenuto
+	 */
+	private void separa(byte[] dati, int lunghezza) {
+		int posizione = 0;
+		while (posizione + 2 <= lunghezza) {
+			int dimensione = ((dati[posizione] & 0xFF) << 8) | (dati[posizione + 1] & 0xFF);
+			posizione += 2;
+			if (posizione + dimensione > lunghezza)
+				return;
+
+			Condivisione condivisione = Condivisione.decodifica(dati, posizione, dimensione);
+			if (condivisione != null)
+				condivisioni.aggiungi(condivisione);
+			posizione += dimensione;
+		}
+	}
+
 }
@@ -1,32 +1,29 @@
 package client;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.Socket;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class WordleClientMain {
 
-	// codici richiesta
-	private static final int codiceRegistrazione = 10;
-	private static final int codiceLogin = 20;
-	private static final int codiceGioca = 30;
-	private static final int codiceStatistiche = 40;
-	private static final int codiceEsci = 50;
-	private static final int codiceCondividi = 60;
-
 	// codici risposta
 	private static final int codiceOK = 200;
 	private static final int finePartita = 201;
 	private static final int codiceErrore = 300;
+	private static final int codiceOccupato = 301;
+
+	// attesa minima e massima prima di riprovare dopo server occupato
+	// (millisecondi), casuale per non ripresentare le richieste tutte insieme
+	private static final int attesaMinimaOccupato = 1000;
+	private static final int attesaMassimaOccupato = 4000;
 
 	// file di configurazione Client
 	private static final String configFile = "./client/resources/client.properties";
@@ -39,6 +36,13 @@ public class WordleClientMain {
 	private static String indirizzoServer;
 	private static int porta;
 
+	// protocollo con il server: "binario" o "testo" (da file configurazione)
+	private static String tipoProtocollo;
+
+	// risultati condivisi conservati nella bacheca, oltre i quali si eliminano i
+	// meno recenti (da file configurazione)
+	private static int dimensioneBacheca;
+
 	public static void main(String[] args) {
 
 		// lettura file di configurazione Client
@@ -52,12 +56,9 @@ public class WordleClientMain {
 			System.exit(1);
 		}
 
-		// connessione con il server, recupero stream associati a socket e creazione
+		// connessione con il server con il protocollo configurato e creazione
 		// scanner per input da command line
-		try (Socket socket = new Socket(indirizzoServer, porta);
-				DataInputStream in = new DataInputStream(socket.getInputStream());
-				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-				Scanner scan = new Scanner(System.in)) {
+		try (Protocollo protocollo = connetti(); Scanner scan = new Scanner(System.in)) {
 
 			System.out.println("Benvenuto in Wordle!");
 
@@ -75,11 +76,11 @@ public class WordleClientMain {
 					switch (scelta) {
 					case 1:
 					case 2:
-						utenteLoggato = registrazioneLogin(scelta, in, out, scan);
+						utenteLoggato = registrazioneLogin(scelta, protocollo, scan);
 						break;
 
 					case 3:
-						esci(out, null);
+						esci(protocollo, null);
 						return;
 
 					default:
@@ -92,8 +93,9 @@ public class WordleClientMain {
 				}
 			}
 
-			// creazione struttura dati temporanea per risultati condivisi
-			List<String> condivisioni = Collections.synchronizedList(new ArrayList<String>());
+			// bacheca limitata dei risultati condivisi, scritta dal ricevitore senza
+			// lock
+			BachecaCondivisioni condivisioni = new BachecaCondivisioni(dimensioneBacheca);
 
 			// avvio thread gestione risultati condivisi
 			Thread threadCondivisioni = new ThreadCondivisioni(indirizzoMulticast, portaMulticast, condivisioni);
@@ -104,7 +106,7 @@ public class WordleClientMain {
 			while (continua) {
 
 				System.out.println(
-						"\nImmetti:\n1 - Indovina parola\n2 - Statistiche profilo\n3 - Mostra bacheca risultati condivisi\n4 - Logout");
+						"\nImmetti:\n1 - Indovina parola\n2 - Statistiche profilo\n3 - Mostra bacheca risultati condivisi\n4 - Classifica\n5 - Statistiche parole\n6 - Logout");
 
 				try {
 					// utente immette numero da tastiera
@@ -112,23 +114,35 @@ public class WordleClientMain {
 
 					switch (scelta) {
 					case 1:
-						indovinaParola(in, out, scan);
+						indovinaParola(protocollo, scan);
 						break;
 
 					case 2:
-						statisticheProfilo(in, out);
+						statisticheProfilo(protocollo);
 						System.out.println("\nInvio per continuare");
 						scan.nextLine();
 						break;
 
 					case 3:
-						mostraCondivisioni(condivisioni);
+						mostraCondivisioni(condivisioni, scan);
 						System.out.println("Invio per continuare");
 						scan.nextLine();
 						break;
 
 					case 4:
-						esci(out, threadCondivisioni);
+						classifica(protocollo);
+						System.out.println("\nInvio per continuare");
+						scan.nextLine();
+						break;
+
+					case 5:
+						statisticheParole(protocollo);
+						System.out.println("\nInvio per continuare");
+						scan.nextLine();
+						break;
+
+					case 6:
+						esci(protocollo, threadCondivisioni);
 						continua = false;
 						break;
 
@@ -166,25 +180,53 @@ public class WordleClientMain {
 			porta = Integer.parseInt(prop.getProperty("porta"));
 			portaMulticast = Integer.parseInt(prop.getProperty("portaMulticast"));
 			indirizzoMulticast = prop.getProperty("indirizzoMulticast");
+			tipoProtocollo = prop.getProperty("protocollo", "binario").trim();
+			dimensioneBacheca = Integer.parseInt(prop.getProperty("dimensioneBacheca", "1024").trim());
+		}
+	}
+
+	/**
+	 * Metodo che apre la connessione con il server. Con il protocollo binario,
+	 * se il server supporta solo quello testuale chiude la connessione alla
+	 * negoziazione e ci si riconnette con il protocollo testuale.
+	 * 
+	 * @return il protocollo della connessione
+	 * 
+	 * @throws ConnectException se il server non e' raggiungibile o rifiuta la
+	 *                          connessione perche' occupato
+	 * @throws IOException      errore lettura o scrittura sulla socket
+	 */
+	private static Protocollo connetti() throws IOException {
+		if ("binario".equalsIgnoreCase(tipoProtocollo)) {
+			Socket socket = new Socket(indirizzoServer, porta);
+			try {
+				return ProtocolloBinario.negozia(socket);
+			} catch (EOFException e) {
+				socket.close();
+				System.out.println("Protocollo binario non supportato dal server, uso protocollo testuale");
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
 		}
+
+		return new ProtocolloTesto(new Socket(indirizzoServer, porta));
 	}
 
 	/**
 	 * Metodo che gestisce la registrazione o il login dell'utente. Una
 	 * registrazione andata a buon fine implica il login automatico.
 	 * 
-	 * @param scelta 1 = registrazione / 2 = login
-	 * @param in     stream lettura da socket
-	 * @param out    stream scrittura su socket
-	 * @param scan   scanner per input utente da command line
+	 * @param scelta     1 = registrazione / 2 = login
+	 * @param protocollo protocollo della connessione con il server
+	 * @param scan       scanner per input utente da command line
 	 * 
 	 * @throws IOException errore lettura o scrittura sulla socket
 	 * 
 	 * @return TRUE se l'utente al termine del metodo ha eseguito il login con
 	 *         successo, FALSE altrimenti
 	 */
-	private static boolean registrazioneLogin(int scelta, DataInputStream in, DataOutputStream out, Scanner scan)
-			throws IOException {
+	private static boolean registrazioneLogin(int scelta, Protocollo protocollo, Scanner scan) throws IOException {
 
 		System.out.println("\nFase di " + (scelta == 1 ? "registrazione" : "login")
 				+ " (immettere EXIT come Username per tornare indietro)");
@@ -212,40 +254,57 @@ public class WordleClientMain {
 				continue;
 			}
 
-			// invio richiesta
-			String richiesta = (scelta == 1 ? codiceRegistrazione : codiceLogin) + ";" + username + ";" + password;
-			out.writeUTF(richiesta);
-
-			// ricezione risposta
-			String parteRisposta[] = in.readUTF().split(";");
+			// invio richiesta e ricezione risposta
+			Risposta risposta = scelta == 1 ? protocollo.registrazione(username, password)
+					: protocollo.login(username, password);
 
 			// stampa risposta
-			System.out.println("\n" + parteRisposta[1]);
+			System.out.println("\n" + risposta.getMessaggio());
+
+			int codice = risposta.getCodice();
 
 			// verifica se username e password OK
-			if (Integer.parseInt(parteRisposta[0]) == codiceOK)
+			if (codice == codiceOK)
 				continua = false;
 
+			// server sovraccarico, attesa casuale prima di lasciar riprovare
+			if (codice == codiceOccupato)
+				attesaOccupato();
+
 		}
 
 		// registrazione/login a buon fine
 		return true;
 	}
 
+	/**
+	 * Metodo che attende un tempo casuale dopo una risposta server occupato, in
+	 * modo che i client respinti non riprovino tutti nello stesso istante
+	 */
+	private static void attesaOccupato() {
+		int attesa = ThreadLocalRandom.current().nextInt(attesaMinimaOccupato, attesaMassimaOccupato);
+		System.out.println("Nuovo tentativo possibile tra " + (attesa + 999) / 1000 + " secondi...");
+
+		try {
+			Thread.sleep(attesa);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	/**
 	 * Metodo che fa uscire il client inviando un messaggio al server e
 	 * interrompendo il thread che gestisce i risultati condivisi
 	 * 
-	 * @param out                stream scrittura su socket
+	 * @param protocollo         protocollo della connessione con il server
 	 * @param threadCondivisioni thread che gestisce i risultati condivisi da
 	 *                           interrompere
 	 * 
 	 * @throws IOException errore scrittura sulla socket
 	 */
-	private static void esci(DataOutputStream out, Thread threadCondivisioni) throws IOException {
+	private static void esci(Protocollo protocollo, Thread threadCondivisioni) throws IOException {
 		// invio richiesta di uscire
-		String richiesta = codiceEsci + ";";
-		out.writeUTF(richiesta);
+		protocollo.esci();
 
 		// solo se chiamato dopo il login
 		if (threadCondivisioni != null) {
@@ -263,58 +322,82 @@ public class WordleClientMain {
 	/**
 	 * Metodo che gestisce la partita dell'utente
 	 * 
-	 * @param in   stream lettura su socket
-	 * @param out  stream scrittura su socket
-	 * @param scan scanner per input da tastiera
+	 * @param protocollo protocollo della connessione con il server
+	 * @param scan       scanner per input da tastiera
 	 * 
 	 * @throws IOException errore lettura/scrittura su socket
 	 */
-	private static void indovinaParola(DataInputStream in, DataOutputStream out, Scanner scan) throws IOException {
+	private static void indovinaParola(Protocollo protocollo, Scanner scan) throws IOException {
 
-		// richiesta di giocare al server
-		String richiesta = codiceGioca + ";";
-		out.writeUTF(richiesta);
+		// richiesta di giocare al server e risposta
+		Risposta risposta = protocollo.gioca();
 
-		// risposta server
-		String[] parteRisposta = in.readUTF().split(";");
+		System.out.println(risposta.getMessaggio());
 
-		System.out.println(parteRisposta[1]);
-
-		if (Integer.parseInt(parteRisposta[0]) == codiceErrore) {
+		if (risposta.getCodice() == codiceErrore) {
 			// l'utente ha gia' giocato
 			return;
 		}
 
 		// ciclo gestione tentativi
-		while (true) {
-			// utente immette stringa da tastiera
-			System.out.println("\nInserisci parola (EXIT arrenderti): ");
-			String tentativo = scan.nextLine().trim().toLowerCase(); // tentativo normalizzato
+		boolean terminata = false;
+		while (!terminata) {
+			// utente immette una o piu' parole da tastiera, inviate insieme
+			System.out.println("\nInserisci parola, anche piu' di una separate da spazi (STAT statistiche, EXIT arrenderti): ");
+			String[] comandi = scan.nextLine().trim().toLowerCase().split("\\s+"); // tentativi normalizzati
+
+			// invio in pipeline di tentativi e statistiche, spediti insieme alla
+			// prima lettura di una risposta
+			List<String> inviati = new ArrayList<String>();
+			boolean resa = false;
+			for (String comando : comandi) {
+				// controllo se utente si arrende ed esce, comandi successivi ignorati
+				if ("exit".equals(comando)) {
+					protocollo.arrenditi();
+					resa = true;
+					break;
+				}
 
-			// controllo se utente si arrende ed esce
-			if ("exit".equals(tentativo)) {
-				out.writeUTF(tentativo);
-				System.out.println(); // spazio CLI
-				return;
-			}
+				if ("stat".equals(comando)) {
+					protocollo.inviaStatistiche();
+					inviati.add(comando);
+					continue;
+				}
 
-			// controllo validita' stringa inserita
-			if (!tentativo.matches("^[a-z]{10}$")) {
-				System.out.println("\nParola non valida\n");
-				continue;
+				// controllo validita' stringa inserita
+				if (!comando.matches("^[a-z]{10}$")) {
+					System.out.println("\nParola non valida: " + comando);
+					continue;
+				}
+
+				protocollo.inviaTentativo(comando);
+				inviati.add(comando);
 			}
 
-			// invio tentativo
-			out.writeUTF(tentativo);
+			// ricezione risposte nello stesso ordine delle richieste
+			for (String comando : inviati) {
+				if ("stat".equals(comando)) {
+					System.out.println("\n" + protocollo.riceviStatistiche().getMessaggio());
+					continue;
+				}
 
-			// ricezione risposta
-			parteRisposta = in.readUTF().split(";");
+				risposta = protocollo.riceviTentativo();
 
-			System.out.println("\n" + parteRisposta[1]);
+				// tentativi inviati dopo la fine della partita, rifiutati dal server
+				if (terminata)
+					continue;
 
-			// se parola indovinata o tentativi esauriti
-			if (Integer.parseInt(parteRisposta[0]) == finePartita)
-				break;
+				System.out.println("\n" + risposta.getMessaggio());
+
+				// se parola indovinata o tentativi esauriti
+				if (risposta.getCodice() == finePartita)
+					terminata = true;
+			}
+
+			if (resa) {
+				System.out.println(); // spazio CLI
+				return;
+			}
 		}
 
 		// fine partita, l'utente sceglie se condividere il risultato
@@ -328,10 +411,8 @@ public class WordleClientMain {
 
 				if (scelta == 1) {
 					// condivisione
-					richiesta = codiceCondividi + ";";
-					out.writeUTF(richiesta);
-					parteRisposta = in.readUTF().split(";");
-					System.out.println(parteRisposta[1]);
+					risposta = protocollo.condividi();
+					System.out.println(risposta.getMessaggio());
 
 					System.out.println("Invio per continuare");
 					scan.nextLine();
@@ -340,8 +421,7 @@ public class WordleClientMain {
 
 				if (scelta == 2) {
 					// no condivisione
-					richiesta = codiceOK + ";";
-					out.writeUTF(richiesta);
+					protocollo.nonCondividere();
 					break;
 				}
 
@@ -360,40 +440,90 @@ public class WordleClientMain {
 	 * Metodo che richiede le statistiche del profilo del giocatore al server.
 	 * Ricevuta la risposta le stampa.
 	 * 
-	 * @param in  stream lettura su socket
-	 * @param out stream scrittura su socket
+	 * @param protocollo protocollo della connessione con il server
 	 * 
 	 * @throws IOException errore lettura o scrittura sulla socket
 	 */
-	private static void statisticheProfilo(DataInputStream in, DataOutputStream out) throws IOException {
+	private static void statisticheProfilo(Protocollo protocollo) throws IOException {
 
-		// invio richiesta statistiche
-		String richiesta = codiceStatistiche + ";";
-		out.writeUTF(richiesta);
+		// invio richiesta statistiche, ricezione e stampa
+		System.out.println("\n" + protocollo.statistiche().getMessaggio());
+	}
+
+	/**
+	 * Metodo che richiede al server i primi in classifica e la posizione del
+	 * giocatore. Ricevuta la risposta la stampa.
+	 * 
+	 * @param protocollo protocollo della connessione con il server
+	 * 
+	 * @throws IOException errore lettura o scrittura sulla socket
+	 */
+	private static void classifica(Protocollo protocollo) throws IOException {
 
-		// ricezione statistiche e stampa
-		String[] parteRisposta = in.readUTF().split(";");
-		System.out.println("\n" + parteRisposta[1]);
+		// invio richiesta classifica, ricezione e stampa
+		System.out.println("\n" + protocollo.classifica().getMessaggio());
 	}
 
 	/**
-	 * Metodo che mostra tutti i risultati condivisi dagli utenti durante la
-	 * sessione, dal meno recente
+	 * Metodo che richiede al server le statistiche delle ultime parole estratte.
+	 * Ricevuta la risposta le stampa.
 	 * 
-	 * @param condivisioni lista che contiene i risultati condivisi
+	 * @param protocollo protocollo della connessione con il server
+	 * 
+	 * @throws IOException errore lettura o scrittura sulla socket
 	 */
-	private static void mostraCondivisioni(List<String> condivisioni) {
-		System.out.println(); // spazio CLI
+	private static void statisticheParole(Protocollo protocollo) throws IOException {
 
-		synchronized (condivisioni) {
-			if (condivisioni.isEmpty()) {
-				System.out.println("Nessuna condivisione\n");
-				return;
+		// invio richiesta statistiche parole, ricezione e stampa
+		System.out.println("\n" + protocollo.statisticheParole().getMessaggio());
+	}
+
+	/**
+	 * Metodo che mostra i risultati condivisi dagli utenti durante la sessione,
+	 * dal meno recente, tutti o filtrati per parola o utente. Stampa
+	 * un'istantanea della bacheca, il ricevitore continua ad aggiungere
+	 * condivisioni durante la stampa.
+	 * 
+	 * @param condivisioni bacheca dei risultati condivisi
+	 * @param scan         scanner per input da command line
+	 */
+	private static void mostraCondivisioni(BachecaCondivisioni condivisioni, Scanner scan) {
+		System.out.println("\nImmetti:\n1 - Tutte le condivisioni\n2 - Filtra per parola\n3 - Filtra per utente");
+
+		List<Condivisione> istantanea;
+		try {
+			switch (Integer.parseInt(scan.nextLine().trim())) {
+			case 2:
+				System.out.println("Id parola:");
+				istantanea = condivisioni.perParola(Integer.parseInt(scan.nextLine().trim()));
+				break;
+
+			case 3:
+				System.out.println("Username:");
+				istantanea = condivisioni.perUtente(scan.nextLine().trim());
+				break;
+
+			default:
+				istantanea = condivisioni.istantanea();
 			}
+		} catch (NumberFormatException e) {
+			// non e' stato inserito un numero
+			System.out.println("\nScelta non valida\n");
+			return;
+		}
 
-			for (String risultato : condivisioni)
-				System.out.println(risultato);
+		System.out.println(); // spazio CLI
+
+		if (istantanea.isEmpty()) {
+			System.out.println("Nessuna condivisione\n");
+		} else {
+			for (Condivisione risultato : istantanea)
+				System.out.println(risultato.testo());
 		}
+
+		long eliminate = condivisioni.eliminate();
+		if (eliminate > 0)
+			System.out.println("(" + eliminate + " condivisioni meno recenti eliminate)\n");
 	}
 
 }
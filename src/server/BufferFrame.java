@@ -0,0 +1,38 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Buffer riusabile in cui i protocolli compongono i frame da inviare. L'array
+ * interno viene passato al canale senza copia.
+ */
+class BufferFrame extends ByteArrayOutputStream {
+
+	BufferFrame() {
+		super(256);
+	}
+
+	/**
+	 * @return array interno, valido fino alla prossima scrittura
+	 */
+	byte[] array() {
+		return buf;
+	}
+
+	/**
+	 * Metodo che scrive nei primi 2 byte la lunghezza del contenuto che segue,
+	 * per i frame composti lasciando spazio alla lunghezza
+	 *
+	 * @throws IOException se il contenuto supera la lunghezza di un frame
+	 */
+	void chiudiFrame() throws IOException {
+		int lunghezza = count - 2;
+		if (lunghezza > 0xFFFF)
+			throw new IOException("Frame troppo lungo: " + lunghezza);
+
+		buf[0] = (byte) (lunghezza >>> 8);
+		buf[1] = (byte) lunghezza;
+	}
+
+}
@@ -0,0 +1,95 @@
+package server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+/**
+ * Calendario delle prossime parole: le parole che seguono la corrente nella
+ * permutazione sono lette dal vocabolario e costruite con la loro scadenza
+ * subito dopo ogni cambio, cosi' alla scadenza successiva il cambio parola
+ * pubblica un oggetto gia' pronto, senza letture del vocabolario ne' scritture
+ * del seme. Il calendario non supera la fine della permutazione: il nuovo seme
+ * viene scritto solo quando la prima parola della nuova permutazione diventa
+ * corrente, altrimenti dopo un riavvio il cursore della parola corrente sarebbe
+ * ricalcolato con il seme sbagliato. Il calendario non e' salvato: la
+ * permutazione lo ricostruisce dalla parola corrente.
+ *
+ * Usato solo dal thread di cambio parola, non e' thread-safe.
+ */
+public class CalendarioParole {
+
+	// parole preparate in anticipo
+	private static final int paroleInAnticipo = 16;
+
+	// ordine di estrazione e vocabolario da cui leggere le parole
+	private final SequenzaParole sequenza;
+	private final Vocabolario vocabolario;
+
+	// durata di una parola (millisecondi)
+	private final long durata;
+
+	// prossime parole in ordine di estrazione e id della parola che le precede
+	private final ArrayDeque<Parola> prossime = new ArrayDeque<>(paroleInAnticipo);
+	private int idPrecedente = -1;
+
+	public CalendarioParole(SequenzaParole sequenza, Vocabolario vocabolario, long durata) {
+		this.sequenza = sequenza;
+		this.vocabolario = vocabolario;
+		this.durata = durata;
+	}
+
+	/**
+	 * Metodo che restituisce la parola che segue la corrente, gia' preparata se
+	 * il calendario parte dalla corrente. Una parola preparata con la scadenza
+	 * gia' passata (server fermo oltre la scadenza) viene ricostruita con una
+	 * scadenza a partire da adesso.
+	 *
+	 * @param corrente parola corrente
+	 * @param adesso   istante del cambio parola
+	 *
+	 * @return la nuova parola, da pubblicare
+	 *
+	 * @throws IOException errore di scrittura del seme di una nuova permutazione
+	 */
+	public Parola prossima(Parola corrente, long adesso) throws IOException {
+		if (corrente.getId() != idPrecedente)
+			prossime.clear();
+
+		Parola prossima = prossime.pollFirst();
+		if (prossima == null) {
+			// calendario vuoto o fine della permutazione, unico caso con scrittura
+			int indice = sequenza.successiva(corrente.getId() - 1);
+			prossima = new Parola(vocabolario.parola(indice), indice + 1, adesso + durata);
+		} else if (prossima.getScadenza() <= adesso) {
+			prossima = new Parola(prossima.getParola(), prossima.getId(), adesso + durata);
+		}
+
+		idPrecedente = prossima.getId();
+		return prossima;
+	}
+
+	/**
+	 * Metodo che completa il calendario dopo la parola corrente, da chiamare dopo
+	 * averla pubblicata. Le scadenze seguono quella della corrente, come le
+	 * esecuzioni a frequenza fissa del cambio parola.
+	 *
+	 * @param corrente parola corrente
+	 */
+	public void prepara(Parola corrente) {
+		if (corrente.getId() != idPrecedente) {
+			prossime.clear();
+			idPrecedente = corrente.getId();
+		}
+
+		Parola ultima = prossime.isEmpty() ? corrente : prossime.peekLast();
+		while (prossime.size() < paroleInAnticipo) {
+			int indice = sequenza.successivaPrevista(ultima.getId() - 1);
+			if (indice < 0)
+				return;
+
+			ultima = new Parola(vocabolario.parola(indice), indice + 1, ultima.getScadenza() + durata);
+			prossime.addLast(ultima);
+		}
+	}
+
+}
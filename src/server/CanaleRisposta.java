@@ -0,0 +1,66 @@
+package server;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Canale su cui una sessione invia le risposte al client, indipendente dal
+ * modo in cui la connessione viene gestita (thread dedicato o reactor NIO)
+ */
+public interface CanaleRisposta {
+
+	/**
+	 * Invia un frame al client (lunghezza su 2 byte e contenuto), composto dal
+	 * protocollo della sessione. L'array puo' essere riusato dopo la chiamata.
+	 *
+	 * @param frame     array che contiene il frame dalla posizione 0
+	 * @param lunghezza lunghezza del frame, compresi i 2 byte di lunghezza
+	 *
+	 * @throws IOException errore di scrittura sulla connessione
+	 */
+	void invia(byte[] frame, int lunghezza) throws IOException;
+
+	/**
+	 * Continua la sessione con il risultato di un calcolo eseguito su un altro
+	 * thread. Le richieste successive del client sono gestite solo dopo la
+	 * continuazione. Il thread dedicato attende il risultato, il reactor NIO
+	 * sospende la lettura della connessione e continua a servire le altre.
+	 *
+	 * @param calcolo       calcolo in corso
+	 * @param continuazione codice da eseguire con il risultato
+	 *
+	 * @throws IOException errore della continuazione o attesa interrotta
+	 */
+	default <T> void attendi(CompletableFuture<T> calcolo, Continuazione<T> continuazione) throws IOException {
+		T risultato = null;
+		Throwable errore = null;
+
+		try {
+			risultato = calcolo.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Attesa interrotta");
+		} catch (ExecutionException e) {
+			errore = e.getCause();
+		}
+
+		continuazione.esegui(risultato, errore);
+	}
+
+	/**
+	 * Codice della sessione da eseguire al termine di un calcolo
+	 */
+	interface Continuazione<T> {
+
+		/**
+		 * @param risultato risultato del calcolo, null in caso di errore
+		 * @param errore    errore del calcolo, null se completato
+		 *
+		 * @throws IOException errore di scrittura sul canale
+		 */
+		void esegui(T risultato, Throwable errore) throws IOException;
+
+	}
+
+}
@@ -0,0 +1,313 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Classifica globale degli utenti, mantenuta in un albero di statistiche
+ * d'ordine (treap con la dimensione di ogni sottoalbero) aggiornato ad ogni
+ * vittoria, senza ordinare gli utenti ad ogni richiesta. La posizione di un
+ * punteggio costa O(log n), i primi K O(log n + K) e restano in cache fino
+ * alla vittoria successiva.
+ *
+ * Punteggio: ogni vittoria vale tentativiMassimi + 1 meno i tentativi
+ * impiegati, cioe' le vittorie pesate per il numero medio di tentativi. Sono
+ * in classifica solo gli utenti con almeno una vittoria, ordinati per
+ * punteggio decrescente e a parita' per username; utenti con lo stesso
+ * punteggio hanno la stessa posizione.
+ */
+public class Classifica {
+
+	/**
+	 * Voce della classifica restituita ai client
+	 */
+	public static final class Voce {
+
+		private final int posizione;
+		private final String username;
+		private final int punteggio;
+
+		private Voce(int posizione, String username, int punteggio) {
+			this.posizione = posizione;
+			this.username = username;
+			this.punteggio = punteggio;
+		}
+
+		// getters
+
+		public int getPosizione() {
+			return posizione;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public int getPunteggio() {
+			return punteggio;
+		}
+
+	}
+
+	// nodo del treap: chiave (punteggio, username), priorita' casuale e numero
+	// di nodi del sottoalbero
+	private static final class Nodo {
+
+		private final int punteggio;
+		private final String username;
+		private final int priorita = ThreadLocalRandom.current().nextInt();
+
+		private Nodo sinistro;
+		private Nodo destro;
+		private int dimensione = 1;
+
+		private Nodo(int punteggio, String username) {
+			this.punteggio = punteggio;
+			this.username = username;
+		}
+
+	}
+
+	// numero di voci restituite ai client
+	private final int dimensionePrimi;
+
+	// letture concorrenti, aggiornamenti esclusivi
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// radice del treap, null se nessun utente ha vinto
+	private Nodo radice;
+
+	// primi in classifica, null dopo ogni aggiornamento fino alla richiesta
+	// successiva
+	private volatile Voce[] primi;
+
+	/**
+	 * Costruttore che inserisce in classifica gli utenti ripristinati
+	 *
+	 * @param dimensionePrimi numero di voci restituite ai client
+	 * @param utenti          registro degli utenti, gia' ripristinato
+	 */
+	public Classifica(int dimensionePrimi, RegistroUtenti utenti) {
+		this.dimensionePrimi = dimensionePrimi;
+
+		for (DatiUtente utente : utenti.utenti()) {
+			int punteggio = punteggio(utente.statistiche());
+			if (punteggio > 0)
+				radice = inserisci(radice, new Nodo(punteggio, utente.getUsername()));
+		}
+	}
+
+	/**
+	 * @param statistiche statistiche di un utente
+	 *
+	 * @return punteggio in classifica, 0 se l'utente non ha mai vinto
+	 */
+	public static int punteggio(StatisticheUtente statistiche) {
+		int punteggio = 0;
+		for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+			punteggio += statistiche.getDistribuzioneTentativi(i) * valoreVittoria(i + 1);
+
+		return punteggio;
+	}
+
+	/**
+	 * @param tentativi tentativi impiegati
+	 *
+	 * @return punteggio di una vittoria
+	 */
+	private static int valoreVittoria(int tentativi) {
+		return StatisticheUtente.tentativiMassimi + 1 - tentativi;
+	}
+
+	/**
+	 * Metodo che aggiorna la posizione di un utente dopo una vittoria, gia'
+	 * registrata nelle sue statistiche
+	 *
+	 * @param username    username dell'utente
+	 * @param statistiche statistiche comprensive della vittoria
+	 * @param tentativi   tentativi impiegati
+	 */
+	public void registraVittoria(String username, StatisticheUtente statistiche, int tentativi) {
+		int punteggio = punteggio(statistiche);
+		int precedente = punteggio - valoreVittoria(tentativi);
+
+		lock.writeLock().lock();
+		try {
+			if (precedente > 0)
+				radice = rimuovi(radice, precedente, username);
+			radice = inserisci(radice, new Nodo(punteggio, username));
+			primi = null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return i primi utenti in classifica, al piu' dimensionePrimi
+	 */
+	public Voce[] primi() {
+		Voce[] attuali = primi;
+		if (attuali != null)
+			return attuali;
+
+		lock.readLock().lock();
+		try {
+			// visita in ordine dei primi nodi, salvata sotto il lock di lettura
+			// per non sovrascrivere l'azzeramento di un aggiornamento successivo
+			int numero = Math.min(dimensionePrimi, dimensione(radice));
+			attuali = new Voce[numero];
+
+			ArrayDeque<Nodo> pila = new ArrayDeque<>();
+			Nodo nodo = radice;
+			for (int i = 0; i < numero; i++) {
+				for (; nodo != null; nodo = nodo.sinistro)
+					pila.push(nodo);
+				nodo = pila.pop();
+
+				int posizione = i > 0 && attuali[i - 1].punteggio == nodo.punteggio ? attuali[i - 1].posizione
+						: i + 1;
+				attuali[i] = new Voce(posizione, nodo.username, nodo.punteggio);
+
+				nodo = nodo.destro;
+			}
+
+			primi = attuali;
+			return attuali;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Metodo che calcola la posizione di un punteggio, pari al numero di utenti
+	 * con punteggio maggiore piu' uno
+	 *
+	 * @param punteggio punteggio dell'utente
+	 *
+	 * @return posizione in classifica, 0 se il punteggio e' 0
+	 */
+	public int posizione(int punteggio) {
+		if (punteggio <= 0)
+			return 0;
+
+		lock.readLock().lock();
+		try {
+			int maggiori = 0;
+			Nodo nodo = radice;
+			while (nodo != null) {
+				if (nodo.punteggio > punteggio) {
+					maggiori += dimensione(nodo.sinistro) + 1;
+					nodo = nodo.destro;
+				} else {
+					nodo = nodo.sinistro;
+				}
+			}
+
+			return maggiori + 1;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return ordine della chiave (punteggio, username) rispetto a quella del
+	 *         nodo, punteggi maggiori prima
+	 */
+	private static int confronta(int punteggio, String username, Nodo nodo) {
+		if (punteggio != nodo.punteggio)
+			return punteggio > nodo.punteggio ? -1 : 1;
+
+		return username.compareTo(nodo.username);
+	}
+
+	private static int dimensione(Nodo nodo) {
+		return nodo == null ? 0 : nodo.dimensione;
+	}
+
+	private static void aggiornaDimensione(Nodo nodo) {
+		nodo.dimensione = dimensione(nodo.sinistro) + dimensione(nodo.destro) + 1;
+	}
+
+	/**
+	 * Metodo che inserisce un nodo nel sottoalbero, risalendo con rotazioni
+	 * finche' la sua priorita' e' maggiore di quella del padre
+	 *
+	 * @return nuova radice del sottoalbero
+	 */
+	private static Nodo inserisci(Nodo radice, Nodo nuovo) {
+		if (radice == null)
+			return nuovo;
+
+		if (confronta(nuovo.punteggio, nuovo.username, radice) < 0) {
+			radice.sinistro = inserisci(radice.sinistro, nuovo);
+			if (radice.sinistro.priorita > radice.priorita) {
+				// rotazione a destra
+				Nodo figlio = radice.sinistro;
+				radice.sinistro = figlio.destro;
+				figlio.destro = radice;
+				aggiornaDimensione(radice);
+				radice = figlio;
+			}
+		} else {
+			radice.destro = inserisci(radice.destro, nuovo);
+			if (radice.destro.priorita > radice.priorita) {
+				// rotazione a sinistra
+				Nodo figlio = radice.destro;
+				radice.destro = figlio.sinistro;
+				figlio.sinistro = radice;
+				aggiornaDimensione(radice);
+				radice = figlio;
+			}
+		}
+
+		aggiornaDimensione(radice);
+		return radice;
+	}
+
+	/**
+	 * Metodo che rimuove il nodo con la chiave data dal sottoalbero, se presente
+	 *
+	 * @return nuova radice del sottoalbero
+	 */
+	private static Nodo rimuovi(Nodo radice, int punteggio, String username) {
+		if (radice == null)
+			return null;
+
+		int confronto = confronta(punteggio, username, radice);
+		if (confronto == 0)
+			return unisci(radice.sinistro, radice.destro);
+
+		if (confronto < 0)
+			radice.sinistro = rimuovi(radice.sinistro, punteggio, username);
+		else
+			radice.destro = rimuovi(radice.destro, punteggio, username);
+
+		aggiornaDimensione(radice);
+		return radice;
+	}
+
+	/**
+	 * Metodo che unisce due sottoalberi, con le chiavi del primo tutte minori di
+	 * quelle del secondo
+	 *
+	 * @return radice dell'unione
+	 */
+	private static Nodo unisci(Nodo primo, Nodo secondo) {
+		if (primo == null)
+			return secondo;
+		if (secondo == null)
+			return primo;
+
+		if (primo.priorita > secondo.priorita) {
+			primo.destro = unisci(primo.destro, secondo);
+			aggiornaDimensione(primo);
+			return primo;
+		}
+
+		secondo.sinistro = unisci(primo, secondo.sinistro);
+		aggiornaDimensione(secondo);
+		return secondo;
+	}
+
+}
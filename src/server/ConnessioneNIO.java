@@ -0,0 +1,282 @@
+package server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Stato di una connessione gestita dal reactor NIO: buffer di lettura per il
+ * riassemblaggio dei frame, buffer delle risposte da scrivere e sessione di
+ * protocollo associata. Le risposte alle richieste ricevute con una lettura
+ * sono accumulate e scritte sul canale con un'unica scrittura. Se il client
+ * non riceve le risposte e quelle in attesa superano una soglia, la
+ * connessione smette di leggere ed elaborare richieste finche' non sono state
+ * tutte scritte: il client che invia senza leggere viene rallentato dal
+ * controllo di flusso TCP invece di far crescere il buffer.
+ */
+public class ConnessioneNIO implements CanaleRisposta {
+
+	// dimensione iniziale buffer lettura e scrittura, crescono fino alla
+	// dimensione del frame o delle risposte in attesa
+	private static final int dimensioneIniziale = 256;
+
+	// risposte in attesa oltre le quali si sospendono lettura ed elaborazione
+	// delle richieste
+	private static final int sogliaScrittura = 64 * 1024;
+
+	// limite delle risposte in attesa: la soglia piu' le risposte di qualche
+	// frame di dimensione massima, oltre la connessione viene chiusa
+	private static final int massimoScrittura = sogliaScrittura + 4 * (2 + 65535);
+
+	// canale della connessione e chiave di registrazione nel selector
+	private final SocketChannel canale;
+	private final SelectionKey chiave;
+
+	// buffer lettura, in modalita' scrittura tra una lettura e l'altra
+	private ByteBuffer lettura;
+
+	// risposte in attesa di essere scritte sul canale, in modalita' scrittura
+	private ByteBuffer scrittura;
+
+	// sessione di protocollo guidata dai frame ricevuti
+	private Sessione sessione;
+
+	// esecuzione di compiti sul thread reactor, per le continuazioni
+	private final Executor reactor;
+
+	// TRUE se la sessione attende un calcolo, frame successivi non elaborati
+	private boolean inAttesa;
+
+	// TRUE se le risposte in attesa hanno superato la soglia, frame successivi
+	// non elaborati finche' non sono state scritte
+	private boolean sospesa;
+
+	// controllo di ammissione a cui restituire il posto della sessione alla
+	// chiusura, una sola volta
+	private final ControlloAccessi accessi;
+	private boolean chiusa;
+
+	public ConnessioneNIO(SocketChannel canale, SelectionKey chiave, Executor reactor, ControlloAccessi accessi) {
+		this.canale = canale;
+		this.chiave = chiave;
+		this.reactor = reactor;
+		this.accessi = accessi;
+		this.lettura = ByteBuffer.allocate(dimensioneIniziale);
+		this.scrittura = ByteBuffer.allocate(dimensioneIniziale);
+		// sessione impostata dal reactor dopo la creazione
+	}
+
+	public void setSessione(Sessione sessione) {
+		this.sessione = sessione;
+	}
+
+	/**
+	 * Metodo chiamato quando il canale e' pronto in lettura. Legge i byte
+	 * disponibili, passa alla sessione ogni frame completo e scrive tutte le
+	 * risposte insieme.
+	 *
+	 * @return FALSE se la connessione deve essere chiusa, TRUE altrimenti
+	 *
+	 * @throws IOException errore di lettura o scrittura o richiesta non valida
+	 */
+	public boolean leggi() throws IOException {
+		if (canale.read(lettura) == -1) {
+			// client ha chiuso la connessione
+			return false;
+		}
+
+		return elabora() && scrivi();
+	}
+
+	/**
+	 * Metodo che passa alla sessione i frame completi nel buffer di lettura,
+	 * fermandosi se la sessione attende un calcolo o se le risposte in attesa
+	 * superano la soglia
+	 *
+	 * @return FALSE se la connessione deve essere chiusa, TRUE altrimenti
+	 *
+	 * @throws IOException errore di scrittura o richiesta non valida
+	 */
+	private boolean elabora() throws IOException {
+		lettura.flip();
+
+		while (!inAttesa && lettura.remaining() >= 2) {
+			if (scrittura.position() >= sogliaScrittura) {
+				// client che non riceve le risposte, si smette di leggere
+				sospesa = true;
+				aggiornaLettura();
+				break;
+			}
+
+			// lunghezza frame come scritta da writeUTF
+			int lunghezzaFrame = 2 + (lettura.getShort(lettura.position()) & 0xFFFF);
+
+			if (lettura.remaining() < lunghezzaFrame) {
+				// frame incompleto, si ingrandisce il buffer se non puo' contenerlo
+				if (lettura.capacity() < lunghezzaFrame) {
+					ByteBuffer nuovo = ByteBuffer.allocate(lunghezzaFrame);
+					nuovo.put(lettura);
+					lettura = nuovo;
+					return true;
+				}
+				break;
+			}
+
+			// contenuto del frame passato alla sessione senza copia
+			int inizio = lettura.position();
+			lettura.position(inizio + lunghezzaFrame);
+
+			sessione.gestisciRichiesta(lettura.array(), lettura.arrayOffset() + inizio + 2, lunghezzaFrame - 2);
+
+			if (sessione.isTerminata()) {
+				// richieste successive all'uscita ignorate, la connessione viene chiusa
+				// dopo la scrittura delle risposte
+				lettura.clear();
+				return true;
+			}
+		}
+
+		lettura.compact();
+		return true;
+	}
+
+	/**
+	 * Metodo che scrive le risposte in attesa finche' il canale le accetta.
+	 * Chiamato dopo l'elaborazione delle richieste ricevute e quando il canale
+	 * e' pronto in scrittura. Se la lettura era sospesa per le risposte in
+	 * attesa e queste sono state tutte scritte, la riattiva ed elabora i frame
+	 * gia' ricevuti.
+	 *
+	 * @return FALSE se la sessione e' terminata e non ci sono piu' risposte da
+	 *         scrivere, TRUE altrimenti
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	public boolean scrivi() throws IOException {
+		if (scrittura.position() > 0) {
+			scrittura.flip();
+			canale.write(scrittura);
+			scrittura.compact();
+
+			if (scrittura.position() > 0) {
+				// buffer di invio del socket pieno, si attende OP_WRITE
+				chiave.interestOps(chiave.interestOps() | SelectionKey.OP_WRITE);
+				return true;
+			}
+		}
+
+		// risposte scritte, non serve piu' essere notificati in scrittura
+		if ((chiave.interestOps() & SelectionKey.OP_WRITE) != 0)
+			chiave.interestOps(chiave.interestOps() & ~SelectionKey.OP_WRITE);
+
+		if (sospesa) {
+			sospesa = false;
+			aggiornaLettura();
+			return elabora() && scrivi();
+		}
+
+		return !sessione.isTerminata();
+	}
+
+	@Override
+	public void invia(byte[] frame, int lunghezza) throws IOException {
+		// risposta accodata alle precedenti, scritta al termine dell'elaborazione
+		if (scrittura.remaining() < lunghezza) {
+			int necessaria = scrittura.position() + lunghezza;
+			if (necessaria > massimoScrittura)
+				throw new IOException("Troppe risposte in attesa");
+
+			ByteBuffer nuovo = ByteBuffer.allocate(Math.min(Math.max(scrittura.capacity() * 2, necessaria),
+					massimoScrittura));
+			scrittura.flip();
+			nuovo.put(scrittura);
+			scrittura = nuovo;
+		}
+
+		scrittura.put(frame, 0, lunghezza);
+	}
+
+	/**
+	 * Sospende la lettura della connessione fino al termine del calcolo: la
+	 * continuazione viene eseguita dal thread reactor, poi si elaborano i frame
+	 * gia' ricevuti. Se il calcolo e' gia' terminato la continuazione viene
+	 * eseguita subito.
+	 */
+	@Override
+	public <T> void attendi(CompletableFuture<T> calcolo, Continuazione<T> continuazione) throws IOException {
+		if (calcolo.isDone()) {
+			CanaleRisposta.super.attendi(calcolo, continuazione);
+			return;
+		}
+
+		inAttesa = true;
+		aggiornaLettura();
+
+		calcolo.whenComplete((risultato, errore) -> reactor.execute(() -> riprendi(continuazione, risultato,
+				errore instanceof CompletionException ? errore.getCause() : errore)));
+	}
+
+	/**
+	 * Metodo eseguito dal thread reactor al termine di un calcolo atteso
+	 *
+	 * @param continuazione codice della sessione da eseguire
+	 * @param risultato     risultato del calcolo
+	 * @param errore        errore del calcolo
+	 */
+	private <T> void riprendi(Continuazione<T> continuazione, T risultato, Throwable errore) {
+		// connessione chiusa durante l'attesa, la sessione e' gia' terminata
+		if (!chiave.isValid())
+			return;
+
+		try {
+			inAttesa = false;
+			continuazione.esegui(risultato, errore);
+
+			// la continuazione puo' aver iniziato una nuova attesa
+			aggiornaLettura();
+			if (!elabora() || !scrivi())
+				chiudi();
+		} catch (IOException e) {
+			System.err.println("\nErrore I/O: " + e.getMessage() + "\n");
+			chiudi();
+		}
+	}
+
+	/**
+	 * Metodo che attiva la notifica in lettura solo se la sessione non attende un
+	 * calcolo e le risposte in attesa non hanno superato la soglia
+	 */
+	private void aggiornaLettura() {
+		int interesse = chiave.interestOps();
+		int nuovo = inAttesa || sospesa ? interesse & ~SelectionKey.OP_READ : interesse | SelectionKey.OP_READ;
+		if (nuovo != interesse)
+			chiave.interestOps(nuovo);
+	}
+
+	/**
+	 * Metodo che chiude la connessione eseguendo il logout dell'utente
+	 */
+	public void chiudi() {
+		// chiusura gia' eseguita, ad esempio per errore prima della terminazione
+		if (chiusa)
+			return;
+		chiusa = true;
+
+		if (sessione != null)
+			sessione.chiudi();
+
+		chiave.cancel();
+		try {
+			canale.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		accessi.esci();
+	}
+
+}
@@ -0,0 +1,91 @@
+package server;
+
+/**
+ * Componenti condivisi del server passati ad ogni sessione, indipendentemente
+ * dalla modalita' di gestione delle connessioni
+ */
+public class ContestoServer {
+
+	// invio in multicast dei risultati condivisi
+	private final PubblicatoreCondivisioni condivisioni;
+
+	// registro concorrente degli utenti
+	private final RegistroUtenti utenti;
+
+	// riferimento alla parola da indovinare
+	private final ParolaCorrente parola;
+
+	// vocabolario per controllo tentativi
+	private final Vocabolario vocabolario;
+
+	// salvataggio incrementale dello stato
+	private final Persistenza persistenza;
+
+	// calcolo e verifica delle credenziali
+	private final GestoreCredenziali credenziali;
+
+	// limiti di sessioni contemporanee e richieste di accesso
+	private final ControlloAccessi accessi;
+
+	// classifica globale degli utenti
+	private final Classifica classifica;
+
+	// statistiche delle ultime parole estratte
+	private final StatisticheParole statisticheParole;
+
+	public ContestoServer(PubblicatoreCondivisioni condivisioni, RegistroUtenti utenti, ParolaCorrente parola,
+			Vocabolario vocabolario, Persistenza persistenza, GestoreCredenziali credenziali,
+			ControlloAccessi accessi, Classifica classifica, StatisticheParole statisticheParole) {
+		this.condivisioni = condivisioni;
+		this.utenti = utenti;
+		this.parola = parola;
+		this.vocabolario = vocabolario;
+		this.persistenza = persistenza;
+		this.credenziali = credenziali;
+		this.accessi = accessi;
+		this.classifica = classifica;
+		this.statisticheParole = statisticheParole;
+	}
+
+	// getters
+
+	public PubblicatoreCondivisioni getCondivisioni() {
+		return condivisioni;
+	}
+
+	public RegistroUtenti getUtenti() {
+		return utenti;
+	}
+
+	/**
+	 * @return la parola attuale, immutabile
+	 */
+	public Parola getParola() {
+		return parola.get();
+	}
+
+	public Vocabolario getVocabolario() {
+		return vocabolario;
+	}
+
+	public Persistenza getPersistenza() {
+		return persistenza;
+	}
+
+	public GestoreCredenziali getCredenziali() {
+		return credenziali;
+	}
+
+	public ControlloAccessi getAccessi() {
+		return accessi;
+	}
+
+	public Classifica getClassifica() {
+		return classifica;
+	}
+
+	public StatisticheParole getStatisticheParole() {
+		return statisticheParole;
+	}
+
+}
@@ -0,0 +1,81 @@
+package server;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controllo di ammissione davanti alle sessioni: un limite alle sessioni
+ * contemporanee e un token bucket sulle richieste di login e registrazione.
+ * Oltre i limiti il server risponde subito "server occupato" invece di creare
+ * thread o accodare calcoli delle password senza limite, ad esempio quando
+ * allo scadere della parola tutti i client si riconnettono insieme.
+ */
+public class ControlloAccessi {
+
+	// permessi delle sessioni contemporanee
+	private final Semaphore sessioni;
+
+	// nanosecondi tra due gettoni e tolleranza pari alla capacita' del secchio,
+	// 0 se le richieste di accesso non sono limitate
+	private final long intervallo;
+	private final long tolleranza;
+
+	// istante teorico di arrivo della prossima richiesta conforme: il token
+	// bucket e' tenuto nella forma GCRA, un solo long aggiornato con CAS
+	private final AtomicLong prossimoArrivo;
+
+	/**
+	 * @param sessioniMassime  sessioni contemporanee, 0 per nessun limite
+	 * @param accessiAlSecondo gettoni aggiunti al secondo, 0 per nessun limite
+	 * @param burstAccessi     capacita' del secchio, richieste accettate in un
+	 *                         picco dopo un periodo di inattivita'
+	 */
+	public ControlloAccessi(int sessioniMassime, int accessiAlSecondo, int burstAccessi) {
+		this.sessioni = new Semaphore(sessioniMassime > 0 ? sessioniMassime : Integer.MAX_VALUE);
+		this.intervallo = accessiAlSecondo > 0 ? TimeUnit.SECONDS.toNanos(1) / accessiAlSecondo : 0;
+		this.tolleranza = intervallo * Math.max(burstAccessi - 1, 0);
+		this.prossimoArrivo = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Metodo che riserva un posto per una nuova sessione
+	 *
+	 * @return TRUE se la sessione e' ammessa, FALSE se il limite e' raggiunto
+	 */
+	public boolean entra() {
+		return sessioni.tryAcquire();
+	}
+
+	/**
+	 * Metodo che libera il posto di una sessione ammessa con entra()
+	 */
+	public void esci() {
+		sessioni.release();
+	}
+
+	/**
+	 * Metodo che consuma un gettone per una richiesta di login o registrazione
+	 *
+	 * @return TRUE se la richiesta puo' essere elaborata, FALSE se il secchio e'
+	 *         vuoto
+	 */
+	public boolean consentiAccesso() {
+		if (intervallo == 0)
+			return true;
+
+		long adesso = System.nanoTime();
+		while (true) {
+			long previsto = prossimoArrivo.get();
+
+			// gettoni esauriti: il secchio si riempie solo con il passare del tempo
+			if (previsto - adesso > tolleranza)
+				return false;
+
+			long successivo = Math.max(previsto, adesso) + intervallo;
+			if (prossimoArrivo.compareAndSet(previsto, successivo))
+				return true;
+		}
+	}
+
+}
@@ -0,0 +1,64 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Strumento di conversione del file di stato tra formato JSON e binario, da
+ * eseguire a server fermo. Il formato e' dedotto dall'estensione: .bin per il
+ * binario, qualsiasi altra per il JSON.
+ *
+ * Uso: java server.ConvertiStato origine destinazione [shard]
+ */
+public class ConvertiStato {
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Uso: java server.ConvertiStato origine destinazione [shard]");
+			System.exit(1);
+		}
+
+		// shard del JSON di destinazione, 0 per un unico file
+		int shard = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+
+		FileStato origine = apri(Paths.get(args[0]), 0);
+		FileStato destinazione = apri(Paths.get(args[1]), shard);
+
+		try {
+			if (!origine.esiste()) {
+				System.err.println("File non trovato: " + args[0]);
+				System.exit(1);
+			}
+
+			ParolaCorrente parola = new ParolaCorrente();
+			RegistroUtenti utenti = new RegistroUtentiHeap();
+
+			long inizio = System.nanoTime();
+			long lsn = origine.leggi(parola, utenti);
+			long letto = System.nanoTime();
+			destinazione.scrivi(parola, utenti, () -> lsn);
+			long scritto = System.nanoTime();
+
+			System.out.println("Utenti convertiti: " + utenti.numeroUtenti() + "\tLettura: "
+					+ (letto - inizio) / 1000000 + " ms\tScrittura: " + (scritto - letto) / 1000000 + " ms");
+
+		} catch (IOException e) {
+			System.err.println("Errore conversione: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param file  percorso del file di stato
+	 * @param shard shard in cui dividere gli utenti se JSON
+	 *
+	 * @return il file di stato nel formato dedotto dall'estensione
+	 */
+	private static FileStato apri(Path file, int shard) {
+		if (file.getFileName().toString().endsWith(".bin"))
+			return new FileStatoBinario(file);
+		return new FileStatoJson(file, shard);
+	}
+
+}
@@ -0,0 +1,181 @@
+package server;
+
+import java.security.MessageDigest;
+
+/**
+ * Credenziali di un utente, immutabili: funzione di derivazione, costo, sale e
+ * hash della password in byte. Il confronto con un hash calcolato avviene in
+ * tempo costante.
+ *
+ * Formato testuale (JSON e write-ahead log): per le funzioni non salate solo
+ * l'hash in esadecimale, come nelle versioni precedenti; per le altre
+ * nome$costo$sale$hash, sale e hash in esadecimale.
+ */
+public final class Credenziali {
+
+	// byte dell'hash e del sale delle funzioni salate
+	public static final int byteHash = 32;
+	public static final int byteSale = 16;
+
+	// funzioni di derivazione note, cercate per codice o per nome
+	private static final FunzioneDerivazione[] funzioni = { new DerivazioneSha256(), new DerivazionePbkdf2() };
+
+	// cifre esadecimali per la conversione di sale e hash
+	private static final char[] esadecimali = "0123456789abcdef".toCharArray();
+
+	// funzione usata per calcolare l'hash e suoi parametri
+	private final FunzioneDerivazione funzione;
+	private final int costo;
+	private final byte[] sale;
+
+	// hash della password
+	private final byte[] hash;
+
+	/**
+	 * @param funzione funzione di derivazione
+	 * @param costo    costo, 0 se la funzione non e' salata
+	 * @param sale     sale di byteSale byte, vuoto se la funzione non e' salata
+	 * @param hash     hash di byteHash byte, non copiato
+	 *
+	 * @throws IllegalArgumentException se i parametri non sono coerenti con la
+	 *                                  funzione
+	 */
+	public Credenziali(FunzioneDerivazione funzione, int costo, byte[] sale, byte[] hash) {
+		if (hash.length != byteHash || sale.length != (funzione.salata() ? byteSale : 0)
+				|| (funzione.salata() ? costo <= 0 : costo != 0))
+			throw new IllegalArgumentException("Credenziali non valide per " + funzione.nome());
+
+		this.funzione = funzione;
+		this.costo = costo;
+		this.sale = sale;
+		this.hash = hash;
+	}
+
+	// getters, gli array non vanno modificati
+
+	public FunzioneDerivazione getFunzione() {
+		return funzione;
+	}
+
+	public int getCosto() {
+		return costo;
+	}
+
+	public byte[] getSale() {
+		return sale;
+	}
+
+	public byte[] getHash() {
+		return hash;
+	}
+
+	/**
+	 * @param derivato hash calcolato dalla password fornita
+	 *
+	 * @return TRUE se l'hash coincide, confronto in tempo costante
+	 */
+	public boolean corrisponde(byte[] derivato) {
+		return MessageDigest.isEqual(hash, derivato);
+	}
+
+	/**
+	 * @return credenziali nel formato testuale
+	 */
+	public String testo() {
+		if (!funzione.salata())
+			return esadecimale(hash);
+		return funzione.nome() + "$" + costo + "$" + esadecimale(sale) + "$" + esadecimale(hash);
+	}
+
+	/**
+	 * @param testo credenziali nel formato testuale
+	 *
+	 * @return le credenziali lette
+	 *
+	 * @throws IllegalArgumentException se il testo non e' valido
+	 */
+	public static Credenziali daTesto(String testo) {
+		String[] parti = testo.split("\\$");
+
+		// formato delle versioni precedenti, solo hash SHA-256
+		if (parti.length == 1)
+			return new Credenziali(funzione((byte) 1), 0, new byte[0], daEsadecimale(testo));
+
+		if (parti.length != 4)
+			throw new IllegalArgumentException("Credenziali non valide");
+
+		try {
+			return new Credenziali(funzione(parti[0]), Integer.parseInt(parti[1]), daEsadecimale(parti[2]),
+					daEsadecimale(parti[3]));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Costo credenziali non valido");
+		}
+	}
+
+	/**
+	 * @param codice codice della funzione nei formati binari
+	 *
+	 * @return la funzione di derivazione
+	 *
+	 * @throws IllegalArgumentException se la funzione non e' nota
+	 */
+	public static FunzioneDerivazione funzione(byte codice) {
+		for (FunzioneDerivazione funzione : funzioni) {
+			if (funzione.codice() == codice)
+				return funzione;
+		}
+		throw new IllegalArgumentException("Funzione di derivazione sconosciuta: " + codice);
+	}
+
+	/**
+	 * @param nome nome della funzione nel formato testuale
+	 *
+	 * @return la funzione di derivazione
+	 *
+	 * @throws IllegalArgumentException se la funzione non e' nota
+	 */
+	public static FunzioneDerivazione funzione(String nome) {
+		for (FunzioneDerivazione funzione : funzioni) {
+			if (funzione.nome().equals(nome))
+				return funzione;
+		}
+		throw new IllegalArgumentException("Funzione di derivazione sconosciuta: " + nome);
+	}
+
+	/**
+	 * @param dati byte da convertire
+	 *
+	 * @return rappresentazione esadecimale
+	 */
+	private static String esadecimale(byte[] dati) {
+		char[] cifre = new char[dati.length * 2];
+		for (int i = 0; i < dati.length; i++) {
+			cifre[2 * i] = esadecimali[(dati[i] >> 4) & 0xF];
+			cifre[2 * i + 1] = esadecimali[dati[i] & 0xF];
+		}
+		return new String(cifre);
+	}
+
+	/**
+	 * @param testo rappresentazione esadecimale
+	 *
+	 * @return i byte rappresentati
+	 *
+	 * @throws IllegalArgumentException se il testo non e' esadecimale
+	 */
+	private static byte[] daEsadecimale(String testo) {
+		if (testo.length() % 2 != 0)
+			throw new IllegalArgumentException("Credenziali non valide");
+
+		byte[] dati = new byte[testo.length() / 2];
+		for (int i = 0; i < dati.length; i++) {
+			int alto = Character.digit(testo.charAt(2 * i), 16);
+			int basso = Character.digit(testo.charAt(2 * i + 1), 16);
+			if (alto < 0 || basso < 0)
+				throw new IllegalArgumentException("Credenziali non valide");
+			dati[i] = (byte) (alto << 4 | basso);
+		}
+		return dati;
+	}
+
+}
@@ -1,131 +1,125 @@
 package server;
 
-public class DatiUtente {
-
-	// dati generali profilo
-	private final String username;
-	private final String hashPassword;
-	private int partiteGiocate;
-	private int partiteVinte;
-	private int miglioreStreakVittorie;
-	private int streakVittorieInCorso;
-	private int[] distribuzioneTentativiImpiegati;
-
-	// dati ultima partita
-	private long scadenzaParolaGiocata;
-
-	// stato
-	private boolean loggato;
-
-	// costruttore nuovi utenti
-	public DatiUtente(String username, String password) {
-		this.username = username;
-		this.hashPassword = password;
-		this.partiteGiocate = 0;
-		this.partiteVinte = 0;
-		this.miglioreStreakVittorie = 0;
-		this.streakVittorieInCorso = 0;
-		this.distribuzioneTentativiImpiegati = new int[12];
-		this.scadenzaParolaGiocata = 0;
-		this.loggato = false;
-	}
+import java.io.IOException;
 
-	// costruttore utenti da JSON
-	public DatiUtente(String username, String password, int partiteGiocate, int partiteVinte,
-			int miglioreStreakVittorie, int streakVittorieInCorso, int[] distribuzioneTentativiImpiegati,
-			long scadenzaParolaGiocata) {
-		this.username = username;
-		this.hashPassword = password;
-		this.partiteGiocate = partiteGiocate;
-		this.partiteVinte = partiteVinte;
-		this.miglioreStreakVittorie = miglioreStreakVittorie;
-		this.streakVittorieInCorso = streakVittorieInCorso;
-		this.distribuzioneTentativiImpiegati = distribuzioneTentativiImpiegati;
-		this.scadenzaParolaGiocata = scadenzaParolaGiocata;
-	}
+/**
+ * Dati di un utente registrato: credenziali, statistiche di gioco e stato di
+ * login. A seconda del registro configurato i dati sono oggetti in heap
+ * (DatiUtenteHeap) o slot di un archivio fuori heap di cui l'oggetto e' solo
+ * una vista (DatiUtenteOffHeap).
+ */
+public abstract class DatiUtente {
 
-	// getters
-
-	public String getUsername() {
-		return username;
-	}
-
-	public String getHashPassword() {
-		return hashPassword;
-	}
-
-	public int getPartiteGiocate() {
-		return partiteGiocate;
-	}
+	// statistiche codificate nei frame di risposta, sostituite quando cambia
+	// l'LSN delle statistiche
+	private volatile StatisticheCodificate codificate;
 
-	public int getPartiteVinte() {
-		return partiteVinte;
-	}
+	// getters
 
-	public int getMiglioreStreakVittorie() {
-		return miglioreStreakVittorie;
-	}
+	public abstract String getUsername();
 
-	public int getStreakVittorieInCorso() {
-		return streakVittorieInCorso;
-	}
+	public abstract Credenziali getCredenziali();
 
-	public int[] getDistribuzioneTentativiImpiegati() {
-		return distribuzioneTentativiImpiegati;
-	}
+	/**
+	 * @return istantanea coerente delle statistiche di gioco
+	 */
+	public abstract StatisticheUtente statistiche();
 
-	public long getScadenzaParolaGiocata() {
-		return scadenzaParolaGiocata;
-	}
+	public abstract boolean isLoggato();
 
-	public synchronized boolean isLoggato() {
-		return loggato;
+	/**
+	 * @return LSN delle statistiche correnti, cambia ad ogni evento di gioco
+	 */
+	protected long lsnStatistiche() {
+		return statistiche().getLsn();
 	}
 
 	// statistiche da stampare su richiesta utente
 
 	public String getStatistiche() {
-		String statistiche = "Utente " + username + ":\n- Partite giocate: " + partiteGiocate + "\n- Partite vinte: "
-				+ partiteVinte + "\n- Streak di vittorie in corso: " + streakVittorieInCorso
-				+ "\n- Migliore streak di vittorie: " + miglioreStreakVittorie;
-
-		statistiche += "\n- Distribuzione vittorie: ";
-
-		for (int i = 0; i < 12; i++) {
-			statistiche += "\n\tVittorie al " + (i + 1) + " tentativo: " + distribuzioneTentativiImpiegati[i];
+		return testoStatistiche(getUsername(), statistiche());
+	}
+
+	/**
+	 * Metodo che restituisce le statistiche codificate nei frame di risposta dei
+	 * protocolli. I frame sono ricalcolati solo se le statistiche sono cambiate
+	 * dalla richiesta precedente.
+	 *
+	 * @return frame delle statistiche correnti
+	 *
+	 * @throws IOException errore di codifica
+	 */
+	public StatisticheCodificate statisticheCodificate() throws IOException {
+		StatisticheCodificate attuali = codificate;
+		if (attuali != null && attuali.getLsn() == lsnStatistiche())
+			return attuali;
+
+		// frame calcolati da un'unica istantanea, associati al suo LSN
+		StatisticheUtente s = statistiche();
+		attuali = new StatisticheCodificate(s.getLsn(),
+				ProtocolloTesto.frameStatistiche(testoStatistiche(getUsername(), s)),
+				ProtocolloBinario.frameStatistiche(s));
+		codificate = attuali;
+
+		return attuali;
+	}
+
+	/**
+	 * @param username username dell'utente
+	 * @param s        statistiche dell'utente
+	 *
+	 * @return statistiche in forma testuale
+	 */
+	private static String testoStatistiche(String username, StatisticheUtente s) {
+		StringBuilder statistiche = new StringBuilder(512);
+
+		statistiche.append("Utente ").append(username).append(":\n- Partite giocate: ").append(s.getPartiteGiocate())
+				.append("\n- Partite vinte: ").append(s.getPartiteVinte())
+				.append("\n- Streak di vittorie in corso: ").append(s.getStreakVittorieInCorso())
+				.append("\n- Migliore streak di vittorie: ").append(s.getMiglioreStreakVittorie());
+
+		statistiche.append("\n- Distribuzione vittorie: ");
+
+		for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++) {
+			statistiche.append("\n\tVittorie al ").append(i + 1).append(" tentativo: ")
+					.append(s.getDistribuzioneTentativi(i));
 		}
 
-		return statistiche;
-	}
-
-	// setters
-
-	public void setPartiteGiocate(int partiteGiocate) {
-		this.partiteGiocate = partiteGiocate;
-	}
-
-	public void setPartiteVinte(int partiteVinte) {
-		this.partiteVinte = partiteVinte;
-	}
-
-	public void setMiglioreStreakVittorie(int miglioreStreakVittorie) {
-		this.miglioreStreakVittorie = miglioreStreakVittorie;
-	}
-
-	public void setStreakVittorieInCorso(int streakVittorieInCorso) {
-		this.streakVittorieInCorso = streakVittorieInCorso;
-	}
-
-	public void setDistribuzioneTentativiImpiegati(int[] distribuzioneTentativiImpiegati) {
-		this.distribuzioneTentativiImpiegati = distribuzioneTentativiImpiegati;
-	}
-
-	public void setScadenzaParolaGiocata(long scadenzaParolaGiocata) {
-		this.scadenzaParolaGiocata = scadenzaParolaGiocata;
-	}
-
-	public synchronized void setLoggato(boolean loggato) {
-		this.loggato = loggato;
-	}
+		return statistiche.toString();
+	}
+
+	// aggiornamenti atomici delle statistiche
+
+	/**
+	 * Metodo che registra l'inizio di una partita se l'utente non ha gia' giocato
+	 * la parola con la scadenza data
+	 *
+	 * @param scadenza scadenza della parola da giocare
+	 * @param lsn      LSN del record che registra l'inizio della partita
+	 *
+	 * @return le statistiche precedenti l'inizio della partita, null se l'utente
+	 *         ha gia' giocato la parola
+	 */
+	public abstract StatisticheUtente iniziaPartita(long scadenza, long lsn);
+
+	/**
+	 * Metodo che registra la vittoria della partita in corso
+	 *
+	 * @param tentativi      numero di tentativi impiegati
+	 * @param streakVittorie streak di vittorie comprensiva di questa partita
+	 * @param lsn            LSN del record che registra la vittoria
+	 */
+	public abstract void registraVittoria(int tentativi, int streakVittorie, long lsn);
+
+	// login e logout
+
+	/**
+	 * Metodo che segna l'utente come loggato se non lo era gia'
+	 *
+	 * @return TRUE se il login e' riuscito, FALSE se l'utente era gia' loggato
+	 */
+	public abstract boolean login();
+
+	public abstract void logout();
 
 }
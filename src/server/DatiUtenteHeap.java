@@ -0,0 +1,95 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Dati di un utente in heap, usati dal registro RegistroUtentiHeap e per i
+ * dati letti da file o da rete prima di essere copiati in un archivio fuori
+ * heap.
+ */
+public class DatiUtenteHeap extends DatiUtente {
+
+	// dati generali profilo
+	private final String username;
+	private final Credenziali credenziali;
+
+	// statistiche di gioco, sostituite atomicamente ad ogni evento di gioco
+	private final AtomicReference<StatisticheUtente> statistiche;
+
+	// stato, modificato con CAS per impedire due login contemporanei
+	private final AtomicBoolean loggato = new AtomicBoolean(false);
+
+	// costruttore nuovi utenti
+	public DatiUtenteHeap(String username, Credenziali credenziali) {
+		this.username = username;
+		this.credenziali = credenziali;
+		this.statistiche = new AtomicReference<StatisticheUtente>(StatisticheUtente.iniziali);
+	}
+
+	// costruttore utenti da JSON
+	public DatiUtenteHeap(String username, Credenziali credenziali, int partiteGiocate, int partiteVinte,
+			int miglioreStreakVittorie, int streakVittorieInCorso, int[] distribuzioneTentativiImpiegati,
+			long scadenzaParolaGiocata, long lsn) {
+		this.username = username;
+		this.credenziali = credenziali;
+		this.statistiche = new AtomicReference<StatisticheUtente>(new StatisticheUtente(partiteGiocate, partiteVinte,
+				miglioreStreakVittorie, streakVittorieInCorso, distribuzioneTentativiImpiegati, scadenzaParolaGiocata,
+				lsn));
+	}
+
+	// getters
+
+	@Override
+	public String getUsername() {
+		return username;
+	}
+
+	@Override
+	public Credenziali getCredenziali() {
+		return credenziali;
+	}
+
+	@Override
+	public StatisticheUtente statistiche() {
+		return statistiche.get();
+	}
+
+	@Override
+	public boolean isLoggato() {
+		return loggato.get();
+	}
+
+	// aggiornamenti atomici delle statistiche
+
+	@Override
+	public StatisticheUtente iniziaPartita(long scadenza, long lsn) {
+		while (true) {
+			StatisticheUtente attuali = statistiche.get();
+
+			if (attuali.getScadenzaParolaGiocata() == scadenza)
+				return null;
+
+			if (statistiche.compareAndSet(attuali, attuali.conPartitaIniziata(scadenza, lsn)))
+				return attuali;
+		}
+	}
+
+	@Override
+	public void registraVittoria(int tentativi, int streakVittorie, long lsn) {
+		statistiche.updateAndGet(s -> s.conVittoria(tentativi, streakVittorie, lsn));
+	}
+
+	// login e logout
+
+	@Override
+	public boolean login() {
+		return loggato.compareAndSet(false, true);
+	}
+
+	@Override
+	public void logout() {
+		loggato.set(false);
+	}
+
+}
@@ -0,0 +1,77 @@
+package server;
+
+/**
+ * Vista sui dati di un utente conservati in uno slot di RegistroUtentiOffHeap.
+ * L'oggetto contiene solo il riferimento allo slot: viene creato ad ogni
+ * ricerca e non trattiene dati dell'utente in heap, a parte lo username letto
+ * la prima volta.
+ */
+public class DatiUtenteOffHeap extends DatiUtente {
+
+	// archivio e slot dell'utente
+	private final RegistroUtentiOffHeap registro;
+	private final int slot;
+
+	// username, letto dallo slot al primo uso se non noto alla creazione
+	private String username;
+
+	DatiUtenteOffHeap(RegistroUtentiOffHeap registro, int slot, String username) {
+		this.registro = registro;
+		this.slot = slot;
+		this.username = username;
+	}
+
+	// getters
+
+	@Override
+	public String getUsername() {
+		if (username == null)
+			username = registro.username(slot);
+		return username;
+	}
+
+	@Override
+	public Credenziali getCredenziali() {
+		return registro.credenziali(slot);
+	}
+
+	@Override
+	public StatisticheUtente statistiche() {
+		return registro.statistiche(slot);
+	}
+
+	@Override
+	public boolean isLoggato() {
+		return registro.isLoggato(slot);
+	}
+
+	@Override
+	protected long lsnStatistiche() {
+		return registro.lsn(slot);
+	}
+
+	// aggiornamenti atomici delle statistiche
+
+	@Override
+	public StatisticheUtente iniziaPartita(long scadenza, long lsn) {
+		return registro.iniziaPartita(slot, scadenza, lsn);
+	}
+
+	@Override
+	public void registraVittoria(int tentativi, int streakVittorie, long lsn) {
+		registro.registraVittoria(slot, tentativi, streakVittorie, lsn);
+	}
+
+	// login e logout
+
+	@Override
+	public boolean login() {
+		return registro.login(slot);
+	}
+
+	@Override
+	public void logout() {
+		registro.logout(slot);
+	}
+
+}
@@ -0,0 +1,57 @@
+package server;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * PBKDF2 con HMAC-SHA256, sale casuale e numero di iterazioni configurabile.
+ * Ogni thread del pool delle credenziali riusa la propria SecretKeyFactory.
+ */
+public class DerivazionePbkdf2 implements FunzioneDerivazione {
+
+	// istanza per thread, SecretKeyFactory non e' thread-safe
+	private static final ThreadLocal<SecretKeyFactory> fabbrica = ThreadLocal.withInitial(() -> {
+		try {
+			return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+		} catch (NoSuchAlgorithmException e) {
+			// algoritmo presente in ogni JVM da Java 8
+			throw new IllegalStateException(e);
+		}
+	});
+
+	@Override
+	public byte codice() {
+		return 2;
+	}
+
+	@Override
+	public String nome() {
+		return "pbkdf2";
+	}
+
+	@Override
+	public boolean salata() {
+		return true;
+	}
+
+	@Override
+	public boolean costosa() {
+		return true;
+	}
+
+	@Override
+	public byte[] deriva(String password, byte[] sale, int costo) {
+		PBEKeySpec specifica = new PBEKeySpec(password.toCharArray(), sale, costo, Credenziali.byteHash * 8);
+		try {
+			return fabbrica.get().generateSecret(specifica).getEncoded();
+		} catch (InvalidKeySpecException e) {
+			throw new IllegalArgumentException("Parametri PBKDF2 non validi", e);
+		} finally {
+			specifica.clearPassword();
+		}
+	}
+
+}
@@ -0,0 +1,50 @@
+package server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 della password senza sale, formato delle credenziali delle versioni
+ * precedenti. Ogni thread riusa la propria istanza di MessageDigest invece di
+ * crearne una ad ogni login.
+ */
+public class DerivazioneSha256 implements FunzioneDerivazione {
+
+	// istanza per thread, MessageDigest non e' thread-safe
+	private static final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// algoritmo obbligatorio in ogni JVM
+			throw new IllegalStateException(e);
+		}
+	});
+
+	@Override
+	public byte codice() {
+		return 1;
+	}
+
+	@Override
+	public String nome() {
+		return "sha256";
+	}
+
+	@Override
+	public boolean salata() {
+		return false;
+	}
+
+	@Override
+	public boolean costosa() {
+		return false;
+	}
+
+	@Override
+	public byte[] deriva(String password, byte[] sale, int costo) {
+		// digest riportato allo stato iniziale da digest()
+		return digest.get().digest(password.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
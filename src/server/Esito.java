@@ -0,0 +1,50 @@
+package server;
+
+/**
+ * Esiti delle richieste senza dati da restituire. Il protocollo testuale invia
+ * codice e messaggio, il protocollo binario solo il codice numerico di un
+ * byte e il client compone il messaggio.
+ */
+public enum Esito {
+
+	REGISTRATO(200, "Registrato con successo\n", 0),
+	LOGIN_EFFETTUATO(200, "Login effettuato con successo\n", 0),
+	CONDIVISO(200, "\nRisultato condiviso\n", 0),
+	OCCUPATO(301, "Server occupato, riprovare piu' tardi\n", 2),
+	UTENTE_NON_PRESENTE(300, "Utente non presente\n", 10),
+	PASSWORD_ERRATA(300, "Password errata\n", 11),
+	GIA_LOGGATO(300, "Utente gia loggato\n", 12),
+	USERNAME_USATO(300, "Username gia' usato\n", 13),
+	USERNAME_TROPPO_LUNGO(300, "Username troppo lungo\n", 14),
+	GIA_GIOCATO(300, "\nHai gia' giocato, aspetta la prossima parola\n", 20),
+	PAROLA_NON_VALIDA(300, "Parola non valida\n", 21),
+	PARTITA_TERMINATA(300, "Partita terminata\n", 22);
+
+	// codice risposta e messaggio del protocollo testuale
+	private final int codiceTesto;
+	private final String messaggio;
+
+	// codice risposta del protocollo binario
+	private final int codiceBinario;
+
+	private Esito(int codiceTesto, String messaggio, int codiceBinario) {
+		this.codiceTesto = codiceTesto;
+		this.messaggio = messaggio;
+		this.codiceBinario = codiceBinario;
+	}
+
+	// getters
+
+	public int getCodiceTesto() {
+		return codiceTesto;
+	}
+
+	public String getMessaggio() {
+		return messaggio;
+	}
+
+	public int getCodiceBinario() {
+		return codiceBinario;
+	}
+
+}
@@ -0,0 +1,49 @@
+package server;
+
+import java.io.IOException;
+import java.util.function.LongSupplier;
+
+/**
+ * Formato del file di stato completo: parola, utenti e LSN dell'ultimo record
+ * del write-ahead log contenuto nello stato
+ */
+public interface FileStato {
+
+	/**
+	 * @return TRUE se il file di stato esiste
+	 */
+	boolean esiste();
+
+	/**
+	 * Legge il file di stato pubblicando la parola e aggiungendo gli utenti al
+	 * registro
+	 *
+	 * @param parola riferimento in cui pubblicare la parola letta
+	 * @param utenti registro in cui aggiungere gli utenti, null per leggere solo
+	 *               parola e LSN (registro riaperto da file)
+	 *
+	 * @return LSN dell'ultimo record contenuto nello stato
+	 *
+	 * @throws IOException errore di lettura o file non valido
+	 */
+	long leggi(ParolaCorrente parola, RegistroUtenti utenti) throws IOException;
+
+	/**
+	 * Scrive lo stato completo sostituendo atomicamente il file precedente
+	 *
+	 * @param parola riferimento alla parola attuale
+	 * @param utenti utenti da scrivere
+	 * @param lsn    LSN dell'ultimo record contenuto, letto dopo gli utenti
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	void scrivi(ParolaCorrente parola, RegistroUtenti utenti, LongSupplier lsn) throws IOException;
+
+	/**
+	 * Elimina il file di stato, usato quando il server passa all'altro formato
+	 *
+	 * @throws IOException errore di eliminazione
+	 */
+	void elimina() throws IOException;
+
+}
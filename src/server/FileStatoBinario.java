@@ -0,0 +1,401 @@
+package server;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * File di stato in formato binario versionato. Rispetto al JSON l'hash della
+ * password occupa 32 byte invece di 64 caratteri e i contatori sono varint
+ * senza nomi di campo ripetuti.
+ *
+ * Formato (versione 2): "WRDS", versione (byte), parola (varint lunghezza e
+ * UTF-8), id (int), scadenza (long), utenti, varint 0, numero utenti (int),
+ * LSN (long), CRC32 (int) di tutti i byte precedenti. Ogni utente e'
+ * preceduto dalla lunghezza in varint, quindi puo' essere saltato senza
+ * decodificarlo: la lettura divide gli utenti in intervalli decodificati in
+ * parallelo sul ForkJoinPool comune. Dati utente: username (varint lunghezza
+ * e UTF-8), credenziali, partite giocate, partite vinte, migliore streak,
+ * streak in corso, 12 tentativi, scadenza ultima parola giocata e LSN, tutti
+ * in varint. Credenziali: codice della funzione di derivazione (byte), costo
+ * (varint) e sale (16 byte) se la funzione e' salata, hash (32 byte). La
+ * versione 1, ancora letta, ha solo l'hash SHA-256 al posto delle credenziali.
+ */
+public class FileStatoBinario implements FileStato {
+
+	// intestazione e versione del formato
+	private static final byte[] magic = { 'W', 'R', 'D', 'S' };
+	private static final byte versione = 2;
+	private static final byte versioneSha256 = 1;
+
+	// byte finali: numero utenti, LSN e CRC32
+	private static final int coda = 4 + 8 + 4;
+
+	// dimensione buffer di scrittura
+	private static final int dimensioneBuffer = 1024 * 1024;
+
+	// file di stato
+	private final Path file;
+
+	public FileStatoBinario(Path file) {
+		this.file = file;
+	}
+
+	@Override
+	public boolean esiste() {
+		return Files.exists(file);
+	}
+
+	@Override
+	public long leggi(ParolaCorrente parola, RegistroUtenti utenti) throws IOException {
+		try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+			long dimensione = canale.size();
+			if (dimensione > Integer.MAX_VALUE)
+				throw new IOException("File di stato binario oltre 2 GB");
+			if (dimensione < magic.length + 1 + coda)
+				throw new IOException("File di stato binario troncato");
+
+			MappedByteBuffer mappa = canale.map(FileChannel.MapMode.READ_ONLY, 0, dimensione);
+			int fine = (int) dimensione - coda;
+
+			// controllo integrita' prima di applicare qualsiasi dato
+			CRC32 crc = new CRC32();
+			crc.update(mappa.duplicate().limit(fine + coda - 4));
+			if ((int) crc.getValue() != mappa.getInt(fine + coda - 4))
+				throw new IOException("CRC file di stato binario errato");
+
+			for (int i = 0; i < magic.length; i++) {
+				if (mappa.get() != magic[i])
+					throw new IOException("File di stato binario non valido");
+			}
+			byte versioneFile = mappa.get();
+			if (versioneFile != versione && versioneFile != versioneSha256)
+				throw new IOException("Versione file di stato binario non supportata");
+
+			// parola
+			String testoParola = leggiStringa(mappa, new byte[64]);
+			int idParola = mappa.getInt();
+			parola.imposta(new Parola(testoParola, idParola, mappa.getLong()));
+
+			int numeroUtenti = mappa.getInt(fine);
+			long lsn = mappa.getLong(fine + 4);
+			if (utenti != null) {
+				utenti.dimensiona(numeroUtenti);
+				leggiUtenti(mappa, fine, numeroUtenti, versioneFile, utenti);
+			}
+
+			return lsn;
+		}
+	}
+
+	@Override
+	public void scrivi(ParolaCorrente parola, RegistroUtenti utenti, LongSupplier lsn) throws IOException {
+		Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileOutputStream output = new FileOutputStream(temporaneo.toFile())) {
+			// CRC calcolato sui blocchi del buffer, non sui singoli campi
+			CheckedOutputStream controllato = new CheckedOutputStream(output, new CRC32());
+			BufferedOutputStream buffer = new BufferedOutputStream(controllato, dimensioneBuffer);
+			Codifica codifica = new Codifica();
+
+			// intestazione e parola
+			Parola attuale = parola.get();
+			codifica.byteArray(magic, magic.length);
+			codifica.byteSingolo(versione);
+			codifica.stringa(attuale.getParola());
+			codifica.intero(attuale.getId());
+			codifica.lungo(attuale.getScadenza());
+			codifica.scrivi(buffer);
+
+			// utenti preceduti dalla lunghezza
+			int numeroUtenti = 0;
+			for (DatiUtente utente : utenti.utenti()) {
+				codifica.utente(utente);
+				scriviVarint(buffer, codifica.lunghezza);
+				codifica.scrivi(buffer);
+				numeroUtenti++;
+			}
+			scriviVarint(buffer, 0);
+
+			// LSN letto dopo gli utenti: maggiore o uguale a quello di ogni utente
+			codifica.intero(numeroUtenti);
+			codifica.lungo(lsn.getAsLong());
+			codifica.scrivi(buffer);
+			buffer.flush();
+
+			codifica.intero((int) controllato.getChecksum().getValue());
+			codifica.scrivi(output);
+
+			output.getFD().sync();
+		}
+
+		Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public void elimina() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	/**
+	 * Metodo che individua gli utenti saltandoli con la lunghezza e li decodifica
+	 * in parallelo ad intervalli
+	 *
+	 * @param mappa        file mappato posizionato sul primo utente
+	 * @param fine         posizione della coda del file
+	 * @param numeroUtenti numero di utenti riportato nella coda
+	 * @param versione     versione del file
+	 * @param utenti       registro in cui aggiungere gli utenti
+	 *
+	 * @throws IOException se il file non e' valido
+	 */
+	private static void leggiUtenti(ByteBuffer mappa, int fine, int numeroUtenti, byte versione,
+			RegistroUtenti utenti) throws IOException {
+		// intervalli di utenti di dimensione simile, alcuni per ogni thread
+		int intervalli = Math.max(1, ForkJoinPool.getCommonPoolParallelism() * 4);
+		int perIntervallo = Math.max(1, (numeroUtenti + intervalli - 1) / intervalli);
+
+		List<Callable<Void>> decodifiche = new ArrayList<Callable<Void>>(intervalli);
+		int inizio = mappa.position();
+
+		for (int i = 0; i < numeroUtenti; i++) {
+			int lunghezza = leggiVarint(mappa);
+			if (lunghezza <= 0 || lunghezza > fine - mappa.position())
+				throw new IOException("File di stato binario non valido");
+			mappa.position(mappa.position() + lunghezza);
+
+			if ((i + 1) % perIntervallo == 0 || i == numeroUtenti - 1) {
+				ByteBuffer intervallo = mappa.duplicate().position(inizio).limit(mappa.position());
+				decodifiche.add(() -> {
+					decodificaUtenti(intervallo, versione, utenti);
+					return null;
+				});
+				inizio = mappa.position();
+			}
+		}
+
+		if (leggiVarint(mappa) != 0 || mappa.position() != fine)
+			throw new IOException("File di stato binario non valido");
+
+		ShardUtenti.esegui(decodifiche);
+	}
+
+	/**
+	 * Metodo che decodifica un intervallo di utenti
+	 *
+	 * @param intervallo utenti con le rispettive lunghezze
+	 * @param versione   versione del file
+	 * @param utenti     registro in cui aggiungere gli utenti
+	 *
+	 * @throws IOException se le credenziali di un utente non sono valide
+	 */
+	private static void decodificaUtenti(ByteBuffer intervallo, byte versione, RegistroUtenti utenti)
+			throws IOException {
+		byte[] temporaneo = new byte[64];
+		int[] distribuzione = new int[StatisticheUtente.tentativiMassimi];
+
+		while (intervallo.hasRemaining()) {
+			// lunghezza gia' verificata dalla scansione
+			leggiVarint(intervallo);
+
+			String username = leggiStringa(intervallo, temporaneo);
+			Credenziali credenziali = leggiCredenziali(intervallo, versione);
+			int partiteGiocate = leggiVarint(intervallo);
+			int partiteVinte = leggiVarint(intervallo);
+			int miglioreStreakVittorie = leggiVarint(intervallo);
+			int streakVittorieInCorso = leggiVarint(intervallo);
+			for (int i = 0; i < distribuzione.length; i++)
+				distribuzione[i] = leggiVarint(intervallo);
+			long scadenzaParolaGiocata = leggiVarlong(intervallo);
+			long lsn = leggiVarlong(intervallo);
+
+			utenti.ripristina(new DatiUtenteHeap(username, credenziali, partiteGiocate, partiteVinte,
+					miglioreStreakVittorie, streakVittorieInCorso, distribuzione, scadenzaParolaGiocata, lsn));
+		}
+	}
+
+	/**
+	 * Buffer riusato per codificare un blocco di campi, in particolare un utente
+	 * di cui serve la lunghezza prima di scriverlo
+	 */
+	private static final class Codifica {
+		private byte[] dati = new byte[256];
+		private int lunghezza;
+
+		void utente(DatiUtente utente) {
+			StatisticheUtente statistiche = utente.statistiche();
+
+			stringa(utente.getUsername());
+			credenziali(utente.getCredenziali());
+			varlong(statistiche.getPartiteGiocate());
+			varlong(statistiche.getPartiteVinte());
+			varlong(statistiche.getMiglioreStreakVittorie());
+			varlong(statistiche.getStreakVittorieInCorso());
+			for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+				varlong(statistiche.getDistribuzioneTentativi(i));
+			varlong(statistiche.getScadenzaParolaGiocata());
+			varlong(statistiche.getLsn());
+		}
+
+		void stringa(String stringa) {
+			byte[] utf8 = stringa.getBytes(StandardCharsets.UTF_8);
+			varlong(utf8.length);
+			byteArray(utf8, utf8.length);
+		}
+
+		void credenziali(Credenziali credenziali) {
+			byteSingolo(credenziali.getFunzione().codice());
+			if (credenziali.getFunzione().salata()) {
+				varlong(credenziali.getCosto());
+				byteArray(credenziali.getSale(), Credenziali.byteSale);
+			}
+			byteArray(credenziali.getHash(), Credenziali.byteHash);
+		}
+
+		void varlong(long valore) {
+			spazio(10);
+			while ((valore & ~0x7FL) != 0) {
+				dati[lunghezza++] = (byte) ((valore & 0x7F) | 0x80);
+				valore >>>= 7;
+			}
+			dati[lunghezza++] = (byte) valore;
+		}
+
+		void intero(int valore) {
+			spazio(4);
+			for (int i = 24; i >= 0; i -= 8)
+				dati[lunghezza++] = (byte) (valore >>> i);
+		}
+
+		void lungo(long valore) {
+			spazio(8);
+			for (int i = 56; i >= 0; i -= 8)
+				dati[lunghezza++] = (byte) (valore >>> i);
+		}
+
+		void byteSingolo(byte valore) {
+			spazio(1);
+			dati[lunghezza++] = valore;
+		}
+
+		void byteArray(byte[] valori, int numero) {
+			spazio(numero);
+			System.arraycopy(valori, 0, dati, lunghezza, numero);
+			lunghezza += numero;
+		}
+
+		void scrivi(OutputStream output) throws IOException {
+			output.write(dati, 0, lunghezza);
+			lunghezza = 0;
+		}
+
+		private void spazio(int numero) {
+			if (lunghezza + numero > dati.length)
+				dati = Arrays.copyOf(dati, Math.max(dati.length * 2, lunghezza + numero));
+		}
+	}
+
+	/**
+	 * Metodo che scrive un intero non negativo in varint
+	 *
+	 * @param output stream su cui scrivere
+	 * @param valore valore da scrivere
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private static void scriviVarint(OutputStream output, int valore) throws IOException {
+		while ((valore & ~0x7F) != 0) {
+			output.write((valore & 0x7F) | 0x80);
+			valore >>>= 7;
+		}
+		output.write(valore);
+	}
+
+	/**
+	 * @param buffer buffer posizionato sul varint
+	 *
+	 * @return intero letto in varint
+	 */
+	private static int leggiVarint(ByteBuffer buffer) {
+		return (int) leggiVarlong(buffer);
+	}
+
+	/**
+	 * @param buffer buffer posizionato sul varint
+	 *
+	 * @return long letto in varint, 7 bit per byte a partire dai meno
+	 *         significativi
+	 */
+	private static long leggiVarlong(ByteBuffer buffer) {
+		long valore = 0;
+		int spostamento = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			valore |= (long) (b & 0x7F) << spostamento;
+			spostamento += 7;
+		} while (b < 0);
+		return valore;
+	}
+
+	/**
+	 * @param buffer   buffer posizionato sulle credenziali
+	 * @param versione versione del file
+	 *
+	 * @return le credenziali lette
+	 *
+	 * @throws IOException se la funzione non e' nota o i parametri non sono
+	 *                     validi
+	 */
+	private static Credenziali leggiCredenziali(ByteBuffer buffer, byte versione) throws IOException {
+		try {
+			FunzioneDerivazione funzione = versione == versioneSha256 ? Credenziali.funzione("sha256")
+					: Credenziali.funzione(buffer.get());
+
+			int costo = 0;
+			byte[] sale = new byte[0];
+			if (funzione.salata()) {
+				costo = leggiVarint(buffer);
+				sale = new byte[Credenziali.byteSale];
+				buffer.get(sale);
+			}
+
+			byte[] hash = new byte[Credenziali.byteHash];
+			buffer.get(hash);
+			return new Credenziali(funzione, costo, sale, hash);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("File di stato binario non valido: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param buffer     buffer posizionato sulla lunghezza della stringa
+	 * @param temporaneo array riusato per la decodifica
+	 *
+	 * @return la stringa decodificata da UTF-8
+	 */
+	private static String leggiStringa(ByteBuffer buffer, byte[] temporaneo) {
+		int lunghezza = leggiVarint(buffer);
+		byte[] utf8 = lunghezza <= temporaneo.length ? temporaneo : new byte[lunghezza];
+		buffer.get(utf8, 0, lunghezza);
+		return new String(utf8, 0, lunghezza, StandardCharsets.UTF_8);
+	}
+
+}
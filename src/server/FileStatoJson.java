@@ -0,0 +1,358 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.function.LongSupplier;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * File di stato in formato JSON. Con piu' shard gli utenti sono divisi in file
+ * letti e scritti in parallelo (ShardUtenti) e il file di stato riporta solo
+ * parola, serie e numero di shard; con 0 shard gli utenti sono nel file di
+ * stato, formato accettato anche dalle versioni precedenti.
+ */
+public class FileStatoJson implements FileStato {
+
+	// file di stato
+	private final Path file;
+
+	// numero di shard in cui dividere gli utenti, 0 per un unico file di stato
+	private final int shard;
+
+	// shard degli utenti e serie dell'ultimo file di stato
+	private final ShardUtenti shardUtenti;
+	private long serieShard;
+
+	public FileStatoJson(Path file, int shard) {
+		this.file = file;
+		this.shard = shard;
+		this.shardUtenti = new ShardUtenti(file);
+	}
+
+	@Override
+	public boolean esiste() {
+		return Files.exists(file);
+	}
+
+	@Override
+	public long leggi(ParolaCorrente parola, RegistroUtenti utenti) throws IOException {
+		try (JsonReader jsonReader = new JsonReader(new BufferedReader(
+				new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8)))) {
+			return leggiStato(jsonReader, parola, utenti);
+		}
+	}
+
+	/**
+	 * Metodo che scrive gli shard degli utenti e un file temporaneo che li
+	 * riferisce, poi lo sostituisce atomicamente al file di stato ed elimina gli
+	 * shard precedenti
+	 */
+	@Override
+	public void scrivi(ParolaCorrente parola, RegistroUtenti utenti, LongSupplier lsn) throws IOException {
+		Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+		long serie = serieShard + 1;
+
+		// utenti negli shard della nuova serie, ancora non riferiti
+		int numeroUtenti = shard > 0 ? shardUtenti.scrivi(serie, shard, utenti.utenti()) : utenti.numeroUtenti();
+
+		try (FileOutputStream output = new FileOutputStream(temporaneo.toFile());
+				JsonWriter jsonWriter = new JsonWriter(
+						new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)))) {
+			scriviStato(jsonWriter, parola, utenti, lsn, serie, numeroUtenti);
+			jsonWriter.flush();
+			output.getFD().sync();
+		}
+
+		// da qui gli shard precedenti sono superati dal nuovo stato
+		Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		serieShard = serie;
+		shardUtenti.eliminaAltreSerie(serie);
+	}
+
+	@Override
+	public void elimina() throws IOException {
+		Files.deleteIfExists(file);
+		shardUtenti.eliminaAltreSerie(0);
+	}
+
+	/**
+	 * Metodo che scrive il file di stato: parola, riferimento agli shard e, se
+	 * non divisi in shard, utenti
+	 *
+	 * @param jsonWriter   writer su cui scrivere
+	 * @param parola       parola attuale
+	 * @param utenti       utenti da scrivere se non divisi in shard
+	 * @param lsn          LSN dell'ultimo record contenuto, letto dopo gli utenti
+	 * @param serie        serie degli shard scritti
+	 * @param numeroUtenti numero di utenti, per dimensionare il registro al
+	 *                     ripristino
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private void scriviStato(JsonWriter jsonWriter, ParolaCorrente parola, RegistroUtenti utenti, LongSupplier lsn,
+			long serie, int numeroUtenti) throws IOException {
+		// inizio oggetto json
+		jsonWriter.beginObject();
+
+		// dati parola
+		scriviParola(jsonWriter, parola.get());
+
+		// dimensione registro e shard, prima degli utenti
+		jsonWriter.name("numeroUtenti").value(numeroUtenti);
+		jsonWriter.name("serie").value(serie);
+		jsonWriter.name("shard").value(shard);
+
+		if (shard == 0) {
+			// inizio array utenti
+			jsonWriter.name("utenti");
+			jsonWriter.beginArray();
+
+			for (DatiUtente utente : utenti.utenti()) {
+				scriviUtente(jsonWriter, utente);
+			}
+
+			// fine array utenti
+			jsonWriter.endArray();
+		}
+
+		// LSN letto dopo gli utenti: maggiore o uguale a quello di ogni utente
+		jsonWriter.name("lsn").value(lsn.getAsLong());
+
+		// fine json
+		jsonWriter.endObject();
+	}
+
+	/**
+	 * Metodo che legge il file di stato
+	 *
+	 * @param jsonReader reader posizionato all'inizio del file
+	 * @param parola     riferimento in cui pubblicare la parola
+	 * @param utenti     registro in cui aggiungere gli utenti, null per saltarli
+	 *
+	 * @return LSN dell'ultimo record contenuto nello stato
+	 *
+	 * @throws IOException se si verifica un errore durante la lettura o il JSON
+	 *                     non e' valido
+	 */
+	private long leggiStato(JsonReader jsonReader, ParolaCorrente parola, RegistroUtenti utenti) throws IOException {
+		// shard in cui sono divisi gli utenti, 0 nel formato a file unico
+		int shardLetti = 0;
+		long lsn = 0;
+
+		// campi della parola, pubblicata al termine dell'oggetto
+		String testoParola = "";
+		int idParola = 0;
+		long scadenzaParola = 0;
+
+		// inizio JSON
+		jsonReader.beginObject();
+
+		while (jsonReader.hasNext()) {
+			// lettura etichetta, confronto esatto con i nomi scritti da scriviStato
+			switch (jsonReader.nextName()) {
+			case "parola":
+				testoParola = jsonReader.nextString();
+				break;
+			case "id":
+				idParola = jsonReader.nextInt();
+				break;
+			case "scadenza":
+				scadenzaParola = jsonReader.nextLong();
+				break;
+			case "lsn":
+				lsn = jsonReader.nextLong();
+				break;
+			case "numeroUtenti":
+				if (utenti != null)
+					utenti.dimensiona(jsonReader.nextInt());
+				else
+					jsonReader.skipValue();
+				break;
+			case "serie":
+				serieShard = jsonReader.nextLong();
+				break;
+			case "shard":
+				shardLetti = jsonReader.nextInt();
+				break;
+			case "utenti":
+				if (utenti == null) {
+					// utenti gia' presenti nel registro riaperto
+					jsonReader.skipValue();
+					break;
+				}
+
+				// inizio array utenti
+				jsonReader.beginArray();
+
+				while (jsonReader.hasNext()) {
+					// aggiunta alla struttura dati che rappresenta gli utenti
+					utenti.ripristina(leggiUtente(jsonReader));
+				}
+
+				jsonReader.endArray();
+				break;
+			default:
+				throw new IOException("Errore JSON ripristino stato");
+			}
+		}
+
+		// fine JSON
+		jsonReader.endObject();
+		parola.imposta(new Parola(testoParola, idParola, scadenzaParola));
+
+		// lettura parallela degli utenti divisi in shard
+		if (shardLetti > 0 && utenti != null)
+			shardUtenti.leggi(serieShard, shardLetti, utenti);
+
+		return lsn;
+	}
+
+	/**
+	 * Metodo che legge un oggetto utente
+	 *
+	 * @param jsonReader reader posizionato all'inizio dell'oggetto
+	 *
+	 * @return i dati dell'utente
+	 *
+	 * @throws IOException se si verifica un errore durante la lettura o il JSON
+	 *                     non e' valido
+	 */
+	static DatiUtente leggiUtente(JsonReader jsonReader) throws IOException {
+		String username = "";
+		Credenziali credenziali = null;
+		int partiteGiocate = 0;
+		int partiteVinte = 0;
+		int miglioreStreakVittorie = 0;
+		int streakVittorieInCorso = 0;
+		int[] distribuzioneTentativiImpiegati = new int[12];
+		long scadenzaParolaGiocata = 0;
+		long lsn = 0;
+
+		// apertura oggetto utente
+		jsonReader.beginObject();
+
+		while (jsonReader.hasNext()) {
+			switch (jsonReader.nextName()) {
+			case "username":
+				username = jsonReader.nextString();
+				break;
+			case "password":
+				// hash in esadecimale o credenziali salate in formato testuale
+				try {
+					credenziali = Credenziali.daTesto(jsonReader.nextString());
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Errore JSON ripristino stato: " + e.getMessage());
+				}
+				break;
+			case "partiteGiocate":
+				partiteGiocate = jsonReader.nextInt();
+				break;
+			case "partiteVinte":
+				partiteVinte = jsonReader.nextInt();
+				break;
+			case "miglioreStreakVittorie":
+				miglioreStreakVittorie = jsonReader.nextInt();
+				break;
+			case "streakVittorieAttuale":
+				streakVittorieInCorso = jsonReader.nextInt();
+				break;
+			case "distribuzioneTentativi":
+				// apertura array distribuzione
+				jsonReader.beginArray();
+
+				for (int i = 0; i < 12; i++) {
+					distribuzioneTentativiImpiegati[i] = jsonReader.nextInt();
+				}
+				// chiusura array distribuzione
+				jsonReader.endArray();
+				break;
+			case "scadenzaParolaGiocata":
+				scadenzaParolaGiocata = jsonReader.nextLong();
+				break;
+			case "lsn":
+				lsn = jsonReader.nextLong();
+				break;
+			default:
+				throw new IOException("Errore JSON ripristino stato");
+			}
+		}
+
+		// chiusura oggetto utente
+		jsonReader.endObject();
+
+		if (credenziali == null)
+			throw new IOException("Errore JSON ripristino stato: password mancante");
+
+		// creazione utente presente nel JSON
+		return new DatiUtenteHeap(username, credenziali, partiteGiocate, partiteVinte, miglioreStreakVittorie,
+				streakVittorieInCorso, distribuzioneTentativiImpiegati, scadenzaParolaGiocata, lsn);
+	}
+
+	/**
+	 * Metodo che scrive i campi della parola nell'oggetto JSON corrente
+	 *
+	 * @param jsonWriter writer su cui scrivere
+	 * @param parola     parola attuale
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private static void scriviParola(JsonWriter jsonWriter, Parola parola) throws IOException {
+		jsonWriter.name("parola").value(parola.getParola());
+		jsonWriter.name("id").value(parola.getId());
+		jsonWriter.name("scadenza").value(parola.getScadenza());
+	}
+
+	/**
+	 * Metodo che scrive un oggetto utente
+	 *
+	 * @param jsonWriter writer su cui scrivere
+	 * @param utente     utente da scrivere
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	static void scriviUtente(JsonWriter jsonWriter, DatiUtente utente) throws IOException {
+		// istantanea coerente delle statistiche
+		StatisticheUtente statistiche = utente.statistiche();
+
+		// inizio oggetto utente
+		jsonWriter.beginObject();
+
+		// dati profilo
+		jsonWriter.name("username").value(utente.getUsername());
+		jsonWriter.name("password").value(utente.getCredenziali().testo());
+		jsonWriter.name("partiteGiocate").value(statistiche.getPartiteGiocate());
+		jsonWriter.name("partiteVinte").value(statistiche.getPartiteVinte());
+		jsonWriter.name("miglioreStreakVittorie").value(statistiche.getMiglioreStreakVittorie());
+		jsonWriter.name("streakVittorieAttuale").value(statistiche.getStreakVittorieInCorso());
+		jsonWriter.name("distribuzioneTentativi");
+
+		// inizio array distribuzione
+		jsonWriter.beginArray();
+
+		for (int i = 0; i < 12; i++) {
+			jsonWriter.value(statistiche.getDistribuzioneTentativi(i));
+		}
+
+		// fine array distribuzione
+		jsonWriter.endArray();
+
+		// ultima partita giocata
+		jsonWriter.name("scadenzaParolaGiocata").value(statistiche.getScadenzaParolaGiocata());
+		jsonWriter.name("lsn").value(statistiche.getLsn());
+
+		// fine oggetto utente
+		jsonWriter.endObject();
+	}
+
+}
@@ -0,0 +1,44 @@
+package server;
+
+/**
+ * Funzione di derivazione dell'hash di una password. Ogni funzione ha un
+ * codice, usato nei formati binari, e un nome, usato nel formato testuale
+ * delle credenziali (JSON e write-ahead log). Le nuove funzioni vanno aggiunte
+ * all'elenco di Credenziali.
+ */
+public interface FunzioneDerivazione {
+
+	/**
+	 * @return codice della funzione nei formati binari
+	 */
+	byte codice();
+
+	/**
+	 * @return nome della funzione nel formato testuale
+	 */
+	String nome();
+
+	/**
+	 * @return TRUE se la funzione usa sale e costo
+	 */
+	boolean salata();
+
+	/**
+	 * @return TRUE se il calcolo e' abbastanza lento da dover essere eseguito
+	 *         sul pool dedicato
+	 */
+	boolean costosa();
+
+	/**
+	 * Metodo che calcola l'hash di una password
+	 *
+	 * @param password password in chiaro
+	 * @param sale     sale casuale, vuoto se la funzione non e' salata
+	 * @param costo    parametro di costo (iterazioni), ignorato se la funzione
+	 *                 non e' salata
+	 *
+	 * @return hash di Credenziali.byteHash byte
+	 */
+	byte[] deriva(String password, byte[] sale, int costo);
+
+}
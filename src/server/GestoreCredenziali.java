@@ -0,0 +1,99 @@
+package server;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Creazione e verifica delle credenziali. Le funzioni costose (PBKDF2) sono
+ * calcolate su un pool dedicato con thread e coda limitati: un picco di login
+ * occupa al piu' quei thread mentre le sessioni di gioco continuano, e a coda
+ * piena la richiesta fallisce con RejectedExecutionException. Le funzioni
+ * economiche sono calcolate dal thread chiamante.
+ */
+public class GestoreCredenziali {
+
+	// funzione e costo delle nuove credenziali, quelle esistenti sono verificate
+	// con i propri parametri
+	private final FunzioneDerivazione funzione;
+	private final int costo;
+
+	// pool di calcolo delle funzioni costose
+	private final ThreadPoolExecutor pool;
+
+	// generatore dei sali
+	private final SecureRandom casuale = new SecureRandom();
+
+	/**
+	 * @param funzione funzione di derivazione delle nuove credenziali
+	 * @param costo    costo delle nuove credenziali se la funzione e' salata
+	 * @param thread   thread del pool di calcolo
+	 * @param coda     calcoli in attesa oltre i quali le richieste sono rifiutate
+	 */
+	public GestoreCredenziali(FunzioneDerivazione funzione, int costo, int thread, int coda) {
+		this.funzione = funzione;
+		this.costo = funzione.salata() ? costo : 0;
+
+		// thread daemon, nessun calcolo da completare alla chiusura del server
+		this.pool = new ThreadPoolExecutor(thread, thread, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(coda), compito -> {
+					Thread t = new Thread(compito, "credenziali");
+					t.setDaemon(true);
+					return t;
+				});
+	}
+
+	/**
+	 * Metodo che crea le credenziali di un nuovo utente con un sale casuale
+	 *
+	 * @param password password in chiaro
+	 *
+	 * @return le credenziali, completate con RejectedExecutionException se il
+	 *         pool e' saturo
+	 */
+	public CompletableFuture<Credenziali> crea(String password) {
+		byte[] sale = new byte[funzione.salata() ? Credenziali.byteSale : 0];
+		casuale.nextBytes(sale);
+
+		return calcola(funzione, () -> new Credenziali(funzione, costo, sale, funzione.deriva(password, sale, costo)));
+	}
+
+	/**
+	 * Metodo che verifica una password con la funzione e i parametri delle
+	 * credenziali
+	 *
+	 * @param credenziali credenziali dell'utente
+	 * @param password    password in chiaro
+	 *
+	 * @return TRUE se la password e' corretta, completato con
+	 *         RejectedExecutionException se il pool e' saturo
+	 */
+	public CompletableFuture<Boolean> verifica(Credenziali credenziali, String password) {
+		FunzioneDerivazione funzioneUtente = credenziali.getFunzione();
+
+		return calcola(funzioneUtente, () -> credenziali
+				.corrisponde(funzioneUtente.deriva(password, credenziali.getSale(), credenziali.getCosto())));
+	}
+
+	/**
+	 * @param funzione funzione usata dal calcolo
+	 * @param calcolo  calcolo da eseguire
+	 *
+	 * @return risultato del calcolo, gia' completato se la funzione e' economica
+	 */
+	private <T> CompletableFuture<T> calcola(FunzioneDerivazione funzione, Supplier<T> calcolo) {
+		if (!funzione.costosa())
+			return CompletableFuture.completedFuture(calcolo.get());
+
+		try {
+			return CompletableFuture.supplyAsync(calcolo, pool);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+}
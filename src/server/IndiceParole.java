@@ -0,0 +1,90 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Indice in memoria del vocabolario, costruito una volta all'avvio. Ogni parola
+ * di 10 lettere minuscole e' codificata in un long con 5 bit per lettera, la
+ * prima lettera nei bit piu' significativi: l'ordinamento numerico coincide
+ * con quello alfabetico e la ricerca binaria non alloca e non esegue I/O.
+ */
+public class IndiceParole {
+
+	// lunghezza delle parole del vocabolario
+	public static final int lunghezzaParola = 10;
+
+	// codifica non valida, non corrisponde a nessuna parola
+	private static final long nonValida = -1;
+
+	// parole codificate in ordine crescente
+	private final long[] parole;
+
+	private IndiceParole(long[] parole) {
+		this.parole = parole;
+	}
+
+	/**
+	 * Metodo che costruisce l'indice a partire dal vocabolario mappato
+	 *
+	 * @param vocabolario vocabolario in ordine alfabetico
+	 *
+	 * @return l'indice, null se il vocabolario contiene parole non codificabili
+	 *         (lunghezza diversa da 10 o caratteri diversi da a-z)
+	 */
+	public static IndiceParole costruisci(Vocabolario vocabolario) {
+		long[] parole = new long[vocabolario.numeroParole()];
+
+		for (int i = 0; i < parole.length; i++) {
+			parole[i] = codifica(vocabolario.parola(i));
+			if (parole[i] == nonValida)
+				return null;
+		}
+
+		// il file e' gia' ordinato, l'ordinamento garantisce la ricerca binaria
+		Arrays.sort(parole);
+
+		return new IndiceParole(parole);
+	}
+
+	/**
+	 * Metodo che verifica se una parola appartiene al vocabolario
+	 *
+	 * @param parola parola cercata
+	 *
+	 * @return TRUE se la parola e' presente, FALSE altrimenti
+	 */
+	public boolean contiene(CharSequence parola) {
+		long codifica = codifica(parola);
+		return codifica != nonValida && Arrays.binarySearch(parole, codifica) >= 0;
+	}
+
+	/**
+	 * @return numero di parole nel vocabolario
+	 */
+	public int numeroParole() {
+		return parole.length;
+	}
+
+	/**
+	 * Metodo che codifica una parola in un long con 5 bit per lettera
+	 *
+	 * @param parola parola da codificare
+	 *
+	 * @return la codifica, -1 se la parola non e' di 10 lettere minuscole
+	 */
+	private static long codifica(CharSequence parola) {
+		if (parola.length() != lunghezzaParola)
+			return nonValida;
+
+		long codifica = 0;
+		for (int i = 0; i < lunghezzaParola; i++) {
+			char c = parola.charAt(i);
+			if (c < 'a' || c > 'z')
+				return nonValida;
+			codifica = (codifica << 5) | (c - 'a');
+		}
+
+		return codifica;
+	}
+
+}
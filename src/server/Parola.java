@@ -1,10 +1,15 @@
 package server;
 
-public class Parola {
+/**
+ * Parola da indovinare con il suo id e la scadenza. Immutabile: il cambio
+ * parola pubblica un nuovo oggetto in ParolaCorrente, quindi le sessioni la
+ * leggono senza copie ne' lock.
+ */
+public final class Parola {
 
-	private String parola;
-	private long scadenza;
-	private int id;
+	private final String parola;
+	private final int id;
+	private final long scadenza;
 
 	public Parola(String parola, int id, long scadenza) {
 		this.parola = parola;
@@ -26,18 +31,4 @@ public class Parola {
 		return scadenza;
 	}
 
-	// setters
-
-	public void setParola(String parola) {
-		this.parola = parola;
-	}
-
-	public void setId(int id) {
-		this.id = id;
-	}
-
-	public void setScadenza(long scadenza) {
-		this.scadenza = scadenza;
-	}
-
 }
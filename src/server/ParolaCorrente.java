@@ -0,0 +1,31 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Riferimento condiviso alla parola da indovinare. Il cambio parola sostituisce
+ * l'oggetto immutabile con una sola scrittura, le sessioni lo leggono senza
+ * contesa: una lettura volatile anche sotto molte partite contemporanee.
+ */
+public class ParolaCorrente {
+
+	// parola attuale, fittizia finche' non viene ripristinata o estratta
+	private final AtomicReference<Parola> parola = new AtomicReference<>(new Parola("", 0, 0));
+
+	/**
+	 * @return la parola attuale
+	 */
+	public Parola get() {
+		return parola.get();
+	}
+
+	/**
+	 * Metodo che pubblica una nuova parola
+	 *
+	 * @param nuova nuova parola da indovinare
+	 */
+	public void imposta(Parola nuova) {
+		parola.set(nuova);
+	}
+
+}
@@ -0,0 +1,451 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistenza dello stato: file di stato completo e write-ahead log binario
+ * degli eventi successivi. Le sessioni registrano ogni evento nel log
+ * (registrazione, inizio partita, vittoria) e, con commit sincrono, rispondono
+ * solo quando il record e' su disco: gli eventi restituiscono un
+ * CompletableFuture completato dal thread scrittore del log, che la sessione
+ * attende con il proprio canale senza bloccare il reactor NIO. Periodicamente il log passa ad un nuovo
+ * segmento, lo stato completo viene scritto su un file temporaneo rinominato
+ * atomicamente e i segmenti precedenti vengono eliminati. Al riavvio si legge
+ * lo stato e si riapplicano i record dei segmenti rimasti: ogni utente
+ * memorizza l'LSN dell'ultimo record applicato, quindi i record gia' contenuti
+ * nello stato vengono saltati. Il file di stato e' in formato JSON o binario
+ * (FileStatoJson, FileStatoBinario) a seconda della configurazione. Se il
+ * registro degli utenti e' stato riaperto da un archivio su file chiuso
+ * correttamente, dal file di stato si leggono solo parola e LSN. Le statistiche
+ * delle parole sono salvate in un file a parte: alla compattazione vi si
+ * aggiungono i record dei segmenti chiusi, prima di eliminarli, quindi il file
+ * contiene esattamente i record dei segmenti precedenti a quello che registra.
+ */
+public class Persistenza {
+
+	// file di stato nel formato configurato, file nell'altro formato letto solo
+	// se il primo non esiste (cambio di formato) e prefisso dei segmenti del
+	// write-ahead log
+	private final FileStato stato;
+	private final FileStato alternativo;
+	private final Path prefissoLog;
+
+	// parola, utenti e statistiche delle parole aggiornate dalle sessioni
+	private final ParolaCorrente parola;
+	private final RegistroUtenti utenti;
+	private final StatisticheParole parole;
+
+	// statistiche delle parole dei soli segmenti fino a segmentoParole escluso,
+	// aggiornate dal thread di compattazione e salvate su file
+	private StatisticheParole paroleConsolidate;
+
+	// TRUE se le sessioni attendono l'fsync del record prima di rispondere
+	private final boolean commitSincrono;
+
+	// thread di compattazione
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	// write-ahead log, aperto al termine del ripristino
+	private WriteAheadLog log;
+
+	// LSN letto dal file di stato, tutti i record precedenti sono nello stato
+	private long lsnStato;
+
+	// primo segmento non contenuto nelle statistiche consolidate
+	private long segmentoParole;
+
+	// durata dell'ultimo ripristino (millisecondi) e record riapplicati
+	private long tempoRipristino;
+	private long recordRiapplicati;
+
+	public Persistenza(FileStato stato, FileStato alternativo, String prefissoLog, ParolaCorrente parola,
+			RegistroUtenti utenti, StatisticheParole parole, boolean commitSincrono) {
+		this.stato = stato;
+		this.alternativo = alternativo;
+		this.prefissoLog = Paths.get(prefissoLog);
+		this.parola = parola;
+		this.utenti = utenti;
+		this.parole = parole;
+		this.paroleConsolidate = parole.vuote();
+		this.commitSincrono = commitSincrono;
+	}
+
+	/**
+	 * Metodo che ripristina lo stato dal file di stato, riapplica in ordine i
+	 * record del write-ahead log e apre un nuovo segmento per i record successivi.
+	 * Se nessun file esiste la parola resta vuota.
+	 *
+	 * @throws IOException se si verifica un errore durante la lettura
+	 */
+	public void ripristina() throws IOException {
+		long inizio = System.nanoTime();
+
+		// utenti del registro riaperto gia' aggiornati fino all'LSN dello stato
+		RegistroUtenti destinazione = utenti.riaperto() ? null : utenti;
+
+		if (stato.esiste()) {
+			lsnStato = stato.leggi(parola, destinazione);
+		} else if (alternativo.esiste()) {
+			// cambio di formato, il file viene convertito alla prima compattazione
+			lsnStato = alternativo.leggi(parola, destinazione);
+		} else {
+			System.out.println("File di stato non presente");
+		}
+		segmentoParole = paroleConsolidate.leggi();
+		parole.leggi();
+
+		// riapplicazione record successivi allo stato
+		long ultimoLsn = WriteAheadLog.leggi(prefissoLog, this::riapplica);
+
+		// nuovo segmento dopo quelli esistenti, l'ultimo puo' terminare con un
+		// record incompleto
+		List<Long> segmenti = WriteAheadLog.segmenti(prefissoLog);
+		long segmento = segmenti.isEmpty() ? 1 : segmenti.get(segmenti.size() - 1) + 1;
+		log = new WriteAheadLog(prefissoLog, segmento, Math.max(lsnStato, ultimoLsn) + 1);
+
+		// record riapplicati gia' contati, le statistiche consolidate contengono
+		// tutti i segmenti precedenti il nuovo
+		segmentoParole = segmento;
+
+		tempoRipristino = (System.nanoTime() - inizio) / 1000000;
+		System.out.println("Ripristino completato in " + tempoRipristino + " ms, record riapplicati: "
+				+ recordRiapplicati);
+	}
+
+	/**
+	 * Metodo che avvia le compattazioni periodiche
+	 *
+	 * @param intervalloCompattazione secondi tra due compattazioni
+	 */
+	public void avvia(int intervalloCompattazione) {
+		scheduler.scheduleWithFixedDelay(this::compatta, intervalloCompattazione, intervalloCompattazione,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Metodo che registra un nuovo utente se l'username non e' gia' usato
+	 *
+	 * @param utente dati del nuovo utente
+	 *
+	 * @return futuro completato con TRUE quando la registrazione e' persistente,
+	 *         subito con FALSE se l'username era gia' presente
+	 *
+	 * @throws IOException archivio degli utenti non estendibile
+	 */
+	public CompletableFuture<Boolean> registraUtente(DatiUtente utente) throws IOException {
+		WriteAheadLog.Commit commit;
+		try {
+			commit = log.accoda(WriteAheadLog.registrazione, output -> {
+				output.writeUTF(utente.getUsername());
+				output.writeUTF(utente.getCredenziali().testo());
+			}, l -> utenti.registra(utente));
+		} catch (UncheckedIOException e) {
+			// archivio utenti su file non estendibile, record non accodato
+			throw e.getCause();
+		}
+
+		if (commit == null)
+			return CompletableFuture.completedFuture(false);
+
+		return durevole(commit, true);
+	}
+
+	/**
+	 * Metodo che registra l'inizio di una partita se l'utente non ha gia' giocato
+	 * la parola. Solo la sessione dell'utente modifica le sue statistiche, quindi
+	 * quelle lette prima dell'accodamento sono le precedenti.
+	 *
+	 * @param utente utente che inizia la partita
+	 * @param parola parola da giocare, letta una sola volta dalla sessione
+	 *
+	 * @return futuro completato con le statistiche precedenti l'inizio della
+	 *         partita quando il record e' persistente, subito con null se
+	 *         l'utente ha gia' giocato la parola
+	 */
+	public CompletableFuture<StatisticheUtente> iniziaPartita(DatiUtente utente, Parola parola) {
+		StatisticheUtente precedenti = utente.statistiche();
+
+		WriteAheadLog.Commit commit = log.accoda(WriteAheadLog.partita, output -> {
+			output.writeUTF(utente.getUsername());
+			output.writeInt(parola.getId());
+			output.writeLong(parola.getScadenza());
+		}, l -> utente.iniziaPartita(parola.getScadenza(), l) != null);
+
+		if (commit == null)
+			return CompletableFuture.completedFuture(null);
+
+		parole.partitaIniziata(parola.getId());
+		return durevole(commit, precedenti);
+	}
+
+	/**
+	 * Metodo che registra la vittoria della partita in corso
+	 *
+	 * @param utente         utente vincitore
+	 * @param idParola       id della parola indovinata
+	 * @param tentativi      numero di tentativi impiegati
+	 * @param streakVittorie streak di vittorie comprensiva di questa partita
+	 *
+	 * @return futuro completato quando il record e' persistente
+	 */
+	public CompletableFuture<Void> registraVittoria(DatiUtente utente, int idParola, int tentativi,
+			int streakVittorie) {
+		WriteAheadLog.Commit commit = log.accoda(WriteAheadLog.vittoria, output -> {
+			output.writeUTF(utente.getUsername());
+			output.writeInt(idParola);
+			output.writeByte(tentativi);
+			output.writeInt(streakVittorie);
+		}, l -> {
+			utente.registraVittoria(tentativi, streakVittorie, l);
+			return true;
+		});
+
+		parole.vittoria(idParola, tentativi);
+		return durevole(commit, null);
+	}
+
+	/**
+	 * Metodo che cambia la parola da indovinare. Non attende l'fsync: il record
+	 * diventa persistente al piu' tardi con il primo evento di gioco successivo.
+	 * La parola e' pubblicata alle sessioni solo dopo l'accodamento, quindi nel
+	 * log il record della parola precede quelli delle sue partite.
+	 *
+	 * @param nuovaParola nuova parola, pubblicata alle sessioni
+	 */
+	public void aggiornaParola(Parola nuovaParola) {
+		log.accoda(WriteAheadLog.parola, output -> {
+			output.writeUTF(nuovaParola.getParola());
+			output.writeInt(nuovaParola.getId());
+			output.writeLong(nuovaParola.getScadenza());
+		}, l -> true);
+
+		parole.nuovaParola(nuovaParola.getId());
+		parola.imposta(nuovaParola);
+	}
+
+	/**
+	 * Metodo che termina le compattazioni periodiche, scrive lo stato completo,
+	 * chiude il log e il registro degli utenti. Da chiamare quando le sessioni
+	 * sono terminate.
+	 *
+	 * @param attesaMassima secondi di attesa per la compattazione in corso
+	 */
+	public void chiudi(int attesaMassima) {
+		scheduler.shutdown();
+		try {
+			if (!scheduler.awaitTermination(attesaMassima, TimeUnit.SECONDS))
+				scheduler.shutdownNow();
+		} catch (InterruptedException e) {
+			scheduler.shutdownNow();
+		}
+
+		// stato completo, il prossimo avvio non deve riapplicare record
+		compatta();
+		log.chiudi();
+
+		try {
+			utenti.chiudi();
+		} catch (IOException e) {
+			System.err.println("Errore chiusura archivio utenti: " + e.getMessage());
+		}
+
+		System.out.println(metriche());
+	}
+
+	/**
+	 * @return durata dell'ultimo ripristino e metriche di durabilita' del log
+	 */
+	public String metriche() {
+		return "Ripristino: " + tempoRipristino + " ms, " + recordRiapplicati + " record\n" + log.metriche();
+	}
+
+	/**
+	 * @return durata dell'ultimo ripristino (millisecondi)
+	 */
+	public long getTempoRipristino() {
+		return tempoRipristino;
+	}
+
+	/**
+	 * @return ritardo massimo (nanosecondi) tra un evento e il suo fsync
+	 */
+	public long getRitardoDurabilita() {
+		return log.getRitardoMassimo();
+	}
+
+	/**
+	 * Metodo che restituisce il risultato di un evento quando il record e'
+	 * persistente, subito se il commit e' asincrono
+	 *
+	 * @param commit    commit del record
+	 * @param risultato risultato dell'evento
+	 *
+	 * @return futuro completato dal thread scrittore dopo l'fsync, con errore se
+	 *         la scrittura del log fallisce
+	 */
+	private <T> CompletableFuture<T> durevole(WriteAheadLog.Commit commit, T risultato) {
+		if (!commitSincrono)
+			return CompletableFuture.completedFuture(risultato);
+
+		return commit.thenApply(lsn -> risultato);
+	}
+
+	/**
+	 * Metodo che riapplica un record del log, se non gia' contenuto nello stato,
+	 * e lo conta nelle statistiche delle parole se il segmento non e' gia'
+	 * consolidato
+	 *
+	 * @param segmento segmento del record
+	 * @param tipo     tipo del record
+	 * @param lsn      LSN del record
+	 * @param dati     dati del record
+	 *
+	 * @throws IOException se il record non e' valido
+	 */
+	private void riapplica(long segmento, byte tipo, long lsn, DataInputStream dati) throws IOException {
+		boolean daContare = segmento >= segmentoParole;
+		DatiUtente utente;
+
+		switch (tipo) {
+		case WriteAheadLog.registrazione:
+			String username = dati.readUTF();
+			Credenziali credenziali;
+			try {
+				credenziali = Credenziali.daTesto(dati.readUTF());
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Record write-ahead log non valido: " + e.getMessage());
+			}
+			if (utenti.get(username) != null)
+				return;
+			utenti.ripristina(new DatiUtenteHeap(username, credenziali));
+			break;
+
+		case WriteAheadLog.partita:
+			utente = utenti.get(dati.readUTF());
+			int idPartita = dati.readInt();
+			long scadenza = dati.readLong();
+			if (daContare) {
+				parole.partitaIniziata(idPartita);
+				paroleConsolidate.partitaIniziata(idPartita);
+			}
+			if (utente == null || lsn <= utente.statistiche().getLsn())
+				return;
+			utente.iniziaPartita(scadenza, lsn);
+			break;
+
+		case WriteAheadLog.vittoria:
+			utente = utenti.get(dati.readUTF());
+			int idVittoria = dati.readInt();
+			int tentativi = dati.readUnsignedByte();
+			// streak su 4 byte, su 2 nei record scritti dalle versioni precedenti
+			int streakVittorie = dati.available() >= 4 ? dati.readInt() : dati.readUnsignedShort();
+			if (daContare) {
+				parole.vittoria(idVittoria, tentativi);
+				paroleConsolidate.vittoria(idVittoria, tentativi);
+			}
+			if (utente == null || lsn <= utente.statistiche().getLsn())
+				return;
+			utente.registraVittoria(tentativi, streakVittorie, lsn);
+			break;
+
+		case WriteAheadLog.parola:
+			String nuovaParola = dati.readUTF();
+			int id = dati.readInt();
+			long scadenzaParola = dati.readLong();
+			if (daContare) {
+				parole.nuovaParola(id);
+				paroleConsolidate.nuovaParola(id);
+			}
+			if (scadenzaParola <= parola.get().getScadenza())
+				return;
+			parola.imposta(new Parola(nuovaParola, id, scadenzaParola));
+			break;
+
+		default:
+			throw new IOException("Record write-ahead log sconosciuto: " + tipo);
+		}
+
+		recordRiapplicati++;
+	}
+
+	/**
+	 * Metodo che conta un record di un segmento chiuso nelle statistiche
+	 * consolidate delle parole
+	 *
+	 * @param segmento segmento del record
+	 * @param tipo     tipo del record
+	 * @param lsn      LSN del record
+	 * @param dati     dati del record
+	 *
+	 * @throws IOException se il record non e' valido
+	 */
+	private void consolida(long segmento, byte tipo, long lsn, DataInputStream dati) throws IOException {
+		switch (tipo) {
+		case WriteAheadLog.partita:
+			dati.readUTF();
+			paroleConsolidate.partitaIniziata(dati.readInt());
+			break;
+
+		case WriteAheadLog.vittoria:
+			dati.readUTF();
+			int id = dati.readInt();
+			paroleConsolidate.vittoria(id, dati.readUnsignedByte());
+			break;
+
+		case WriteAheadLog.parola:
+			dati.readUTF();
+			paroleConsolidate.nuovaParola(dati.readInt());
+			break;
+
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Metodo che passa ad un nuovo segmento del log, scrive lo stato completo
+	 * nel formato configurato, aggiunge alle statistiche delle parole i segmenti
+	 * chiusi, poi elimina i segmenti precedenti, ormai contenuti nei nuovi file, e
+	 * l'eventuale file di stato nell'altro formato
+	 */
+	private void compatta() {
+		// i record dei segmenti precedenti sono gia' applicati agli utenti
+		long segmento = log.ruota();
+
+		try {
+			stato.scrivi(parola, utenti, log::ultimoLsn);
+
+			// segmenti chiusi letti dal disco, senza contare sui contatori delle
+			// sessioni che proseguono nel nuovo segmento
+			log.attendiSegmento(segmento);
+			try {
+				WriteAheadLog.leggi(prefissoLog, segmentoParole, segmento, this::consolida);
+			} catch (IOException e) {
+				// segmenti contati in parte, si riparte dal file alla prossima
+				paroleConsolidate = parole.vuote();
+				segmentoParole = paroleConsolidate.leggi();
+				throw e;
+			}
+			segmentoParole = segmento;
+			paroleConsolidate.scrivi(segmento);
+
+			// da qui i segmenti precedenti sono superati dal nuovo stato
+			log.eliminaPrecedenti(segmento);
+			if (alternativo.esiste())
+				alternativo.elimina();
+
+		} catch (IOException e) {
+			System.err.println("Errore compattazione stato: " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package server;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Codifica dei messaggi di una sessione. Il protocollo e' scelto dal primo
+ * messaggio del client: il protocollo testuale originale (codice;campi e
+ * risposte in prosa) o il protocollo binario con opcode di un byte, campi con
+ * lunghezza e codici numerici. Il framing e' lo stesso per entrambi: lunghezza
+ * su 2 byte seguita dal contenuto, come in writeUTF.
+ */
+public interface Protocollo {
+
+	/**
+	 * Metodo che decodifica il contenuto di un frame ricevuto dal client
+	 *
+	 * @param frame     array che contiene il frame
+	 * @param inizio    posizione del contenuto, dopo la lunghezza
+	 * @param lunghezza lunghezza del contenuto
+	 * @param richiesta richiesta da impostare
+	 *
+	 * @throws IOException se la richiesta non e' valida
+	 */
+	void decodifica(byte[] frame, int inizio, int lunghezza, Richiesta richiesta) throws IOException;
+
+	/**
+	 * Invia l'esito di una richiesta senza dati
+	 *
+	 * @param esito esito della richiesta
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void esito(Esito esito) throws IOException;
+
+	/**
+	 * Invia la conferma di inizio partita
+	 *
+	 * @param idParola numero della parola da indovinare
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void partitaIniziata(int idParola) throws IOException;
+
+	/**
+	 * Invia le statistiche dell'utente
+	 *
+	 * @param utente utente della sessione
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void statistiche(DatiUtente utente) throws IOException;
+
+	/**
+	 * Invia i primi in classifica e la posizione dell'utente
+	 *
+	 * @param primi     primi utenti in classifica
+	 * @param posizione posizione dell'utente, 0 se non e' in classifica
+	 * @param punteggio punteggio dell'utente
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void classifica(Classifica.Voce[] primi, int posizione, int punteggio) throws IOException;
+
+	/**
+	 * Invia le statistiche delle ultime parole estratte
+	 *
+	 * @param riepiloghi statistiche delle parole, dalla piu' recente
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void statisticheParole(List<StatisticheParole.Riepilogo> riepiloghi) throws IOException;
+
+	/**
+	 * Invia il risultato di un tentativo
+	 *
+	 * @param round     numero del tentativo
+	 * @param risultato risultato con 2 bit per lettera
+	 * @param lunghezza lunghezza della parola
+	 * @param fine      TRUE se la partita e' terminata
+	 * @param vinta     TRUE se la parola e' stata indovinata
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	void tentativo(int round, int risultato, int lunghezza, boolean fine, boolean vinta) throws IOException;
+
+}
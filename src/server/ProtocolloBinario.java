@@ -0,0 +1,255 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Protocollo binario, scelto dal client con un primo frame di negoziazione
+ * (opcode 1 e versione massima supportata) a cui il server risponde con la
+ * versione usata. I frame hanno la lunghezza su 2 byte come quelli testuali.
+ *
+ * Richieste: opcode di un byte (i codici di Richiesta), poi i campi stringa
+ * con lunghezza su un byte e contenuto UTF-8: username e password per
+ * registrazione e login, la parola per un tentativo.
+ *
+ * Risposte: codice esito di un byte (0 ok, 1 fine partita, 2 server occupato,
+ * da 10 errori, vedi Esito) seguito dai dati della richiesta:
+ * - inizio partita: id parola (int)
+ * - statistiche: giocate, vinte, streak in corso, migliore streak (int),
+ * numero di tentativi (byte) e vittorie per tentativo (int)
+ * - tentativo: numero tentativo e lunghezza parola (byte), risultato con 2 bit
+ * per lettera (int)
+ * - classifica: posizione e punteggio dell'utente (int, posizione 0 se non in
+ * classifica), numero di voci (byte) e per ogni voce posizione (int),
+ * username (stringa con lunghezza su un byte) e punteggio (int)
+ * - statistiche parole: numero di parole (byte) e per ogni parola, dalla piu'
+ * recente, id, partite giocate e vinte (int), numero di tentativi (byte) e
+ * vittorie per tentativo (int)
+ */
+public class ProtocolloBinario implements Protocollo {
+
+	// opcode del frame di negoziazione
+	static final int opcodeVersione = 1;
+
+	// versione piu' recente del protocollo binario
+	static final int versione = 1;
+
+	// codici esito delle risposte con dati
+	private static final int esitoOK = 0;
+	private static final int esitoFinePartita = 1;
+
+	// canale di invio delle risposte
+	private final CanaleRisposta canale;
+
+	// buffer di composizione dei frame di risposta
+	private final BufferFrame buffer = new BufferFrame();
+	private final DataOutputStream dati = new DataOutputStream(buffer);
+
+	// posizione di lettura nel frame in decodifica
+	private int posizione;
+
+	private ProtocolloBinario(CanaleRisposta canale) {
+		this.canale = canale;
+	}
+
+	/**
+	 * Metodo che riconosce il frame di negoziazione del protocollo binario e
+	 * risponde con la versione scelta
+	 *
+	 * @param canale    canale di invio delle risposte
+	 * @param frame     array che contiene il primo frame della sessione
+	 * @param inizio    posizione del contenuto
+	 * @param lunghezza lunghezza del contenuto
+	 *
+	 * @return il protocollo binario, null se il frame e' del protocollo testuale
+	 *
+	 * @throws IOException se la negoziazione non e' valida o errore di
+	 *                     scrittura sul canale
+	 */
+	static ProtocolloBinario negozia(CanaleRisposta canale, byte[] frame, int inizio, int lunghezza)
+			throws IOException {
+		// le richieste testuali iniziano con una cifra
+		if (lunghezza == 0 || frame[inizio] != opcodeVersione)
+			return null;
+
+		if (lunghezza != 2 || frame[inizio + 1] <= 0)
+			throw new IOException("Negoziazione non valida");
+
+		ProtocolloBinario protocollo = new ProtocolloBinario(canale);
+		protocollo.inizia(esitoOK);
+		protocollo.dati.writeByte(Math.min(frame[inizio + 1], versione));
+		protocollo.invia();
+
+		return protocollo;
+	}
+
+	@Override
+	public void decodifica(byte[] frame, int inizio, int lunghezza, Richiesta richiesta) throws IOException {
+		if (lunghezza == 0)
+			throw new IOException("Richiesta non valida");
+
+		int codice = frame[inizio] & 0xFF;
+		posizione = inizio + 1;
+		int fine = inizio + lunghezza;
+
+		switch (codice) {
+		case Richiesta.codiceRegistrazione:
+		case Richiesta.codiceLogin:
+			String username = campo(frame, fine);
+			richiesta.imposta(codice, username, campo(frame, fine));
+			break;
+
+		case Richiesta.codiceTentativo:
+			richiesta.imposta(codice, campo(frame, fine), null);
+			break;
+
+		default:
+			richiesta.imposta(codice, null, null);
+		}
+	}
+
+	@Override
+	public void esito(Esito esito) throws IOException {
+		inizia(esito.getCodiceBinario());
+		invia();
+	}
+
+	@Override
+	public void partitaIniziata(int idParola) throws IOException {
+		inizia(esitoOK);
+		dati.writeInt(idParola);
+		invia();
+	}
+
+	@Override
+	public void statistiche(DatiUtente utente) throws IOException {
+		byte[] frame = utente.statisticheCodificate().getFrameBinario();
+		canale.invia(frame, frame.length);
+	}
+
+	/**
+	 * Metodo che codifica la risposta ad una richiesta di statistiche, conservata
+	 * dai dati dell'utente finche' le statistiche non cambiano
+	 *
+	 * @param s statistiche dell'utente
+	 *
+	 * @return frame della risposta
+	 *
+	 * @throws IOException errore di codifica
+	 */
+	static byte[] frameStatistiche(StatisticheUtente s) throws IOException {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(24 + 4 * StatisticheUtente.tentativiMassimi);
+		DataOutputStream dati = new DataOutputStream(frame);
+
+		dati.writeShort(0);
+		dati.writeByte(esitoOK);
+		dati.writeInt(s.getPartiteGiocate());
+		dati.writeInt(s.getPartiteVinte());
+		dati.writeInt(s.getStreakVittorieInCorso());
+		dati.writeInt(s.getMiglioreStreakVittorie());
+		dati.writeByte(StatisticheUtente.tentativiMassimi);
+		for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+			dati.writeInt(s.getDistribuzioneTentativi(i));
+
+		// lunghezza del contenuto nei primi 2 byte
+		byte[] risultato = frame.toByteArray();
+		risultato[0] = (byte) ((risultato.length - 2) >>> 8);
+		risultato[1] = (byte) (risultato.length - 2);
+		return risultato;
+	}
+
+	@Override
+	public void classifica(Classifica.Voce[] primi, int posizione, int punteggio) throws IOException {
+		inizia(esitoOK);
+		dati.writeInt(posizione);
+		dati.writeInt(punteggio);
+		dati.writeByte(primi.length);
+		for (Classifica.Voce voce : primi) {
+			dati.writeInt(voce.getPosizione());
+
+			// username registrati con il protocollo testuale possono superare i 255
+			// byte, troncati
+			byte[] username = voce.getUsername().getBytes(StandardCharsets.UTF_8);
+			int lunghezza = Math.min(username.length, 255);
+			dati.writeByte(lunghezza);
+			dati.write(username, 0, lunghezza);
+
+			dati.writeInt(voce.getPunteggio());
+		}
+		invia();
+	}
+
+	@Override
+	public void statisticheParole(List<StatisticheParole.Riepilogo> riepiloghi) throws IOException {
+		inizia(esitoOK);
+		dati.writeByte(riepiloghi.size());
+		for (StatisticheParole.Riepilogo riepilogo : riepiloghi) {
+			dati.writeInt(riepilogo.getId());
+			dati.writeInt((int) riepilogo.getPartiteGiocate());
+			dati.writeInt((int) riepilogo.getPartiteVinte());
+			dati.writeByte(StatisticheUtente.tentativiMassimi);
+			for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+				dati.writeInt((int) riepilogo.getDistribuzioneTentativi(i));
+		}
+		invia();
+	}
+
+	@Override
+	public void tentativo(int round, int risultato, int lunghezza, boolean fine, boolean vinta) throws IOException {
+		inizia(fine ? esitoFinePartita : esitoOK);
+		dati.writeByte(round);
+		dati.writeByte(lunghezza);
+		dati.writeInt(risultato);
+		invia();
+	}
+
+	/**
+	 * Metodo che inizia un frame di risposta lasciando spazio alla lunghezza
+	 *
+	 * @param esito codice esito della risposta
+	 */
+	private void inizia(int esito) {
+		buffer.reset();
+		buffer.write(0);
+		buffer.write(0);
+		buffer.write(esito);
+	}
+
+	/**
+	 * Metodo che completa il frame di risposta e lo invia
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void invia() throws IOException {
+		buffer.chiudiFrame();
+		canale.invia(buffer.array(), buffer.size());
+	}
+
+	/**
+	 * Metodo che legge un campo stringa con lunghezza su un byte
+	 *
+	 * @param frame array che contiene il frame
+	 * @param fine  fine del contenuto del frame
+	 *
+	 * @return campo letto
+	 *
+	 * @throws IOException se il campo supera la fine del frame
+	 */
+	private String campo(byte[] frame, int fine) throws IOException {
+		if (posizione >= fine)
+			throw new IOException("Richiesta non valida");
+
+		int lunghezza = frame[posizione] & 0xFF;
+		if (posizione + 1 + lunghezza > fine)
+			throw new IOException("Richiesta non valida");
+
+		String campo = new String(frame, posizione + 1, lunghezza, StandardCharsets.UTF_8);
+		posizione += 1 + lunghezza;
+
+		return campo;
+	}
+
+}
@@ -0,0 +1,228 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Protocollo testuale originale: richieste "codice;campo;campo" o parola
+ * tentata senza codice durante la partita, risposte "codice;messaggio" in
+ * UTF-8 modificato come con readUTF/writeUTF. La decodifica non usa split ne'
+ * espressioni regolari.
+ */
+public class ProtocolloTesto implements Protocollo {
+
+	// codici risposta
+	private static final int codiceOK = 200;
+	private static final int finePartita = 201;
+
+	// cifre massime di un codice richiesta, oltre il frame non ha codice
+	private static final int cifreMassime = 9;
+
+	// risposta ad una connessione oltre il limite di sessioni, inviata prima di
+	// sapere quale protocollo usa il client e di chiuderla
+	static final String rispostaOccupato = Esito.OCCUPATO.getCodiceTesto() + ";" + Esito.OCCUPATO.getMessaggio();
+
+	// canale di invio delle risposte
+	private final CanaleRisposta canale;
+
+	// buffer di composizione dei frame di risposta
+	private final BufferFrame buffer = new BufferFrame();
+	private final DataOutputStream dati = new DataOutputStream(buffer);
+
+	public ProtocolloTesto(CanaleRisposta canale) {
+		this.canale = canale;
+	}
+
+	@Override
+	public void decodifica(byte[] frame, int inizio, int lunghezza, Richiesta richiesta) throws IOException {
+		String testo = testo(frame, inizio, lunghezza);
+
+		int separatore = testo.indexOf(';');
+		int codice = codice(testo, separatore < 0 ? testo.length() : separatore);
+
+		if (codice < 0) {
+			// frame senza codice: parola tentata o resa durante la partita
+			if ("exit".equals(testo))
+				richiesta.imposta(Richiesta.codiceArrenditi, null, null);
+			else
+				richiesta.imposta(Richiesta.codiceTentativo, testo, null);
+			return;
+		}
+
+		// campi separati da ';' dopo il codice
+		String primo = null;
+		String secondo = null;
+		if (separatore >= 0 && separatore + 1 < testo.length()) {
+			int fine = testo.indexOf(';', separatore + 1);
+			if (fine < 0) {
+				primo = testo.substring(separatore + 1);
+			} else {
+				primo = testo.substring(separatore + 1, fine);
+
+				int fineSecondo = testo.indexOf(';', fine + 1);
+				if (fine + 1 < testo.length())
+					secondo = testo.substring(fine + 1, fineSecondo < 0 ? testo.length() : fineSecondo);
+			}
+		}
+
+		richiesta.imposta(codice, primo, secondo);
+	}
+
+	@Override
+	public void esito(Esito esito) throws IOException {
+		invia(esito.getCodiceTesto() + ";" + esito.getMessaggio());
+	}
+
+	@Override
+	public void partitaIniziata(int idParola) throws IOException {
+		invia(codiceOK + ";\nParola " + idParola + ":");
+	}
+
+	@Override
+	public void statistiche(DatiUtente utente) throws IOException {
+		byte[] frame = utente.statisticheCodificate().getFrameTesto();
+		canale.invia(frame, frame.length);
+	}
+
+	/**
+	 * Metodo che codifica la risposta ad una richiesta di statistiche, conservata
+	 * dai dati dell'utente finche' le statistiche non cambiano
+	 *
+	 * @param statistiche statistiche in forma testuale
+	 *
+	 * @return frame della risposta
+	 *
+	 * @throws IOException se la risposta supera la lunghezza di un frame
+	 */
+	static byte[] frameStatistiche(String statistiche) throws IOException {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(statistiche.length() + 8);
+		new DataOutputStream(frame).writeUTF(codiceOK + ";" + statistiche);
+		return frame.toByteArray();
+	}
+
+	@Override
+	public void classifica(Classifica.Voce[] primi, int posizione, int punteggio) throws IOException {
+		StringBuilder classifica = new StringBuilder(64 + 32 * primi.length);
+
+		classifica.append(codiceOK).append(";Classifica (vittorie pesate per tentativi):");
+		if (primi.length == 0)
+			classifica.append("\nNessun utente in classifica");
+		for (Classifica.Voce voce : primi) {
+			classifica.append("\n").append(voce.getPosizione()).append(". ").append(voce.getUsername())
+					.append(" - punteggio ").append(voce.getPunteggio());
+		}
+
+		if (posizione > 0)
+			classifica.append("\n\nLa tua posizione: ").append(posizione).append(" (punteggio ").append(punteggio)
+					.append(")");
+		else
+			classifica.append("\n\nNon sei ancora in classifica, vinci una partita");
+
+		invia(classifica.toString());
+	}
+
+	@Override
+	public void statisticheParole(List<StatisticheParole.Riepilogo> riepiloghi) throws IOException {
+		StringBuilder statistiche = new StringBuilder(64 + 160 * riepiloghi.size());
+
+		statistiche.append(codiceOK).append(";Statistiche ultime parole:");
+		if (riepiloghi.isEmpty())
+			statistiche.append("\nNessuna parola giocata");
+		for (StatisticheParole.Riepilogo riepilogo : riepiloghi) {
+			long giocate = riepilogo.getPartiteGiocate();
+			long vinte = riepilogo.getPartiteVinte();
+
+			statistiche.append("\nParola ").append(riepilogo.getId()).append(": giocate ").append(giocate)
+					.append(", vinte ").append(vinte);
+			if (giocate > 0)
+				statistiche.append(" (").append(vinte * 100 / giocate).append("%)");
+
+			statistiche.append("\n\tVittorie per tentativi:");
+			for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+				statistiche.append(' ').append(riepilogo.getDistribuzioneTentativi(i));
+		}
+
+		invia(statistiche.toString());
+	}
+
+	@Override
+	public void tentativo(int round, int risultato, int lunghezza, boolean fine, boolean vinta) throws IOException {
+		if (vinta) {
+			invia(finePartita + ";" + "Parola corretta! Indovinata al tentativo nr. " + round + "\n");
+		} else if (fine) {
+			invia(finePartita + ";Tentativo nr. " + round + ": " + Valutatore.testo(risultato, lunghezza)
+					+ "\n\nTentativi possibili terminati, riprova alla prossima parola\n");
+		} else {
+			invia(codiceOK + ";Tentativo nr. " + round + ": " + Valutatore.testo(risultato, lunghezza) + "\n");
+		}
+	}
+
+	/**
+	 * Metodo che invia una risposta con framing writeUTF
+	 *
+	 * @param risposta risposta da inviare
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void invia(String risposta) throws IOException {
+		buffer.reset();
+		dati.writeUTF(risposta);
+		canale.invia(buffer.array(), buffer.size());
+	}
+
+	/**
+	 * Metodo che decodifica il contenuto di un frame scritto con writeUTF. I
+	 * frame ASCII, cioe' tutti quelli del client, sono convertiti direttamente.
+	 *
+	 * @param frame     array che contiene il frame
+	 * @param inizio    posizione del contenuto
+	 * @param lunghezza lunghezza del contenuto
+	 *
+	 * @return stringa contenuta nel frame
+	 *
+	 * @throws IOException se il contenuto non e' UTF-8 modificato valido
+	 */
+	private static String testo(byte[] frame, int inizio, int lunghezza) throws IOException {
+		for (int i = inizio; i < inizio + lunghezza; i++) {
+			if (frame[i] <= 0) {
+				// caratteri non ASCII, decodifica di readUTF con la lunghezza davanti
+				byte[] copia = new byte[lunghezza + 2];
+				copia[0] = (byte) (lunghezza >>> 8);
+				copia[1] = (byte) lunghezza;
+				System.arraycopy(frame, inizio, copia, 2, lunghezza);
+				return new DataInputStream(new ByteArrayInputStream(copia)).readUTF();
+			}
+		}
+
+		return new String(frame, inizio, lunghezza, StandardCharsets.ISO_8859_1);
+	}
+
+	/**
+	 * Metodo che legge il codice numerico all'inizio di una richiesta
+	 *
+	 * @param testo richiesta
+	 * @param fine  posizione del primo separatore o lunghezza della richiesta
+	 *
+	 * @return codice della richiesta, -1 se la richiesta non inizia con un codice
+	 */
+	private static int codice(String testo, int fine) {
+		if (fine == 0 || fine > cifreMassime)
+			return -1;
+
+		int codice = 0;
+		for (int i = 0; i < fine; i++) {
+			char c = testo.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			codice = codice * 10 + (c - '0');
+		}
+
+		return codice;
+	}
+
+}
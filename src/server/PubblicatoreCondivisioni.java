@@ -0,0 +1,226 @@
+package server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Invio in multicast dei risultati condivisi. Le sessioni accodano la
+ * condivisione in una coda limitata e rispondono subito; un solo thread
+ * mittente raccoglie tutte le condivisioni in attesa e le impacchetta in
+ * datagrammi fino alla MTU, inviati su un unico DatagramChannel aperto per
+ * tutta la vita del server. Un picco di condivisioni dopo un cambio parola
+ * costa quindi pochi invii. A coda piena la condivisione viene scartata e
+ * contata, la sessione non attende mai la rete.
+ *
+ * Formato del datagramma: condivisioni consecutive, ciascuna preceduta dalla
+ * lunghezza su 2 byte. Formato della condivisione: username (lunghezza su un
+ * byte e UTF-8, troncato a 255 byte), id parola (int), tentativi e lunghezza
+ * della parola (byte), risultati con 2 bit per lettera (codici di Valutatore),
+ * tentativo per tentativo e 4 lettere per byte dai bit meno significativi:
+ * 12 tentativi di 10 lettere occupano 30 byte.
+ */
+public class PubblicatoreCondivisioni {
+
+	// contenuto massimo di un datagramma: MTU Ethernet meno intestazioni IPv4 e
+	// UDP, oltre il pacchetto verrebbe frammentato
+	static final int dimensioneDatagramma = 1500 - 20 - 8;
+
+	// contenuto massimo di una condivisione
+	static final int dimensioneMassima = dimensioneDatagramma - 2;
+
+	// condivisione vuota che chiede al mittente di terminare
+	private static final byte[] fine = new byte[0];
+
+	// canale di invio e gruppo multicast
+	private final DatagramChannel canale;
+	private final InetSocketAddress gruppo;
+
+	// condivisioni in attesa, scritte dalle sessioni e lette dal solo mittente
+	private final ArrayBlockingQueue<byte[]> coda;
+
+	// metriche: condivisioni accodate e scartate (coda piena o troppo grandi)
+	private final LongAdder accodate = new LongAdder();
+	private final LongAdder scartate = new LongAdder();
+
+	// metriche del mittente: condivisioni inviate, datagrammi e invii falliti
+	private volatile long inviate;
+	private volatile long datagrammi;
+	private volatile long errori;
+
+	private final Thread mittente;
+
+	/**
+	 * @param indirizzo indirizzo del gruppo multicast
+	 * @param porta     porta del gruppo multicast
+	 * @param capacita  condivisioni in attesa oltre le quali vengono scartate
+	 *
+	 * @throws IOException errore di apertura del canale
+	 */
+	public PubblicatoreCondivisioni(InetAddress indirizzo, int porta, int capacita) throws IOException {
+		this.canale = DatagramChannel.open();
+		this.gruppo = new InetSocketAddress(indirizzo, porta);
+		this.coda = new ArrayBlockingQueue<>(Math.max(1, capacita));
+
+		this.mittente = new Thread(this::ciclo, "condivisioni");
+		mittente.setDaemon(true);
+		mittente.start();
+	}
+
+	/**
+	 * Metodo che codifica il risultato di una partita da condividere
+	 *
+	 * @param username  username dell'utente
+	 * @param idParola  id della parola giocata
+	 * @param lunghezza lunghezza della parola
+	 * @param risultati risultati dei tentativi, 2 bit per lettera
+	 * @param tentativi numero di tentativi giocati
+	 *
+	 * @return condivisione codificata
+	 */
+	public static byte[] codifica(String username, int idParola, int lunghezza, int[] risultati, int tentativi) {
+		byte[] nome = username.getBytes(StandardCharsets.UTF_8);
+		int lunghezzaNome = Math.min(nome.length, 255);
+
+		ByteBuffer condivisione = ByteBuffer.allocate(1 + lunghezzaNome + 6 + (tentativi * lunghezza + 3) / 4);
+		condivisione.put((byte) lunghezzaNome);
+		condivisione.put(nome, 0, lunghezzaNome);
+		condivisione.putInt(idParola);
+		condivisione.put((byte) tentativi);
+		condivisione.put((byte) lunghezza);
+
+		// codici a 2 bit consecutivi, 4 per byte
+		int accumulatore = 0;
+		int codici = 0;
+		for (int t = 0; t < tentativi; t++) {
+			for (int i = 0; i < lunghezza; i++) {
+				accumulatore |= Valutatore.codice(risultati[t], i) << (2 * codici);
+				if (++codici == 4) {
+					condivisione.put((byte) accumulatore);
+					accumulatore = 0;
+					codici = 0;
+				}
+			}
+		}
+		if (codici > 0)
+			condivisione.put((byte) accumulatore);
+
+		return condivisione.array();
+	}
+
+	/**
+	 * Metodo che accoda una condivisione senza attendere l'invio
+	 *
+	 * @param condivisione condivisione codificata, al piu' dimensioneMassima byte
+	 *
+	 * @return TRUE se accodata, FALSE se scartata perche' la coda e' piena o la
+	 *         condivisione e' troppo grande
+	 */
+	public boolean pubblica(byte[] condivisione) {
+		if (condivisione.length == 0 || condivisione.length > dimensioneMassima || !coda.offer(condivisione)) {
+			scartate.increment();
+			return false;
+		}
+
+		accodate.increment();
+		return true;
+	}
+
+	/**
+	 * Metodo che invia le condivisioni in attesa, termina il mittente e chiude il
+	 * canale. Da chiamare quando le sessioni sono terminate.
+	 *
+	 * @param attesaMassima secondi di attesa per l'invio delle condivisioni
+	 */
+	public void chiudi(int attesaMassima) {
+		try {
+			coda.put(fine);
+			mittente.join(attesaMassima * 1000L);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		try {
+			canale.close();
+		} catch (IOException e) {
+			System.err.println("Errore chiusura canale condivisioni: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return riepilogo delle metriche: condivisioni accodate, inviate e
+	 *         scartate, datagrammi inviati e invii falliti
+	 */
+	public String metriche() {
+		long numeroDatagrammi = datagrammi;
+
+		return "Condivisioni: " + accodate.sum() + " accodate, " + inviate + " inviate in " + numeroDatagrammi
+				+ " datagrammi (" + (numeroDatagrammi > 0 ? inviate / numeroDatagrammi : 0) + " per datagramma), "
+				+ scartate.sum() + " scartate, " + errori + " invii falliti";
+	}
+
+	/**
+	 * Ciclo del mittente: attende una condivisione, raccoglie quelle accodate nel
+	 * frattempo e le invia impacchettate
+	 */
+	private void ciclo() {
+		ByteBuffer datagramma = ByteBuffer.allocateDirect(dimensioneDatagramma);
+		List<byte[]> gruppoInvio = new ArrayList<>();
+
+		while (true) {
+			try {
+				gruppoInvio.add(coda.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+			coda.drainTo(gruppoInvio);
+
+			boolean termina = false;
+			for (byte[] condivisione : gruppoInvio) {
+				if (condivisione == fine) {
+					termina = true;
+					continue;
+				}
+
+				if (datagramma.remaining() < 2 + condivisione.length)
+					invia(datagramma);
+
+				datagramma.putShort((short) condivisione.length);
+				datagramma.put(condivisione);
+				inviate++;
+			}
+			gruppoInvio.clear();
+
+			if (datagramma.position() > 0)
+				invia(datagramma);
+
+			if (termina)
+				return;
+		}
+	}
+
+	/**
+	 * Metodo che invia il datagramma composto e svuota il buffer
+	 *
+	 * @param datagramma buffer con le condivisioni impacchettate
+	 */
+	private void invia(ByteBuffer datagramma) {
+		datagramma.flip();
+		try {
+			canale.send(datagramma, gruppo);
+			datagrammi++;
+		} catch (IOException e) {
+			errori++;
+			System.err.println("Errore invio condivisioni: " + e.getMessage());
+		}
+		datagramma.clear();
+	}
+
+}
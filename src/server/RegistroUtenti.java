@@ -0,0 +1,87 @@
+package server;
+
+import java.io.IOException;
+
+/**
+ * Registro degli utenti condiviso dalle sessioni. Le implementazioni
+ * conservano gli utenti in heap (RegistroUtentiHeap) o in un archivio fuori
+ * heap, eventualmente mappato su file (RegistroUtentiOffHeap).
+ */
+public interface RegistroUtenti {
+
+	/**
+	 * Metodo che dimensiona il registro per il numero di utenti atteso, evitando
+	 * ridimensionamenti durante il ripristino. Senza effetto se il registro non e'
+	 * vuoto.
+	 *
+	 * @param numeroUtenti numero di utenti atteso
+	 */
+	void dimensiona(int numeroUtenti);
+
+	/**
+	 * Metodo che restituisce i dati di un utente
+	 *
+	 * @param username username dell'utente
+	 *
+	 * @return i dati dell'utente, null se non registrato
+	 */
+	DatiUtente get(String username);
+
+	/**
+	 * Metodo che registra un nuovo utente se l'username non e' gia' usato. I dati
+	 * da usare dopo la registrazione sono quelli restituiti da get, che possono
+	 * essere una copia di quelli passati.
+	 *
+	 * @param utente dati del nuovo utente
+	 *
+	 * @return TRUE se l'utente e' stato registrato, FALSE se l'username era gia'
+	 *         presente
+	 */
+	boolean registra(DatiUtente utente);
+
+	/**
+	 * Metodo che aggiunge un utente ripristinato da file, sostituendo eventuali
+	 * dati precedenti con lo stesso username
+	 *
+	 * @param utente dati dell'utente
+	 */
+	void ripristina(DatiUtente utente);
+
+	/**
+	 * @return vista degli utenti registrati, iterabile in modo concorrente
+	 */
+	Iterable<DatiUtente> utenti();
+
+	/**
+	 * @return numero di utenti registrati
+	 */
+	int numeroUtenti();
+
+	/**
+	 * @return lunghezza massima in byte UTF-8 dello username di un nuovo utente,
+	 *         uguale per tutti i registri (lo slot di RegistroUtentiOffHeap) cosi'
+	 *         gli utenti restano ripristinabili cambiando archivio. Gli utenti
+	 *         registrati prima del limite vengono comunque ripristinati.
+	 */
+	default int lunghezzaMassimaUsername() {
+		return 32;
+	}
+
+	/**
+	 * @return TRUE se il registro contiene gia' gli utenti, riaperti da un file
+	 *         chiuso correttamente, e il file di stato serve solo per la parola
+	 */
+	default boolean riaperto() {
+		return false;
+	}
+
+	/**
+	 * Metodo chiamato dopo l'ultima scrittura dello stato, alla chiusura del
+	 * server
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	default void chiudi() throws IOException {
+	}
+
+}
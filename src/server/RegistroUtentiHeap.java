@@ -0,0 +1,53 @@
+package server;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro concorrente degli utenti in heap. Registrazione e ricerca non usano
+ * lock globali: la registrazione e' un putIfAbsent atomico e lo stato di login
+ * e' un flag CAS in ogni DatiUtente, quindi hashing della password e I/O di
+ * rete avvengono senza bloccare le altre sessioni.
+ */
+public class RegistroUtentiHeap implements RegistroUtenti {
+
+	// utenti indicizzati per username, sostituita solo da dimensiona durante il
+	// ripristino, prima dell'avvio dei thread del server
+	private ConcurrentHashMap<String, DatiUtente> utenti;
+
+	public RegistroUtentiHeap() {
+		this.utenti = new ConcurrentHashMap<String, DatiUtente>();
+	}
+
+	@Override
+	public void dimensiona(int numeroUtenti) {
+		if (utenti.isEmpty())
+			utenti = new ConcurrentHashMap<String, DatiUtente>(Math.max(numeroUtenti, 16), 0.75f,
+					Runtime.getRuntime().availableProcessors());
+	}
+
+	@Override
+	public DatiUtente get(String username) {
+		return utenti.get(username);
+	}
+
+	@Override
+	public boolean registra(DatiUtente utente) {
+		return utenti.putIfAbsent(utente.getUsername(), utente) == null;
+	}
+
+	@Override
+	public void ripristina(DatiUtente utente) {
+		utenti.put(utente.getUsername(), utente);
+	}
+
+	@Override
+	public Iterable<DatiUtente> utenti() {
+		return utenti.values();
+	}
+
+	@Override
+	public int numeroUtenti() {
+		return utenti.size();
+	}
+
+}
@@ -0,0 +1,629 @@
+package server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registro degli utenti fuori heap: ogni utente occupa uno slot di dimensione
+ * fissa in blocchi di ByteBuffer diretti o mappati su file, quindi milioni di
+ * utenti non aggiungono oggetti da visitare al garbage collector. Gli slot sono
+ * indicizzati da una tabella ad indirizzamento aperto sull'hash dello username
+ * (slot + 1, 0 se vuota) e i DatiUtenteOffHeap restituiti sono viste sullo
+ * slot.
+ *
+ * Gli inserimenti sono serializzati da un lock, le ricerche non usano lock: lo
+ * slot viene scritto prima di pubblicare la voce della tabella. Le statistiche
+ * di ogni slot sono protette da un seqlock: chi scrive porta la versione a
+ * dispari con un CAS e la riporta a pari al termine, chi legge ripete la
+ * lettura se la versione era dispari o e' cambiata. Il flag di login e' un
+ * intero modificato con CAS.
+ *
+ * Gli username oltre i byte dello slot, possibili solo per utenti registrati
+ * prima del limite di lunghezza, sono conservati in heap in una mappa a parte.
+ *
+ * Con un file, la chiusura corretta forza gli slot su disco e segna
+ * l'intestazione come pulita: al riavvio gli utenti vengono riaperti senza
+ * leggerli dal file di stato. Se esistono utenti in heap l'intestazione non
+ * viene segnata pulita, al riavvio tutti gli utenti si rileggono dallo stato. Dopo un crash il contenuto del file non e'
+ * affidabile (pagine non scritte, slot a meta' aggiornamento), viene scartato
+ * e gli utenti sono ricostruiti dal file di stato e dal write-ahead log.
+ *
+ * Slot (byte, ordine nativo): versione (int), loggato (int), scadenza ultima
+ * parola giocata (long), LSN (long), partite giocate, partite vinte, migliore
+ * streak, streak in corso, 12 tentativi (int), lunghezza username (byte),
+ * username UTF-8 (32 byte), codice della funzione di derivazione (byte),
+ * costo (int), sale (16 byte, zero se non salata), hash password (32 byte).
+ */
+public class RegistroUtentiOffHeap implements RegistroUtenti {
+
+	// posizioni dei campi nello slot
+	private static final int posVersione = 0;
+	private static final int posLoggato = 4;
+	private static final int posScadenza = 8;
+	private static final int posLsn = 16;
+	private static final int posPartiteGiocate = 24;
+	private static final int posPartiteVinte = 28;
+	private static final int posMiglioreStreak = 32;
+	private static final int posStreakInCorso = 36;
+	private static final int posDistribuzione = 40;
+	private static final int posLunghezzaUsername = 88;
+	private static final int posUsername = 89;
+	private static final int posFunzione = 121;
+	private static final int posCosto = 124;
+	private static final int posSale = 128;
+	private static final int posHash = 144;
+
+	// byte massimi dello username e dimensione dello slot, multiplo di 8 per
+	// gli accessi atomici allineati
+	private static final int byteUsername = 32;
+	private static final int dimensioneSlot = 176;
+
+	// slot per blocco (potenza di 2) e dimensione di un blocco
+	private static final int bitBlocco = 16;
+	private static final int slotPerBlocco = 1 << bitBlocco;
+	private static final int dimensioneBlocco = dimensioneSlot * slotPerBlocco;
+
+	// intestazione del file: magic "WRDU", versione del formato, numero di slot
+	// e flag di chiusura corretta, seguita dai blocchi
+	private static final int magic = 0x57524455;
+	private static final int versioneFormato = 2;
+	private static final int intestazione = 64;
+
+	// capacita' minima della tabella (potenza di 2)
+	private static final int capacitaMinima = 1024;
+
+	// accessi atomici agli interi degli slot e alle voci della tabella
+	private static final VarHandle intero = MethodHandles.byteBufferViewVarHandle(int[].class,
+			ByteOrder.nativeOrder());
+	private static final VarHandle voce = MethodHandles.arrayElementVarHandle(int[].class);
+
+	// file dell'archivio e intestazione mappata, null se fuori heap senza file
+	private final FileChannel canale;
+	private final MappedByteBuffer datiIntestazione;
+
+	// TRUE se gli utenti sono stati riaperti da un file chiuso correttamente
+	private final boolean riaperto;
+
+	// serializza inserimenti, aggiunta di blocchi e ingrandimento della tabella
+	private final ReentrantLock lockInserimento = new ReentrantLock();
+
+	// blocchi di slot, tabella (slot + 1 per voce) e slot usati, pubblicati
+	// dopo la scrittura dei dati che riferiscono
+	private volatile ByteBuffer[] blocchi = new ByteBuffer[0];
+	private volatile int[] tabella = new int[capacitaMinima];
+	private volatile int numeroSlot;
+
+	// utenti con username oltre byteUsername, in heap
+	private final ConcurrentHashMap<String, DatiUtente> usernameLunghi = new ConcurrentHashMap<>();
+
+	/**
+	 * Costruttore archivio in memoria diretta, non persistente
+	 */
+	public RegistroUtentiOffHeap() {
+		this.canale = null;
+		this.datiIntestazione = null;
+		this.riaperto = false;
+	}
+
+	/**
+	 * Costruttore archivio mappato su file. Se il file e' stato chiuso
+	 * correttamente gli utenti vengono riaperti, altrimenti il contenuto viene
+	 * scartato.
+	 *
+	 * @param file file dell'archivio, creato se non esiste
+	 *
+	 * @throws IOException errore di apertura o mappatura del file
+	 */
+	public RegistroUtentiOffHeap(Path file) throws IOException {
+		this.canale = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE);
+		this.datiIntestazione = canale.map(FileChannel.MapMode.READ_WRITE, 0, intestazione);
+		datiIntestazione.order(ByteOrder.nativeOrder());
+
+		boolean pulito = datiIntestazione.getInt(0) == magic && datiIntestazione.getInt(4) == versioneFormato
+				&& datiIntestazione.getInt(12) == 1;
+
+		if (pulito) {
+			riapri(datiIntestazione.getInt(8));
+		} else {
+			canale.truncate(intestazione);
+			datiIntestazione.putInt(0, magic).putInt(4, versioneFormato).putInt(8, 0);
+		}
+		this.riaperto = pulito;
+
+		// fino alla prossima chiusura corretta il contenuto non e' affidabile
+		datiIntestazione.putInt(12, 0);
+		datiIntestazione.force();
+	}
+
+	@Override
+	public void dimensiona(int numeroUtenti) {
+		lockInserimento.lock();
+		try {
+			if (numeroSlot == 0)
+				tabella = new int[capacita(numeroUtenti)];
+		} finally {
+			lockInserimento.unlock();
+		}
+	}
+
+	@Override
+	public DatiUtente get(String username) {
+		byte[] utf8 = username.getBytes(StandardCharsets.UTF_8);
+		if (utf8.length > byteUsername)
+			return usernameLunghi.get(username);
+
+		int slot = cerca(tabella, utf8, hash(utf8, utf8.length));
+		return slot < 0 ? null : new DatiUtenteOffHeap(this, slot, username);
+	}
+
+	@Override
+	public boolean registra(DatiUtente utente) {
+		byte[] username = utente.getUsername().getBytes(StandardCharsets.UTF_8);
+		if (username.length > byteUsername)
+			return usernameLunghi.putIfAbsent(utente.getUsername(), utente) == null;
+
+		int hash = hash(username, username.length);
+
+		lockInserimento.lock();
+		try {
+			if (cerca(tabella, username, hash) >= 0)
+				return false;
+
+			inserisci(username, hash, utente);
+			return true;
+		} finally {
+			lockInserimento.unlock();
+		}
+	}
+
+	@Override
+	public void ripristina(DatiUtente utente) {
+		byte[] username = utente.getUsername().getBytes(StandardCharsets.UTF_8);
+		if (username.length > byteUsername) {
+			usernameLunghi.put(utente.getUsername(), utente);
+			return;
+		}
+
+		int hash = hash(username, username.length);
+
+		lockInserimento.lock();
+		try {
+			int slot = cerca(tabella, username, hash);
+			if (slot < 0) {
+				inserisci(username, hash, utente);
+				return;
+			}
+
+			// utente gia' presente, sostituzione di credenziali e statistiche
+			ByteBuffer blocco = blocco(slot);
+			int base = base(slot);
+			int versione = bloccaSlot(blocco, base);
+			try {
+				scriviCredenziali(blocco, base, utente.getCredenziali());
+				scriviStatistiche(blocco, base, utente.statistiche());
+			} finally {
+				intero.setRelease(blocco, base + posVersione, versione + 1);
+			}
+		} finally {
+			lockInserimento.unlock();
+		}
+	}
+
+	@Override
+	public Iterable<DatiUtente> utenti() {
+		return () -> new Iterator<DatiUtente>() {
+			// slot pubblicati all'inizio dell'iterazione, poi utenti in heap
+			private final int fine = numeroSlot;
+			private final Iterator<DatiUtente> lunghi = usernameLunghi.values().iterator();
+			private int prossimo;
+
+			@Override
+			public boolean hasNext() {
+				return prossimo < fine || lunghi.hasNext();
+			}
+
+			@Override
+			public DatiUtente next() {
+				if (prossimo >= fine)
+					return lunghi.next();
+				return new DatiUtenteOffHeap(RegistroUtentiOffHeap.this, prossimo++, null);
+			}
+		};
+	}
+
+	@Override
+	public int numeroUtenti() {
+		return numeroSlot + usernameLunghi.size();
+	}
+
+	@Override
+	public boolean riaperto() {
+		return riaperto;
+	}
+
+	/**
+	 * Metodo che forza gli slot su disco e segna il file come chiuso
+	 * correttamente. Da chiamare quando nessuna sessione modifica piu' gli
+	 * utenti.
+	 */
+	@Override
+	public void chiudi() throws IOException {
+		if (canale == null)
+			return;
+
+		for (ByteBuffer blocco : blocchi)
+			((MappedByteBuffer) blocco).force();
+
+		// flag scritto solo dopo gli slot, gli utenti in heap si rileggono dallo
+		// stato
+		datiIntestazione.putInt(8, numeroSlot);
+		datiIntestazione.force();
+		if (usernameLunghi.isEmpty()) {
+			datiIntestazione.putInt(12, 1);
+			datiIntestazione.force();
+		}
+		canale.close();
+	}
+
+	// accessi agli slot da DatiUtenteOffHeap
+
+	String username(int slot) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+		byte[] utf8 = new byte[blocco.get(base + posLunghezzaUsername) & 0xFF];
+		blocco.get(base + posUsername, utf8);
+		return new String(utf8, StandardCharsets.UTF_8);
+	}
+
+	Credenziali credenziali(int slot) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+
+		// credenziali scritte solo prima della pubblicazione o al ripristino
+		FunzioneDerivazione funzione = Credenziali.funzione(blocco.get(base + posFunzione));
+		byte[] sale = new byte[funzione.salata() ? Credenziali.byteSale : 0];
+		byte[] hash = new byte[Credenziali.byteHash];
+		blocco.get(base + posSale, sale);
+		blocco.get(base + posHash, hash);
+		return new Credenziali(funzione, blocco.getInt(base + posCosto), sale, hash);
+	}
+
+	StatisticheUtente statistiche(int slot) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+
+		while (true) {
+			int versione = (int) intero.getAcquire(blocco, base + posVersione);
+			if ((versione & 1) == 0) {
+				StatisticheUtente statistiche = leggiStatistiche(blocco, base);
+
+				// campi letti prima della verifica della versione
+				VarHandle.acquireFence();
+				if ((int) intero.getVolatile(blocco, base + posVersione) == versione)
+					return statistiche;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	long lsn(int slot) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+
+		// stesso protocollo di lettura delle statistiche, senza copiarle
+		while (true) {
+			int versione = (int) intero.getAcquire(blocco, base + posVersione);
+			if ((versione & 1) == 0) {
+				long lsn = blocco.getLong(base + posLsn);
+
+				VarHandle.acquireFence();
+				if ((int) intero.getVolatile(blocco, base + posVersione) == versione)
+					return lsn;
+			}
+			Thread.onSpinWait();
+		}
+	}
+
+	boolean isLoggato(int slot) {
+		return (int) intero.getVolatile(blocco(slot), base(slot) + posLoggato) != 0;
+	}
+
+	StatisticheUtente iniziaPartita(int slot, long scadenza, long lsn) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+		int versione = bloccaSlot(blocco, base);
+		try {
+			if (blocco.getLong(base + posScadenza) == scadenza)
+				return null;
+
+			StatisticheUtente attuali = leggiStatistiche(blocco, base);
+			scriviStatistiche(blocco, base, attuali.conPartitaIniziata(scadenza, lsn));
+			return attuali;
+		} finally {
+			intero.setRelease(blocco, base + posVersione, versione + 1);
+		}
+	}
+
+	void registraVittoria(int slot, int tentativi, int streakVittorie, long lsn) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+		int versione = bloccaSlot(blocco, base);
+		try {
+			StatisticheUtente attuali = leggiStatistiche(blocco, base);
+			scriviStatistiche(blocco, base, attuali.conVittoria(tentativi, streakVittorie, lsn));
+		} finally {
+			intero.setRelease(blocco, base + posVersione, versione + 1);
+		}
+	}
+
+	boolean login(int slot) {
+		return intero.compareAndSet(blocco(slot), base(slot) + posLoggato, 0, 1);
+	}
+
+	void logout(int slot) {
+		intero.setVolatile(blocco(slot), base(slot) + posLoggato, 0);
+	}
+
+	// gestione slot e tabella
+
+	/**
+	 * Metodo che scrive un nuovo utente nel primo slot libero e lo pubblica nella
+	 * tabella. Da chiamare con il lock di inserimento.
+	 *
+	 * @param username username in UTF-8
+	 * @param hash     hash dello username
+	 * @param utente   dati dell'utente: credenziali, statistiche e stato di login
+	 */
+	private void inserisci(byte[] username, int hash, DatiUtente utente) {
+		int slot = numeroSlot;
+		if ((slot >>> bitBlocco) == blocchi.length) {
+			ByteBuffer[] nuovi = Arrays.copyOf(blocchi, blocchi.length + 1);
+			nuovi[blocchi.length] = nuovoBlocco(blocchi.length);
+			blocchi = nuovi;
+		}
+
+		// slot non ancora visibile, scrittura senza seqlock
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+		blocco.putInt(base + posVersione, 0);
+		blocco.putInt(base + posLoggato, utente.isLoggato() ? 1 : 0);
+		scriviStatistiche(blocco, base, utente.statistiche());
+		blocco.put(base + posLunghezzaUsername, (byte) username.length);
+		blocco.put(base + posUsername, username);
+		scriviCredenziali(blocco, base, utente.getCredenziali());
+
+		int[] attuale = tabella;
+		if ((slot + 1) * 2 > attuale.length) {
+			// nuova tabella completa prima della pubblicazione
+			int[] nuova = new int[attuale.length * 2];
+			byte[] temporaneo = new byte[byteUsername];
+			for (int i = 0; i < slot; i++) {
+				ByteBuffer b = blocco(i);
+				int lunghezza = b.get(base(i) + posLunghezzaUsername) & 0xFF;
+				b.get(base(i) + posUsername, temporaneo, 0, lunghezza);
+				pubblica(nuova, hash(temporaneo, lunghezza), i);
+			}
+			pubblica(nuova, hash, slot);
+			tabella = nuova;
+		} else {
+			pubblica(attuale, hash, slot);
+		}
+
+		numeroSlot = slot + 1;
+	}
+
+	/**
+	 * Metodo che mappa i blocchi degli slot scritti prima della chiusura
+	 * corretta e ricostruisce la tabella
+	 *
+	 * @param numero numero di slot riportato nell'intestazione
+	 */
+	private void riapri(int numero) {
+		int numeroBlocchi = (numero + slotPerBlocco - 1) >>> bitBlocco;
+		ByteBuffer[] aperti = new ByteBuffer[numeroBlocchi];
+		for (int i = 0; i < numeroBlocchi; i++)
+			aperti[i] = nuovoBlocco(i);
+		blocchi = aperti;
+
+		int[] nuova = new int[capacita(numero)];
+		byte[] temporaneo = new byte[byteUsername];
+		for (int slot = 0; slot < numero; slot++) {
+			ByteBuffer blocco = blocco(slot);
+			int base = base(slot);
+
+			// nessuna sessione attiva dopo il riavvio
+			blocco.putInt(base + posVersione, 0);
+			blocco.putInt(base + posLoggato, 0);
+
+			int lunghezza = blocco.get(base + posLunghezzaUsername) & 0xFF;
+			blocco.get(base + posUsername, temporaneo, 0, lunghezza);
+			pubblica(nuova, hash(temporaneo, lunghezza), slot);
+		}
+
+		tabella = nuova;
+		numeroSlot = numero;
+	}
+
+	/**
+	 * @param numero numero del blocco
+	 *
+	 * @return blocco di memoria diretta o mappato nel file dopo l'intestazione
+	 */
+	private ByteBuffer nuovoBlocco(int numero) {
+		if (canale == null)
+			return ByteBuffer.allocateDirect(dimensioneBlocco).order(ByteOrder.nativeOrder());
+
+		try {
+			return canale.map(FileChannel.MapMode.READ_WRITE, intestazione + (long) numero * dimensioneBlocco,
+					dimensioneBlocco).order(ByteOrder.nativeOrder());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Errore mappatura archivio utenti", e);
+		}
+	}
+
+	/**
+	 * Metodo che cerca uno username nella tabella, senza lock
+	 *
+	 * @param tabella  tabella pubblicata
+	 * @param username username in UTF-8
+	 * @param hash     hash dello username
+	 *
+	 * @return lo slot dell'utente, -1 se non presente
+	 */
+	private int cerca(int[] tabella, byte[] username, int hash) {
+		int maschera = tabella.length - 1;
+
+		for (int i = hash & maschera;; i = (i + 1) & maschera) {
+			int valore = (int) voce.getAcquire(tabella, i);
+			if (valore == 0)
+				return -1;
+			if (usernameUguale(valore - 1, username))
+				return valore - 1;
+		}
+	}
+
+	/**
+	 * Metodo che pubblica uno slot nella prima voce libera a partire dall'hash.
+	 * Da chiamare con il lock di inserimento.
+	 *
+	 * @param tabella tabella di destinazione
+	 * @param hash    hash dello username
+	 * @param slot    slot dell'utente
+	 */
+	private static void pubblica(int[] tabella, int hash, int slot) {
+		int maschera = tabella.length - 1;
+		int i = hash & maschera;
+		while (tabella[i] != 0)
+			i = (i + 1) & maschera;
+		voce.setRelease(tabella, i, slot + 1);
+	}
+
+	/**
+	 * @param slot     slot da confrontare
+	 * @param username username in UTF-8
+	 *
+	 * @return TRUE se lo slot contiene lo username
+	 */
+	private boolean usernameUguale(int slot, byte[] username) {
+		ByteBuffer blocco = blocco(slot);
+		int base = base(slot);
+
+		if ((blocco.get(base + posLunghezzaUsername) & 0xFF) != username.length)
+			return false;
+		for (int i = 0; i < username.length; i++) {
+			if (blocco.get(base + posUsername + i) != username[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Metodo che acquisisce lo slot in scrittura portando la versione a dispari
+	 *
+	 * @param blocco blocco dello slot
+	 * @param base   posizione dello slot nel blocco
+	 *
+	 * @return la versione dispari, da incrementare al rilascio
+	 */
+	private static int bloccaSlot(ByteBuffer blocco, int base) {
+		while (true) {
+			int versione = (int) intero.getVolatile(blocco, base + posVersione);
+			if ((versione & 1) == 0 && intero.compareAndSet(blocco, base + posVersione, versione, versione + 1))
+				return versione + 1;
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * @param blocco blocco dello slot
+	 * @param base   posizione dello slot nel blocco
+	 *
+	 * @return statistiche lette dallo slot, senza controllo della versione
+	 */
+	private static StatisticheUtente leggiStatistiche(ByteBuffer blocco, int base) {
+		int[] distribuzione = new int[StatisticheUtente.tentativiMassimi];
+		for (int i = 0; i < distribuzione.length; i++)
+			distribuzione[i] = blocco.getInt(base + posDistribuzione + 4 * i);
+
+		return new StatisticheUtente(blocco.getInt(base + posPartiteGiocate), blocco.getInt(base + posPartiteVinte),
+				blocco.getInt(base + posMiglioreStreak), blocco.getInt(base + posStreakInCorso), distribuzione,
+				blocco.getLong(base + posScadenza), blocco.getLong(base + posLsn));
+	}
+
+	/**
+	 * @param blocco      blocco dello slot
+	 * @param base        posizione dello slot nel blocco
+	 * @param statistiche statistiche da scrivere nello slot
+	 */
+	private static void scriviStatistiche(ByteBuffer blocco, int base, StatisticheUtente statistiche) {
+		blocco.putLong(base + posScadenza, statistiche.getScadenzaParolaGiocata());
+		blocco.putLong(base + posLsn, statistiche.getLsn());
+		blocco.putInt(base + posPartiteGiocate, statistiche.getPartiteGiocate());
+		blocco.putInt(base + posPartiteVinte, statistiche.getPartiteVinte());
+		blocco.putInt(base + posMiglioreStreak, statistiche.getMiglioreStreakVittorie());
+		blocco.putInt(base + posStreakInCorso, statistiche.getStreakVittorieInCorso());
+		for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+			blocco.putInt(base + posDistribuzione + 4 * i, statistiche.getDistribuzioneTentativi(i));
+	}
+
+	/**
+	 * @param blocco      blocco dello slot
+	 * @param base        posizione dello slot nel blocco
+	 * @param credenziali credenziali da scrivere nello slot
+	 */
+	private static void scriviCredenziali(ByteBuffer blocco, int base, Credenziali credenziali) {
+		blocco.put(base + posFunzione, credenziali.getFunzione().codice());
+		blocco.putInt(base + posCosto, credenziali.getCosto());
+		blocco.put(base + posSale, Arrays.copyOf(credenziali.getSale(), Credenziali.byteSale));
+		blocco.put(base + posHash, credenziali.getHash());
+	}
+
+	private ByteBuffer blocco(int slot) {
+		return blocchi[slot >>> bitBlocco];
+	}
+
+	private static int base(int slot) {
+		return (slot & (slotPerBlocco - 1)) * dimensioneSlot;
+	}
+
+	/**
+	 * @param numeroUtenti numero di utenti atteso
+	 *
+	 * @return capacita' della tabella con fattore di carico al piu' 0.5
+	 */
+	private static int capacita(int numeroUtenti) {
+		int capacita = capacitaMinima;
+		while (capacita < numeroUtenti * 2L)
+			capacita <<= 1;
+		return capacita;
+	}
+
+	/**
+	 * @param username  username in UTF-8
+	 * @param lunghezza byte dello username
+	 *
+	 * @return hash FNV-1a dello username con i bit alti mescolati nei bassi
+	 */
+	private static int hash(byte[] username, int lunghezza) {
+		int hash = 0x811C9DC5;
+		for (int i = 0; i < lunghezza; i++)
+			hash = (hash ^ (username[i] & 0xFF)) * 0x01000193;
+		return hash ^ (hash >>> 16);
+	}
+
+}
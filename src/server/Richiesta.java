@@ -0,0 +1,58 @@
+package server;
+
+/**
+ * Richiesta di un client decodificata dal protocollo della sessione, testuale
+ * o binario. La sessione riusa un solo oggetto per tutte le richieste.
+ */
+public class Richiesta {
+
+	// codici richiesta, uguali nel protocollo testuale e negli opcode del
+	// protocollo binario
+	public static final int codiceRegistrazione = 10;
+	public static final int codiceLogin = 20;
+	public static final int codiceGioca = 30;
+	public static final int codiceTentativo = 31;
+	public static final int codiceArrenditi = 32;
+	public static final int codiceStatistiche = 40;
+	public static final int codiceClassifica = 70;
+	public static final int codiceStatisticheParole = 80;
+	public static final int codiceEsci = 50;
+	public static final int codiceCondividi = 60;
+	public static final int codiceNonCondividere = 61;
+
+	// codice della richiesta
+	private int codice;
+
+	// campi della richiesta (username e password, parola tentata), null se
+	// assenti
+	private String primoCampo;
+	private String secondoCampo;
+
+	/**
+	 * Metodo usato dai protocolli per impostare la richiesta decodificata
+	 *
+	 * @param codice       codice della richiesta
+	 * @param primoCampo   primo campo, null se assente
+	 * @param secondoCampo secondo campo, null se assente
+	 */
+	void imposta(int codice, String primoCampo, String secondoCampo) {
+		this.codice = codice;
+		this.primoCampo = primoCampo;
+		this.secondoCampo = secondoCampo;
+	}
+
+	// getters
+
+	public int getCodice() {
+		return codice;
+	}
+
+	public String getPrimoCampo() {
+		return primoCampo;
+	}
+
+	public String getSecondoCampo() {
+		return secondoCampo;
+	}
+
+}
@@ -0,0 +1,197 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ordine di estrazione delle parole senza ripetizioni: una permutazione
+ * pseudocasuale degli indici del vocabolario (rete di Feistel su 2k bit con
+ * cycle-walking fino ad un indice valido), percorsa da un cursore. La
+ * permutazione e' invertibile, quindi il cursore non viene salvato ma
+ * ricalcolato dall'indice della parola corrente: sul file resta solo il seme,
+ * riscritto quando il vocabolario e' esaurito e inizia una nuova
+ * permutazione. Ogni estrazione costa O(1) in tempo e memoria.
+ *
+ * Formato del file: seme (long) e numero di parole (int) della permutazione.
+ */
+public class SequenzaParole {
+
+	// round della rete di Feistel
+	private static final int round = 4;
+
+	// file del seme
+	private final Path file;
+
+	// numero di parole del vocabolario
+	private final int numeroParole;
+
+	// bit di ciascuna meta' dell'indice e relativa maschera
+	private final int bitMeta;
+	private final int maschera;
+
+	// seme della permutazione corrente
+	private long seme;
+
+	/**
+	 * Costruttore che legge il seme della permutazione o ne crea uno nuovo se il
+	 * file non esiste o il vocabolario e' cambiato
+	 *
+	 * @param file         file del seme
+	 * @param numeroParole numero di parole del vocabolario
+	 *
+	 * @throws IOException errore di lettura o scrittura del file
+	 */
+	public SequenzaParole(Path file, int numeroParole) throws IOException {
+		this.file = file;
+		this.numeroParole = numeroParole;
+
+		// meta' di almeno un bit, dominio 2^(2*bitMeta) >= numeroParole
+		int bit = Math.max(2, 32 - Integer.numberOfLeadingZeros(Math.max(1, numeroParole - 1)));
+		this.bitMeta = (bit + 1) / 2;
+		this.maschera = (1 << bitMeta) - 1;
+
+		if (Files.exists(file)) {
+			try (DataInputStream input = new DataInputStream(new FileInputStream(file.toFile()))) {
+				seme = input.readLong();
+				if (input.readInt() == numeroParole)
+					return;
+			}
+		}
+
+		nuovoSeme();
+	}
+
+	/**
+	 * Metodo che restituisce l'indice della parola successiva a quella corrente.
+	 * Esaurito il vocabolario inizia una nuova permutazione, che non ripete
+	 * subito la parola corrente.
+	 *
+	 * @param corrente indice della parola corrente, -1 se non esiste o non
+	 *                 appartiene al vocabolario
+	 *
+	 * @return indice della parola successiva
+	 *
+	 * @throws IOException errore di scrittura del nuovo seme
+	 */
+	public int successiva(int corrente) throws IOException {
+		int indice = successivaPrevista(corrente);
+		if (indice >= 0)
+			return indice;
+
+		nuovoSeme();
+		return permutazione(permutazione(0) == corrente && numeroParole > 1 ? 1 : 0);
+	}
+
+	/**
+	 * Metodo che restituisce l'indice della parola successiva nella permutazione
+	 * corrente, senza iniziarne una nuova: non scrive mai il file del seme
+	 *
+	 * @param corrente indice della parola corrente, -1 se non esiste o non
+	 *                 appartiene al vocabolario
+	 *
+	 * @return indice della parola successiva, -1 se la corrente e' l'ultima
+	 *         della permutazione
+	 */
+	public int successivaPrevista(int corrente) {
+		int cursore = corrente >= 0 && corrente < numeroParole ? inversa(corrente) + 1 : 0;
+
+		return cursore == numeroParole ? -1 : permutazione(cursore);
+	}
+
+	/**
+	 * Metodo che sceglie e salva un nuovo seme, sostituendo atomicamente il file.
+	 * Il seme in memoria cambia solo dopo la sostituzione: dopo un errore la
+	 * permutazione resta quella del file.
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private void nuovoSeme() throws IOException {
+		long nuovo = ThreadLocalRandom.current().nextLong();
+
+		Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileOutputStream output = new FileOutputStream(temporaneo.toFile());
+				DataOutputStream dati = new DataOutputStream(output)) {
+			dati.writeLong(nuovo);
+			dati.writeInt(numeroParole);
+			dati.flush();
+			output.getFD().sync();
+		}
+
+		Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		seme = nuovo;
+	}
+
+	/**
+	 * @param cursore posizione nella permutazione, da 0 a numeroParole - 1
+	 *
+	 * @return indice della parola in quella posizione
+	 */
+	int permutazione(int cursore) {
+		// il dominio supera il vocabolario di meno di 4 volte, pochi passi
+		int indice = feistel(cursore);
+		while (indice >= numeroParole)
+			indice = feistel(indice);
+
+		return indice;
+	}
+
+	/**
+	 * @param indice indice di una parola del vocabolario
+	 *
+	 * @return posizione dell'indice nella permutazione
+	 */
+	int inversa(int indice) {
+		int cursore = feistelInversa(indice);
+		while (cursore >= numeroParole)
+			cursore = feistelInversa(cursore);
+
+		return cursore;
+	}
+
+	private int feistel(int valore) {
+		int sinistra = valore >>> bitMeta;
+		int destra = valore & maschera;
+
+		for (int i = 0; i < round; i++) {
+			int nuova = sinistra ^ funzione(destra, i);
+			sinistra = destra;
+			destra = nuova;
+		}
+
+		return (sinistra << bitMeta) | destra;
+	}
+
+	private int feistelInversa(int valore) {
+		int sinistra = valore >>> bitMeta;
+		int destra = valore & maschera;
+
+		for (int i = round - 1; i >= 0; i--) {
+			int precedente = destra ^ funzione(sinistra, i);
+			destra = sinistra;
+			sinistra = precedente;
+		}
+
+		return (sinistra << bitMeta) | destra;
+	}
+
+	/**
+	 * Funzione di round: mescolamento di seme, round e meta' destra (finalizer
+	 * di SplitMix64)
+	 */
+	private int funzione(int meta, int numeroRound) {
+		long z = seme + (((long) numeroRound << 32) | meta) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+
+		return (int) z & maschera;
+	}
+
+}
@@ -0,0 +1,564 @@
+package server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Macchina a stati del protocollo di una sessione client (login, gioco e
+ * condivisione). Riceve una richiesta alla volta e risponde sul canale
+ * associato, in modo da poter essere guidata sia da un thread bloccante sia
+ * dal reactor NIO.
+ */
+public class Sessione {
+
+	// stati della sessione
+	private enum Stato {
+		AUTENTICAZIONE, MENU, PARTITA, CONDIVISIONE, TERMINATA
+	}
+
+	// canale di invio delle risposte
+	private final CanaleRisposta canale;
+
+	// protocollo scelto dal primo messaggio del client, null prima
+	private Protocollo protocollo;
+
+	// ultima richiesta decodificata, riusata
+	private final Richiesta richiesta = new Richiesta();
+
+	// componenti condivisi del server
+	private final ContestoServer contesto;
+
+	// stato corrente della sessione
+	private Stato stato;
+
+	// dati utente della sessione, inizializzato alla registrazione/login
+	private DatiUtente utente;
+
+	// dati della partita in corso
+	private Parola parolaLocale;
+	private final Valutatore valutatore = new Valutatore();
+	private int round;
+	private int streakVittorie;
+
+	// risultati dei tentativi della partita, codificati alla condivisione
+	private final int[] risultatiPartita = new int[StatisticheUtente.tentativiMassimi];
+
+	public Sessione(CanaleRisposta canale, ContestoServer contesto) {
+		this.canale = canale;
+		this.contesto = contesto;
+		this.stato = Stato.AUTENTICAZIONE;
+	}
+
+	/**
+	 * Metodo che gestisce una richiesta del client in base allo stato corrente
+	 * della sessione. Il primo frame sceglie il protocollo: la negoziazione del
+	 * protocollo binario o una richiesta testuale.
+	 *
+	 * @param frame     array che contiene il frame ricevuto dal client
+	 * @param inizio    posizione del contenuto, dopo la lunghezza
+	 * @param lunghezza lunghezza del contenuto
+	 *
+	 * @throws IOException errore di scrittura sul canale o richiesta non valida
+	 */
+	public void gestisciRichiesta(byte[] frame, int inizio, int lunghezza) throws IOException {
+		if (protocollo == null) {
+			protocollo = ProtocolloBinario.negozia(canale, frame, inizio, lunghezza);
+			if (protocollo != null)
+				return;
+
+			protocollo = new ProtocolloTesto(canale);
+		}
+
+		protocollo.decodifica(frame, inizio, lunghezza, richiesta);
+
+		switch (stato) {
+
+		// tentativo o uscita dalla partita
+		case PARTITA:
+			gestisciTentativo();
+			break;
+
+		// scelta utente sulla condivisione del risultato
+		case CONDIVISIONE:
+			gestisciCondivisione();
+			break;
+
+		// richiesta con codice
+		default:
+			gestisciComando();
+		}
+	}
+
+	/**
+	 * @return TRUE se il client ha chiesto di uscire, FALSE altrimenti
+	 */
+	public boolean isTerminata() {
+		return stato == Stato.TERMINATA;
+	}
+
+	/**
+	 * Metodo da chiamare alla chiusura della connessione, se l'utente aveva fatto
+	 * login si esegue logout
+	 */
+	public void chiudi() {
+		if (utente != null) {
+			utente.logout();
+			utente = null;
+		}
+		stato = Stato.TERMINATA;
+	}
+
+	/**
+	 * Metodo che gestisce le richieste con codice fuori dalla partita
+	 *
+	 * @throws IOException errore di scrittura sul canale o richiesta non valida
+	 */
+	private void gestisciComando() throws IOException {
+
+		switch (richiesta.getCodice()) {
+
+		// registrazione o login
+		case Richiesta.codiceRegistrazione:
+		case Richiesta.codiceLogin:
+			if (stato != Stato.AUTENTICAZIONE || richiesta.getSecondoCampo() == null)
+				throw new IOException("Richiesta non valida");
+			gestisciRegistrazioneLogin();
+			break;
+
+		// fase di gioco
+		case Richiesta.codiceGioca:
+			if (stato != Stato.MENU)
+				throw new IOException("Richiesta non valida");
+			iniziaPartita();
+			break;
+
+		// mostra statistiche
+		case Richiesta.codiceStatistiche:
+			if (stato != Stato.MENU)
+				throw new IOException("Richiesta non valida");
+			protocollo.statistiche(utente);
+			break;
+
+		// mostra classifica
+		case Richiesta.codiceClassifica:
+			if (stato != Stato.MENU)
+				throw new IOException("Richiesta non valida");
+			classifica();
+			break;
+
+		// mostra statistiche delle ultime parole
+		case Richiesta.codiceStatisticheParole:
+			if (stato != Stato.MENU)
+				throw new IOException("Richiesta non valida");
+			protocollo.statisticheParole(contesto.getStatisticheParole().riepiloghi());
+			break;
+
+		case Richiesta.codiceEsci:
+			stato = Stato.TERMINATA;
+			break;
+
+		default:
+			throw new IOException("Richiesta non valida");
+		}
+	}
+
+	/**
+	 * Metodo che gestisce la registrazione o il login. L'hash della password e'
+	 * calcolato dal gestore delle credenziali, la sessione continua al termine
+	 * del calcolo. Se il procedimento va a buon fine la variabile utente viene
+	 * inizializzata con l'oggetto DatiUtente dell'utente gestito e la sessione
+	 * passa al menu
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void gestisciRegistrazioneLogin() throws IOException {
+
+		// recupero codice, username e password dalla richiesta
+		int codiceRichiesta = richiesta.getCodice();
+		String username = richiesta.getPrimoCampo();
+		String password = richiesta.getSecondoCampo();
+
+		// troppe richieste di accesso, rifiutate prima di calcolare le password
+		if (!contesto.getAccessi().consentiAccesso()) {
+			protocollo.esito(Esito.OCCUPATO);
+			return;
+		}
+
+		if (codiceRichiesta == Richiesta.codiceRegistrazione) {
+			// username limitato dallo slot dell'archivio fuori heap
+			if (username.getBytes(StandardCharsets.UTF_8).length > contesto.getUtenti().lunghezzaMassimaUsername()) {
+				protocollo.esito(Esito.USERNAME_TROPPO_LUNGO);
+				return;
+			}
+
+			// username gia' usato, rifiutato prima di calcolare la password; la
+			// registrazione contemporanea dello stesso username resta decisa da
+			// registraUtente
+			if (contesto.getUtenti().get(username) != null) {
+				protocollo.esito(Esito.USERNAME_USATO);
+				return;
+			}
+
+			// registrazione, hashing password fuori da qualsiasi sezione critica
+			canale.attendi(contesto.getCredenziali().crea(password),
+					(credenziali, errore) -> completaRegistrazione(username, credenziali, errore));
+		} else {
+			// login
+			DatiUtente datiUtente = contesto.getUtenti().get(username);
+
+			if (datiUtente == null) {
+				// username non presente
+				protocollo.esito(Esito.UTENTE_NON_PRESENTE);
+				return;
+			}
+
+			// controllo se utente gia' loggato prima di calcolare l'hash
+			if (datiUtente.isLoggato()) {
+				protocollo.esito(Esito.GIA_LOGGATO);
+				return;
+			}
+
+			canale.attendi(contesto.getCredenziali().verifica(datiUtente.getCredenziali(), password),
+					(corretta, errore) -> completaLogin(datiUtente, corretta, errore));
+		}
+	}
+
+	/**
+	 * Metodo che registra l'utente con le credenziali calcolate
+	 *
+	 * @param username    username del nuovo utente
+	 * @param credenziali credenziali calcolate, null in caso di errore
+	 * @param errore      errore del calcolo, null se completato
+	 *
+	 * @throws IOException errore di scrittura sul canale o sul log
+	 */
+	private void completaRegistrazione(String username, Credenziali credenziali, Throwable errore)
+			throws IOException {
+		if (errore != null) {
+			erroreCredenziali(errore);
+			return;
+		}
+
+		DatiUtente datiUtente = new DatiUtenteHeap(username, credenziali);
+
+		// piu' sessioni potrebbero registrare lo stesso username, vince la prima;
+		// la risposta attende la scrittura nel write-ahead log
+		canale.attendi(contesto.getPersistenza().registraUtente(datiUtente),
+				(registrato, erroreLog) -> registrazioneScritta(username, registrato, erroreLog));
+	}
+
+	/**
+	 * Metodo che risponde alla registrazione scritta nel write-ahead log
+	 *
+	 * @param username   username del nuovo utente
+	 * @param registrato TRUE se registrato, FALSE se l'username era gia' usato
+	 * @param errore     errore di scrittura del log, null se completata
+	 *
+	 * @throws IOException errore di scrittura sul canale o sul log
+	 */
+	private void registrazioneScritta(String username, Boolean registrato, Throwable errore) throws IOException {
+		erroreLog(errore);
+
+		if (!registrato) {
+			// username già esistente
+			protocollo.esito(Esito.USERNAME_USATO);
+			return;
+		}
+
+		// dati registrati, copiati nello slot se il registro e' fuori heap; login
+		// solo ora, se la connessione si chiude durante l'attesa del log l'utente
+		// non resta loggato
+		DatiUtente datiUtente = contesto.getUtenti().get(username);
+
+		// un'altra sessione puo' aver fatto login dopo la registrazione
+		if (!datiUtente.login()) {
+			protocollo.esito(Esito.GIA_LOGGATO);
+			return;
+		}
+
+		accedi(datiUtente, Esito.REGISTRATO);
+	}
+
+	/**
+	 * Metodo che completa il login dopo la verifica della password
+	 *
+	 * @param datiUtente dati dell'utente
+	 * @param corretta   TRUE se la password e' corretta, null in caso di errore
+	 * @param errore     errore del calcolo, null se completato
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void completaLogin(DatiUtente datiUtente, Boolean corretta, Throwable errore) throws IOException {
+		if (errore != null) {
+			erroreCredenziali(errore);
+			return;
+		}
+
+		if (!corretta) {
+			// password errata
+			protocollo.esito(Esito.PASSWORD_ERRATA);
+			return;
+		}
+
+		// piu' sessioni potrebbero fare login con lo stesso utente, vince la prima
+		if (!datiUtente.login()) {
+			protocollo.esito(Esito.GIA_LOGGATO);
+			return;
+		}
+
+		// dati corretti
+		accedi(datiUtente, Esito.LOGIN_EFFETTUATO);
+	}
+
+	/**
+	 * Metodo che associa l'utente loggato alla sessione e passa al menu
+	 *
+	 * @param datiUtente dati dell'utente loggato
+	 * @param esito      esito di successo
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void accedi(DatiUtente datiUtente, Esito esito) throws IOException {
+		utente = datiUtente;
+		stato = Stato.MENU;
+		protocollo.esito(esito);
+	}
+
+	/**
+	 * Metodo che risponde ad un errore del calcolo delle credenziali
+	 *
+	 * @param errore errore del calcolo
+	 *
+	 * @throws IOException errore di scrittura sul canale o errore inatteso
+	 */
+	private void erroreCredenziali(Throwable errore) throws IOException {
+		// pool delle credenziali saturo, il client puo' riprovare
+		if (errore instanceof RejectedExecutionException) {
+			protocollo.esito(Esito.OCCUPATO);
+			return;
+		}
+
+		throw new IOException("Errore calcolo credenziali: " + errore);
+	}
+
+	/**
+	 * Metodo che interrompe la sessione se la scrittura del write-ahead log e'
+	 * fallita
+	 *
+	 * @param errore errore di scrittura del log, null se completata
+	 *
+	 * @throws IOException se la scrittura e' fallita
+	 */
+	private static void erroreLog(Throwable errore) throws IOException {
+		if (errore instanceof IOException)
+			throw (IOException) errore;
+		if (errore != null)
+			throw new IOException("Errore write-ahead log: " + errore);
+	}
+
+	/**
+	 * Metodo che avvia la partita di un utente, se non ha gia' giocato la parola
+	 * in corso
+	 *
+	 * @throws IOException errore di scrittura sul canale o sul log
+	 */
+	private void iniziaPartita() throws IOException {
+
+		// parola da indovinare pubblicata dall'ultimo cambio, immutabile
+		parolaLocale = contesto.getParola();
+
+		// controllo se l'utente ha gia' giocato la parola in corso e, se no,
+		// registrazione atomica e nel write-ahead log della partita giocata: se
+		// l'utente esce forzatamente la partita è considerata persa (streak azzerata)
+		canale.attendi(contesto.getPersistenza().iniziaPartita(utente, parolaLocale), this::partitaScritta);
+	}
+
+	/**
+	 * Metodo che avvia la partita scritta nel write-ahead log
+	 *
+	 * @param precedenti statistiche precedenti la partita, null se l'utente ha
+	 *                   gia' giocato la parola
+	 * @param errore     errore di scrittura del log, null se completata
+	 *
+	 * @throws IOException errore di scrittura sul canale o sul log
+	 */
+	private void partitaScritta(StatisticheUtente precedenti, Throwable errore) throws IOException {
+		erroreLog(errore);
+
+		if (precedenti == null) {
+			// utente ha gia' giocato
+			protocollo.esito(Esito.GIA_GIOCATO);
+			return;
+		}
+
+		// streak da ripristinare e incrementare in caso di vittoria
+		streakVittorie = precedenti.getStreakVittorieInCorso();
+
+		protocollo.partitaIniziata(parolaLocale.getId());
+
+		valutatore.impostaParola(parolaLocale.getParola());
+
+		round = 1;
+		stato = Stato.PARTITA;
+	}
+
+	/**
+	 * Metodo che gestisce un tentativo dell'utente nella partita in corso, la
+	 * sua resa o una richiesta di statistiche inviata insieme ai tentativi
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void gestisciTentativo() throws IOException {
+
+		// controllo se utente esce
+		if (richiesta.getCodice() == Richiesta.codiceArrenditi) {
+			stato = Stato.MENU;
+			return;
+		}
+
+		// statistiche senza interrompere la partita
+		if (richiesta.getCodice() == Richiesta.codiceStatistiche) {
+			protocollo.statistiche(utente);
+			return;
+		}
+
+		String tentativo = richiesta.getPrimoCampo();
+
+		// controllo parola nel vocabolario, altre richieste durante la partita
+		// trattate come parole non valide
+		if (richiesta.getCodice() != Richiesta.codiceTentativo || tentativo == null
+				|| !binarySearch(contesto.getVocabolario(), tentativo)) {
+			// tentativo non valido
+			protocollo.esito(Esito.PAROLA_NON_VALIDA);
+			return;
+		}
+
+		// calcolo risultato del tentativo, 2 bit per lettera
+		int esito = valutatore.valuta(tentativo);
+		int lunghezza = tentativo.length();
+
+		if (valutatore.indovinata(esito)) {
+			// parola indovinata
+			streakVittorie++;
+
+			// memorizzazione risultato round per condivisione
+			risultatiPartita[round - 1] = esito;
+
+			// aggiornamento statistiche utente in un'unica operazione atomica, la
+			// risposta attende la scrittura nel write-ahead log
+			canale.attendi(
+					contesto.getPersistenza().registraVittoria(utente, parolaLocale.getId(), round, streakVittorie),
+					(nulla, erroreLog) -> vittoriaScritta(esito, lunghezza, erroreLog));
+			return;
+		}
+
+		// almeno un carattere non corretto
+
+		if (round == 12) {
+			// ultimo tentativo errato, l'utente non e' riuscito ad indovinare,
+			// aggiornamento statistiche e invio risultato
+			protocollo.tentativo(round, esito, lunghezza, true, false);
+			stato = Stato.CONDIVISIONE;
+		} else {
+			// invio risultato all'utente
+			protocollo.tentativo(round, esito, lunghezza, false, false);
+		}
+
+		// memorizzazione risultato round per condivisione
+		risultatiPartita[round - 1] = esito;
+
+		// prossimo round
+		round++;
+	}
+
+	/**
+	 * Metodo che completa la partita vinta dopo la scrittura nel write-ahead log
+	 *
+	 * @param esito     risultato dell'ultimo tentativo
+	 * @param lunghezza lunghezza della parola
+	 * @param errore    errore di scrittura del log, null se completata
+	 *
+	 * @throws IOException errore di scrittura sul canale o sul log
+	 */
+	private void vittoriaScritta(int esito, int lunghezza, Throwable errore) throws IOException {
+		erroreLog(errore);
+
+		// aggiornamento incrementale della classifica
+		contesto.getClassifica().registraVittoria(utente.getUsername(), utente.statistiche(), round);
+
+		// invio risultato all'utente
+		protocollo.tentativo(round, esito, lunghezza, true, true);
+
+		// partita terminata
+		stato = Stato.CONDIVISIONE;
+	}
+
+	/**
+	 * Metodo che invia i primi in classifica e la posizione dell'utente
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void classifica() throws IOException {
+		Classifica classifica = contesto.getClassifica();
+		int punteggio = Classifica.punteggio(utente.statistiche());
+
+		protocollo.classifica(classifica.primi(), classifica.posizione(punteggio), punteggio);
+	}
+
+	/**
+	 * Metodo che gestisce la scelta dell'utente sulla condivisione del risultato
+	 * della partita appena terminata. Statistiche e tentativi inviati dal client
+	 * insieme all'ultimo tentativo ricevono risposta senza uscire dalla scelta.
+	 *
+	 * @throws IOException errore di scrittura sul canale
+	 */
+	private void gestisciCondivisione() throws IOException {
+
+		switch (richiesta.getCodice()) {
+		case Richiesta.codiceStatistiche:
+			protocollo.statistiche(utente);
+			return;
+
+		case Richiesta.codiceTentativo:
+			protocollo.esito(Esito.PARTITA_TERMINATA);
+			return;
+		}
+
+		// in ogni caso si torna al menu
+		stato = Stato.MENU;
+
+		if (richiesta.getCodice() != Richiesta.codiceCondividi) {
+			// utente non vuole condividere
+			return;
+		}
+
+		// utente vuole condividere: record binario compatto solo accodato, inviato
+		// in multicast dal thread del pubblicatore. Dopo l'ultimo tentativo errato
+		// round e' gia' stato incrementato
+		byte[] condivisione = PubblicatoreCondivisioni.codifica(utente.getUsername(), parolaLocale.getId(),
+				parolaLocale.getParola().length(), risultatiPartita,
+				Math.min(round, StatisticheUtente.tentativiMassimi));
+		if (!contesto.getCondivisioni().pubblica(condivisione)) {
+			protocollo.esito(Esito.OCCUPATO);
+			return;
+		}
+
+		// conferma all'utente
+		protocollo.esito(Esito.CONDIVISO);
+	}
+
+	/**
+	 * Esegue una ricerca binaria della parola specificata nel vocabolario.
+	 *
+	 * @param vocabolario vocabolario di gioco
+	 * @param parola      parola cercata nel vocabolario
+	 *
+	 * @return se la parola viene trovata, restituisce TRUE. Altrimenti restituisce
+	 *         FALSE.
+	 */
+	public static boolean binarySearch(Vocabolario vocabolario, String parola) {
+		return vocabolario.contiene(parola);
+	}
+
+}
@@ -0,0 +1,203 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Utenti del file di stato divisi in piu' file (shard), scritti e letti in
+ * parallelo sul ForkJoinPool comune. Ogni compattazione scrive una nuova serie
+ * di shard (stato.json.serie.indice) e solo dopo la rinomina atomica del file
+ * di stato, che riporta serie e numero di shard, le serie precedenti vengono
+ * eliminate: un crash a meta' scrittura lascia valida la serie precedente.
+ */
+public class ShardUtenti {
+
+	// dimensione buffer di lettura e scrittura di ogni shard
+	private static final int dimensioneBuffer = 64 * 1024;
+
+	// file di stato, gli shard hanno lo stesso nome con suffisso
+	private final Path fileStato;
+
+	public ShardUtenti(Path fileStato) {
+		this.fileStato = fileStato;
+	}
+
+	/**
+	 * Metodo che scrive gli utenti divisi in shard di dimensione simile
+	 *
+	 * @param serie  serie degli shard da scrivere, diversa da quella attuale
+	 * @param shard  numero di shard
+	 * @param utenti utenti da scrivere
+	 *
+	 * @return numero di utenti scritti
+	 *
+	 * @throws IOException errore di scrittura di uno shard
+	 */
+	public int scrivi(long serie, int shard, Iterable<DatiUtente> utenti) throws IOException {
+		// distribuzione circolare, un solo passaggio sugli utenti
+		List<List<DatiUtente>> parti = new ArrayList<List<DatiUtente>>(shard);
+		for (int i = 0; i < shard; i++)
+			parti.add(new ArrayList<DatiUtente>());
+
+		int numeroUtenti = 0;
+		for (DatiUtente utente : utenti) {
+			parti.get(numeroUtenti % shard).add(utente);
+			numeroUtenti++;
+		}
+
+		List<Callable<Void>> scritture = new ArrayList<Callable<Void>>(shard);
+		for (int i = 0; i < shard; i++) {
+			Path file = percorso(serie, i);
+			List<DatiUtente> parte = parti.get(i);
+			scritture.add(() -> {
+				scriviShard(file, parte);
+				return null;
+			});
+		}
+
+		esegui(scritture);
+		return numeroUtenti;
+	}
+
+	/**
+	 * Metodo che legge in parallelo tutti gli shard di una serie aggiungendo gli
+	 * utenti al registro
+	 *
+	 * @param serie  serie degli shard indicata nel file di stato
+	 * @param shard  numero di shard
+	 * @param utenti registro in cui aggiungere gli utenti
+	 *
+	 * @throws IOException errore di lettura o JSON non valido in uno shard
+	 */
+	public void leggi(long serie, int shard, RegistroUtenti utenti) throws IOException {
+		List<Callable<Void>> letture = new ArrayList<Callable<Void>>(shard);
+		for (int i = 0; i < shard; i++) {
+			Path file = percorso(serie, i);
+			letture.add(() -> {
+				leggiShard(file, utenti);
+				return null;
+			});
+		}
+
+		esegui(letture);
+	}
+
+	/**
+	 * Metodo che elimina gli shard delle serie diverse da quella indicata
+	 *
+	 * @param serie serie da conservare
+	 *
+	 * @throws IOException errore di lettura della cartella o di eliminazione
+	 */
+	public void eliminaAltreSerie(long serie) throws IOException {
+		Path cartella = fileStato.toAbsolutePath().getParent();
+		String nome = fileStato.getFileName() + ".";
+
+		try (DirectoryStream<Path> file = Files.newDirectoryStream(cartella, nome + "*.*")) {
+			for (Path shard : file) {
+				String suffisso = shard.getFileName().toString().substring(nome.length());
+				int punto = suffisso.indexOf('.');
+				try {
+					if (punto > 0 && Long.parseLong(suffisso.substring(0, punto)) != serie)
+						Files.deleteIfExists(shard);
+				} catch (NumberFormatException e) {
+					// file non di shard, es. file di stato temporaneo
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param serie  serie dello shard
+	 * @param indice indice dello shard nella serie
+	 *
+	 * @return percorso dello shard
+	 */
+	private Path percorso(long serie, int indice) {
+		return fileStato.resolveSibling(fileStato.getFileName() + "." + serie + "." + indice);
+	}
+
+	/**
+	 * Metodo che scrive un array JSON di utenti e forza la scrittura su disco
+	 *
+	 * @param file   shard da scrivere
+	 * @param utenti utenti dello shard
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	private static void scriviShard(Path file, List<DatiUtente> utenti) throws IOException {
+		try (FileOutputStream output = new FileOutputStream(file.toFile());
+				JsonWriter jsonWriter = new JsonWriter(new BufferedWriter(
+						new OutputStreamWriter(output, StandardCharsets.UTF_8), dimensioneBuffer))) {
+			jsonWriter.beginArray();
+			for (DatiUtente utente : utenti) {
+				FileStatoJson.scriviUtente(jsonWriter, utente);
+			}
+			jsonWriter.endArray();
+
+			jsonWriter.flush();
+			output.getFD().sync();
+		}
+	}
+
+	/**
+	 * Metodo che legge un array JSON di utenti
+	 *
+	 * @param file   shard da leggere
+	 * @param utenti registro in cui aggiungere gli utenti
+	 *
+	 * @throws IOException errore di lettura o JSON non valido
+	 */
+	private static void leggiShard(Path file, RegistroUtenti utenti) throws IOException {
+		try (JsonReader jsonReader = new JsonReader(new BufferedReader(
+				new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8), dimensioneBuffer))) {
+			jsonReader.beginArray();
+			while (jsonReader.hasNext()) {
+				utenti.ripristina(FileStatoJson.leggiUtente(jsonReader));
+			}
+			jsonReader.endArray();
+		}
+	}
+
+	/**
+	 * Metodo che esegue i compiti sul ForkJoinPool comune e attende la loro fine
+	 *
+	 * @param compiti letture o scritture di shard o intervalli di utenti
+	 *
+	 * @throws IOException il primo errore sollevato da un compito
+	 */
+	static void esegui(List<Callable<Void>> compiti) throws IOException {
+		List<Future<Void>> risultati = ForkJoinPool.commonPool().invokeAll(compiti);
+
+		for (Future<Void> risultato : risultati) {
+			try {
+				risultato.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Shard stato interrotto");
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException) e.getCause();
+				throw new IOException("Errore shard stato: " + e.getCause());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package server;
+
+/**
+ * Statistiche di un utente gia' codificate nei frame di risposta dei due
+ * protocolli, con l'LSN delle statistiche da cui sono calcolate. Ogni evento
+ * di gioco assegna un nuovo LSN, quindi i frame restano validi finche' le
+ * statistiche non cambiano e una richiesta di statistiche costa una sola
+ * scrittura del frame.
+ */
+public final class StatisticheCodificate {
+
+	// LSN delle statistiche codificate
+	private final long lsn;
+
+	// frame completi (lunghezza e contenuto) dei due protocolli, da non
+	// modificare
+	private final byte[] frameTesto;
+	private final byte[] frameBinario;
+
+	public StatisticheCodificate(long lsn, byte[] frameTesto, byte[] frameBinario) {
+		this.lsn = lsn;
+		this.frameTesto = frameTesto;
+		this.frameBinario = frameBinario;
+	}
+
+	// getters
+
+	public long getLsn() {
+		return lsn;
+	}
+
+	public byte[] getFrameTesto() {
+		return frameTesto;
+	}
+
+	public byte[] getFrameBinario() {
+		return frameBinario;
+	}
+
+}
@@ -0,0 +1,337 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Statistiche aggregate delle ultime parole estratte: partite iniziate,
+ * vittorie e distribuzione dei tentativi impiegati, per id della parola. I
+ * contatori sono LongAdder incrementati dalle sessioni dopo l'accodamento dei
+ * record di inizio partita e vittoria, e letti senza lock dalle richieste. I
+ * contatori di una parola vengono creati solo all'estrazione: partite e
+ * vittorie di una parola non piu' conservata sono ignorate.
+ *
+ * Le statistiche salvate accanto al file di stato sono tenute dalla
+ * persistenza in un'istanza separata, aggiornata alla compattazione con i
+ * record dei segmenti chiusi del write-ahead log; il file contiene il numero
+ * del primo segmento non ancora contato.
+ */
+public class StatisticheParole {
+
+	/**
+	 * Istantanea delle statistiche di una parola
+	 */
+	public static final class Riepilogo {
+
+		private final int id;
+		private final long partiteGiocate;
+		private final long partiteVinte;
+		private final long[] distribuzioneTentativi;
+
+		private Riepilogo(int id, long partiteGiocate, long partiteVinte, long[] distribuzioneTentativi) {
+			this.id = id;
+			this.partiteGiocate = partiteGiocate;
+			this.partiteVinte = partiteVinte;
+			this.distribuzioneTentativi = distribuzioneTentativi;
+		}
+
+		// getters
+
+		public int getId() {
+			return id;
+		}
+
+		public long getPartiteGiocate() {
+			return partiteGiocate;
+		}
+
+		public long getPartiteVinte() {
+			return partiteVinte;
+		}
+
+		/**
+		 * @param indice numero di tentativi meno uno
+		 *
+		 * @return vittorie con il numero di tentativi dato
+		 */
+		public long getDistribuzioneTentativi(int indice) {
+			return distribuzioneTentativi[indice];
+		}
+
+	}
+
+	// contatori di una parola
+	private static final class Contatori {
+
+		private final LongAdder partiteGiocate = new LongAdder();
+		private final LongAdder partiteVinte = new LongAdder();
+		private final LongAdder[] distribuzioneTentativi = new LongAdder[StatisticheUtente.tentativiMassimi];
+
+		private Contatori() {
+			for (int i = 0; i < distribuzioneTentativi.length; i++)
+				distribuzioneTentativi[i] = new LongAdder();
+		}
+
+	}
+
+	// file delle statistiche
+	private final Path file;
+
+	// numero di parole conservate, le piu' vecchie vengono eliminate
+	private final int paroleConservate;
+
+	// contatori per id parola e id in ordine di estrazione, dalla meno recente
+	private final ConcurrentHashMap<Integer, Contatori> parole = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedDeque<Integer> ordine = new ConcurrentLinkedDeque<>();
+
+	public StatisticheParole(Path file, int paroleConservate) {
+		this.file = file;
+		this.paroleConservate = Math.max(1, paroleConservate);
+	}
+
+	/**
+	 * Metodo che aggiunge una parola appena estratta
+	 *
+	 * @param id id della parola
+	 */
+	public void nuovaParola(int id) {
+		Contatori contatori = new Contatori();
+		if (parole.putIfAbsent(id, contatori) == null)
+			aggiungi(id, contatori);
+	}
+
+	/**
+	 * Metodo che conta l'inizio di una partita, ignorato se la parola non e' piu'
+	 * conservata
+	 *
+	 * @param id id della parola
+	 */
+	public void partitaIniziata(int id) {
+		Contatori contatori = parole.get(id);
+		if (contatori != null)
+			contatori.partiteGiocate.increment();
+	}
+
+	/**
+	 * Metodo che conta una vittoria, ignorata se la parola non e' piu' conservata
+	 *
+	 * @param id        id della parola
+	 * @param tentativi tentativi impiegati
+	 */
+	public void vittoria(int id, int tentativi) {
+		Contatori contatori = parole.get(id);
+		if (contatori == null)
+			return;
+
+		contatori.partiteVinte.increment();
+		contatori.distribuzioneTentativi[tentativi - 1].increment();
+	}
+
+	/**
+	 * @return statistiche vuote con lo stesso file e lo stesso numero di parole
+	 *         conservate
+	 */
+	public StatisticheParole vuote() {
+		return new StatisticheParole(file, paroleConservate);
+	}
+
+	/**
+	 * @return statistiche delle parole conservate, dalla piu' recente
+	 */
+	public List<Riepilogo> riepiloghi() {
+		List<Riepilogo> riepiloghi = new ArrayList<>(paroleConservate);
+
+		for (Iterator<Integer> ids = ordine.descendingIterator(); ids.hasNext();) {
+			int id = ids.next();
+			Contatori contatori = parole.get(id);
+			if (contatori == null)
+				continue;
+
+			long[] distribuzione = new long[StatisticheUtente.tentativiMassimi];
+			for (int i = 0; i < distribuzione.length; i++)
+				distribuzione[i] = contatori.distribuzioneTentativi[i].sum();
+
+			riepiloghi.add(new Riepilogo(id, contatori.partiteGiocate.sum(),
+					contatori.partiteVinte.sum(), distribuzione));
+		}
+
+		return riepiloghi;
+	}
+
+	/**
+	 * Metodo che legge il file delle statistiche, se presente
+	 *
+	 * @return primo segmento del write-ahead log non contenuto nelle statistiche,
+	 *         0 se il file non esiste
+	 *
+	 * @throws IOException se si verifica un errore durante la lettura o il JSON
+	 *                     non e' valido
+	 */
+	public long leggi() throws IOException {
+		if (!Files.exists(file))
+			return 0;
+
+		long segmento = 0;
+
+		try (JsonReader jsonReader = new JsonReader(new BufferedReader(
+				new InputStreamReader(new FileInputStream(file.toFile()), StandardCharsets.UTF_8)))) {
+			jsonReader.beginObject();
+
+			while (jsonReader.hasNext()) {
+				switch (jsonReader.nextName()) {
+				case "segmento":
+					segmento = jsonReader.nextLong();
+					break;
+				case "parole":
+					// parole scritte dalla piu' recente, aggiunte dalla meno recente
+					List<Integer> ids = new ArrayList<>();
+					List<Contatori> letti = new ArrayList<>();
+
+					jsonReader.beginArray();
+					while (jsonReader.hasNext())
+						ids.add(leggiParola(jsonReader, letti));
+					jsonReader.endArray();
+
+					for (int i = ids.size() - 1; i >= 0; i--)
+						aggiungi(ids.get(i), letti.get(i));
+					break;
+				default:
+					throw new IOException("Errore JSON statistiche parole");
+				}
+			}
+
+			jsonReader.endObject();
+		}
+
+		return segmento;
+	}
+
+	/**
+	 * Metodo che scrive le statistiche su un file temporaneo e lo sostituisce
+	 * atomicamente al file precedente
+	 *
+	 * @param segmento primo segmento del write-ahead log non contenuto nelle
+	 *                 statistiche
+	 *
+	 * @throws IOException errore di scrittura
+	 */
+	public void scrivi(long segmento) throws IOException {
+		Path temporaneo = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (FileOutputStream output = new FileOutputStream(temporaneo.toFile());
+				JsonWriter jsonWriter = new JsonWriter(
+						new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)))) {
+			jsonWriter.beginObject();
+			jsonWriter.name("segmento").value(segmento);
+
+			jsonWriter.name("parole");
+			jsonWriter.beginArray();
+			for (Riepilogo riepilogo : riepiloghi()) {
+				jsonWriter.beginObject();
+				jsonWriter.name("id").value(riepilogo.id);
+				jsonWriter.name("partiteGiocate").value(riepilogo.partiteGiocate);
+				jsonWriter.name("partiteVinte").value(riepilogo.partiteVinte);
+
+				jsonWriter.name("distribuzioneTentativi");
+				jsonWriter.beginArray();
+				for (long vittorie : riepilogo.distribuzioneTentativi)
+					jsonWriter.value(vittorie);
+				jsonWriter.endArray();
+
+				jsonWriter.endObject();
+			}
+			jsonWriter.endArray();
+
+			jsonWriter.endObject();
+			jsonWriter.flush();
+			output.getFD().sync();
+		}
+
+		Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Metodo che aggiunge i contatori di una parola come la piu' recente ed
+	 * elimina le parole meno recenti oltre il limite
+	 *
+	 * @param id        id della parola
+	 * @param contatori contatori della parola
+	 */
+	private void aggiungi(int id, Contatori contatori) {
+		parole.put(id, contatori);
+		ordine.addLast(id);
+
+		while (ordine.size() > paroleConservate) {
+			Integer vecchia = ordine.pollFirst();
+			if (vecchia != null)
+				parole.remove(vecchia);
+		}
+	}
+
+	/**
+	 * Metodo che legge un oggetto parola
+	 *
+	 * @param jsonReader reader posizionato all'inizio dell'oggetto
+	 * @param letti      lista a cui aggiungere i contatori letti
+	 *
+	 * @return id della parola
+	 *
+	 * @throws IOException se si verifica un errore durante la lettura o il JSON
+	 *                     non e' valido
+	 */
+	private static int leggiParola(JsonReader jsonReader, List<Contatori> letti) throws IOException {
+		Contatori contatori = new Contatori();
+		int id = -1;
+
+		jsonReader.beginObject();
+
+		while (jsonReader.hasNext()) {
+			switch (jsonReader.nextName()) {
+			case "id":
+				id = jsonReader.nextInt();
+				break;
+			case "partiteGiocate":
+				contatori.partiteGiocate.add(jsonReader.nextLong());
+				break;
+			case "partiteVinte":
+				contatori.partiteVinte.add(jsonReader.nextLong());
+				break;
+			case "distribuzioneTentativi":
+				jsonReader.beginArray();
+				for (int i = 0; i < StatisticheUtente.tentativiMassimi; i++)
+					contatori.distribuzioneTentativi[i].add(jsonReader.nextLong());
+				jsonReader.endArray();
+				break;
+			default:
+				throw new IOException("Errore JSON statistiche parole");
+			}
+		}
+
+		jsonReader.endObject();
+
+		if (id < 0)
+			throw new IOException("Errore JSON statistiche parole: id mancante");
+
+		letti.add(contatori);
+		return id;
+	}
+
+}
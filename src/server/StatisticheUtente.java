@@ -0,0 +1,111 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Statistiche di gioco di un utente, immutabili. Ogni modifica crea una nuova
+ * istanza che DatiUtente pubblica con un unico scambio atomico, quindi chi
+ * legge vede sempre uno stato coerente senza bloccare la partita in corso.
+ */
+public final class StatisticheUtente {
+
+	// numero massimo di tentativi per partita
+	public static final int tentativiMassimi = 12;
+
+	// statistiche nuovo utente
+	public static final StatisticheUtente iniziali = new StatisticheUtente(0, 0, 0, 0, new int[tentativiMassimi], 0,
+			0);
+
+	private final int partiteGiocate;
+	private final int partiteVinte;
+	private final int miglioreStreakVittorie;
+	private final int streakVittorieInCorso;
+	private final int[] distribuzioneTentativiImpiegati;
+
+	// dati ultima partita
+	private final long scadenzaParolaGiocata;
+
+	// LSN dell'ultimo record del write-ahead log applicato, i record con LSN
+	// minore o uguale sono gia' contenuti in queste statistiche
+	private final long lsn;
+
+	public StatisticheUtente(int partiteGiocate, int partiteVinte, int miglioreStreakVittorie,
+			int streakVittorieInCorso, int[] distribuzioneTentativiImpiegati, long scadenzaParolaGiocata, long lsn) {
+		this.partiteGiocate = partiteGiocate;
+		this.partiteVinte = partiteVinte;
+		this.miglioreStreakVittorie = miglioreStreakVittorie;
+		this.streakVittorieInCorso = streakVittorieInCorso;
+		this.distribuzioneTentativiImpiegati = Arrays.copyOf(distribuzioneTentativiImpiegati, tentativiMassimi);
+		this.scadenzaParolaGiocata = scadenzaParolaGiocata;
+		this.lsn = lsn;
+	}
+
+	// getters
+
+	public int getPartiteGiocate() {
+		return partiteGiocate;
+	}
+
+	public int getPartiteVinte() {
+		return partiteVinte;
+	}
+
+	public int getMiglioreStreakVittorie() {
+		return miglioreStreakVittorie;
+	}
+
+	public int getStreakVittorieInCorso() {
+		return streakVittorieInCorso;
+	}
+
+	/**
+	 * @param indice numero di tentativi meno 1
+	 *
+	 * @return numero di vittorie ottenute con indice + 1 tentativi
+	 */
+	public int getDistribuzioneTentativi(int indice) {
+		return distribuzioneTentativiImpiegati[indice];
+	}
+
+	public long getScadenzaParolaGiocata() {
+		return scadenzaParolaGiocata;
+	}
+
+	public long getLsn() {
+		return lsn;
+	}
+
+	// nuove istanze per ogni evento di gioco
+
+	/**
+	 * Statistiche all'inizio di una partita: partita contata come giocata e persa
+	 * (streak azzerata) finche' non viene vinta
+	 *
+	 * @param scadenza scadenza della parola giocata
+	 * @param lsn      LSN del record che registra l'inizio della partita
+	 *
+	 * @return le nuove statistiche
+	 */
+	public StatisticheUtente conPartitaIniziata(long scadenza, long lsn) {
+		return new StatisticheUtente(partiteGiocate + 1, partiteVinte, miglioreStreakVittorie, 0,
+				distribuzioneTentativiImpiegati, scadenza, lsn);
+	}
+
+	/**
+	 * Statistiche dopo una vittoria
+	 *
+	 * @param tentativi      numero di tentativi impiegati, da 1 a 12
+	 * @param streakVittorie streak di vittorie comprensiva di questa partita
+	 * @param lsn            LSN del record che registra la vittoria
+	 *
+	 * @return le nuove statistiche
+	 */
+	public StatisticheUtente conVittoria(int tentativi, int streakVittorie, long lsn) {
+		StatisticheUtente nuove = new StatisticheUtente(partiteGiocate, partiteVinte + 1,
+				Math.max(miglioreStreakVittorie, streakVittorie), streakVittorie, distribuzioneTentativiImpiegati,
+				scadenzaParolaGiocata, lsn);
+		nuove.distribuzioneTentativiImpiegati[tentativi - 1]++;
+		return nuove;
+	}
+
+}
@@ -0,0 +1,127 @@
+package server;
+
+import java.util.Arrays;
+
+/**
+ * Calcolo del risultato di un tentativo rispetto alla parola da indovinare. Il
+ * risultato e' un int con 2 bit per lettera (posizione i nei bit 2i e 2i+1):
+ * lettera assente 'x', presente in altra posizione '?', in posizione esatta
+ * '+'. Una istanza e' riusabile tra i round e non alloca durante il calcolo;
+ * non e' thread-safe, ogni sessione usa la propria.
+ */
+public class Valutatore {
+
+	// codici a 2 bit del risultato di una lettera
+	public static final int assente = 0;
+	public static final int presente = 1;
+	public static final int esatta = 2;
+
+	// lunghezza massima parola rappresentabile in un int
+	public static final int lunghezzaMassima = 16;
+
+	// simboli testuali corrispondenti ai codici
+	private static final char[] simboli = { 'x', '?', '+' };
+
+	// lettere della parola da indovinare (0 = 'a') e lunghezza
+	private final int[] lettere = new int[lunghezzaMassima];
+	private int lunghezza;
+
+	// occorrenze delle lettere non ancora abbinate, azzerate a fine calcolo
+	private final int[] conteggi = new int[26];
+
+	// risultato con tutte le lettere in posizione esatta
+	private int tutteEsatte;
+
+	/**
+	 * Metodo che imposta la parola da indovinare
+	 *
+	 * @param parola parola di lettere minuscole a-z
+	 */
+	public void impostaParola(String parola) {
+		if (parola.length() > lunghezzaMassima)
+			throw new IllegalArgumentException("Parola troppo lunga: " + parola);
+
+		lunghezza = parola.length();
+		tutteEsatte = 0;
+		for (int i = 0; i < lunghezza; i++) {
+			lettere[i] = parola.charAt(i) - 'a';
+			tutteEsatte |= esatta << (2 * i);
+		}
+	}
+
+	/**
+	 * Metodo che calcola il risultato di un tentativo. Prima si marcano le
+	 * lettere in posizione esatta, poi da sinistra a destra ogni lettera restante
+	 * e' presente se la parola ne contiene ancora una occorrenza non abbinata.
+	 *
+	 * @param tentativo parola tentata, della stessa lunghezza della parola da
+	 *                  indovinare
+	 *
+	 * @return risultato con 2 bit per lettera
+	 */
+	public int valuta(CharSequence tentativo) {
+		int risultato = 0;
+
+		// lettere in posizione esatta, le altre lettere della parola restano
+		// disponibili
+		for (int i = 0; i < lunghezza; i++) {
+			if (tentativo.charAt(i) - 'a' == lettere[i])
+				risultato |= esatta << (2 * i);
+			else
+				conteggi[lettere[i]]++;
+		}
+
+		// lettere presenti in altra posizione
+		for (int i = 0; i < lunghezza; i++) {
+			if (codice(risultato, i) == esatta)
+				continue;
+
+			int lettera = tentativo.charAt(i) - 'a';
+			if (lettera >= 0 && lettera < 26 && conteggi[lettera] > 0) {
+				risultato |= presente << (2 * i);
+				conteggi[lettera]--;
+			}
+		}
+
+		Arrays.fill(conteggi, 0);
+
+		return risultato;
+	}
+
+	/**
+	 * @param risultato risultato calcolato da valuta
+	 *
+	 * @return TRUE se tutte le lettere sono in posizione esatta
+	 */
+	public boolean indovinata(int risultato) {
+		return risultato == tutteEsatte;
+	}
+
+	/**
+	 * Metodo che restituisce la rappresentazione testuale di un risultato, ad
+	 * esempio "+x?xxxx+xx". Usato solo dal protocollo testuale all'invio.
+	 *
+	 * @param risultato risultato calcolato da valuta
+	 * @param lunghezza lunghezza della parola
+	 *
+	 * @return stringa con un simbolo per lettera
+	 */
+	public static String testo(int risultato, int lunghezza) {
+		char[] testo = new char[lunghezza];
+		for (int i = 0; i < lunghezza; i++)
+			testo[i] = simboli[codice(risultato, i)];
+
+		return new String(testo);
+	}
+
+	/**
+	 * @param risultato risultato con 2 bit per lettera
+	 * @param posizione posizione della lettera
+	 *
+	 * @return codice della lettera nella posizione data
+	 */
+	public static int codice(int risultato, int posizione) {
+		return (risultato >>> (2 * posizione)) & 0b11;
+	}
+
+}
@@ -0,0 +1,168 @@
+package server;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Vocabolario di gioco mappato in memoria con FileChannel.map. Il file contiene
+ * una parola per riga, tutte della stessa lunghezza e in ordine alfabetico,
+ * quindi ogni parola e' un record a dimensione fissa accessibile per indice.
+ * Le parole restano nella page cache del sistema operativo e non occupano
+ * heap; opzionalmente si costruisce anche l'IndiceParole in memoria per le
+ * ricerche piu' frequenti.
+ */
+public class Vocabolario {
+
+	// file mappato in sola lettura
+	private final MappedByteBuffer mappa;
+
+	// lunghezza parole e dimensione record (parola + '\n')
+	private final int lunghezzaParola;
+	private final int byteRecord;
+
+	// numero di record nel file
+	private final int numeroParole;
+
+	// indice in memoria, null se non richiesto o non applicabile
+	private IndiceParole indice;
+
+	private Vocabolario(MappedByteBuffer mappa, int lunghezzaParola, int numeroParole) {
+		this.mappa = mappa;
+		this.lunghezzaParola = lunghezzaParola;
+		this.byteRecord = lunghezzaParola + 1;
+		this.numeroParole = numeroParole;
+	}
+
+	/**
+	 * Metodo che mappa in memoria il file vocabolario
+	 *
+	 * @param wordsFile       percorso del file vocabolario
+	 * @param indiceInMemoria TRUE per costruire anche l'indice compatto in heap
+	 *
+	 * @return il vocabolario
+	 *
+	 * @throws IOException se il file non viene trovato, non e' leggibile o non ha
+	 *                     record a dimensione fissa
+	 */
+	public static Vocabolario apri(String wordsFile, boolean indiceInMemoria) throws IOException {
+		MappedByteBuffer mappa;
+
+		// la mappatura resta valida anche dopo la chiusura del canale
+		try (FileChannel canale = FileChannel.open(Paths.get(wordsFile), StandardOpenOption.READ)) {
+			if (canale.size() > Integer.MAX_VALUE)
+				throw new IOException("Vocabolario troppo grande: " + canale.size() + " byte");
+
+			mappa = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+		}
+
+		// lunghezza parole ricavata dalla prima riga
+		int lunghezzaParola = 0;
+		while (lunghezzaParola < mappa.limit() && mappa.get(lunghezzaParola) != '\n')
+			lunghezzaParola++;
+
+		if (lunghezzaParola == 0)
+			throw new IOException("Vocabolario vuoto");
+
+		// l'ultima riga puo' non avere il '\n' finale
+		int byteRecord = lunghezzaParola + 1;
+		int dimensione = mappa.limit();
+		if (dimensione % byteRecord != 0 && (dimensione + 1) % byteRecord != 0)
+			throw new IOException("Vocabolario con parole di lunghezza diversa");
+
+		Vocabolario vocabolario = new Vocabolario(mappa, lunghezzaParola, (dimensione + 1) / byteRecord);
+
+		if (indiceInMemoria)
+			vocabolario.indice = IndiceParole.costruisci(vocabolario);
+
+		return vocabolario;
+	}
+
+	/**
+	 * @return numero di parole nel vocabolario
+	 */
+	public int numeroParole() {
+		return numeroParole;
+	}
+
+	/**
+	 * @return lunghezza delle parole del vocabolario
+	 */
+	public int lunghezzaParola() {
+		return lunghezzaParola;
+	}
+
+	/**
+	 * Metodo che restituisce la parola in una data posizione
+	 *
+	 * @param indice posizione della parola, da 0 a numeroParole() - 1
+	 *
+	 * @return la parola
+	 */
+	public String parola(int indice) {
+		byte[] parola = new byte[lunghezzaParola];
+		mappa.get(indice * byteRecord, parola);
+		return new String(parola, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Metodo che verifica se una parola appartiene al vocabolario. Se presente usa
+	 * l'indice in memoria, altrimenti esegue una ricerca binaria confrontando i
+	 * caratteri direttamente con i byte mappati, senza allocare stringhe.
+	 *
+	 * @param parola parola cercata
+	 *
+	 * @return TRUE se la parola e' presente, FALSE altrimenti
+	 */
+	public boolean contiene(CharSequence parola) {
+		if (indice != null)
+			return indice.contiene(parola);
+
+		if (parola.length() != lunghezzaParola)
+			return false;
+
+		int lower = 0;
+		int upper = numeroParole - 1;
+		int mid;
+
+		while (lower <= upper) {
+			mid = (lower + upper) >>> 1;
+
+			int confronto = confronta(parola, mid);
+
+			if (confronto == 0)
+				return true;
+
+			if (confronto < 0)
+				upper = mid - 1;
+			else
+				lower = mid + 1;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Metodo che confronta una parola con il record in una data posizione, con lo
+	 * stesso ordinamento di String.compareTo
+	 *
+	 * @param parola parola di lunghezza lunghezzaParola()
+	 * @param record posizione del record
+	 *
+	 * @return negativo, zero o positivo se la parola precede, coincide o segue il
+	 *         record
+	 */
+	private int confronta(CharSequence parola, int record) {
+		int base = record * byteRecord;
+		for (int i = 0; i < lunghezzaParola; i++) {
+			int differenza = parola.charAt(i) - (mappa.get(base + i) & 0xFF);
+			if (differenza != 0)
+				return differenza;
+		}
+		return 0;
+	}
+
+}
@@ -1,28 +1,22 @@
 package server;
 
-import java.io.BufferedReader;
-import java.io.File;
+import java.io.DataOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.nio.file.Paths;
 import java.util.Properties;
-import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
-import com.google.gson.stream.JsonReader;
 
 public class WordleServerMain {
 
@@ -32,6 +26,21 @@ public class WordleServerMain {
 	// file JSON salvataggio stato
 	private static final String jsonFile = "./server/resources/stato.json";
 
+	// file binario salvataggio stato
+	private static final String binFile = "./server/resources/stato.bin";
+
+	// archivio utenti fuori heap mappato su file
+	private static final String utentiFile = "./server/resources/utenti.dat";
+
+	// prefisso segmenti write-ahead log degli eventi successivi al file JSON
+	private static final String logFile = "./server/resources/stato.wal";
+
+	// path file seme dell'ordine di estrazione delle parole
+	private static final String sequenzaFile = "./server/resources/sequenzaParole.dat";
+
+	// path file statistiche delle parole
+	private static final String paroleFile = "./server/resources/statisticheParole.json";
+
 	// file vocabolario gioco
 	private static final String wordsFile = "./server/resources/words.txt";
 
@@ -49,18 +58,87 @@ public class WordleServerMain {
 	// (secondi) (da file configurazione)
 	private static int attesaMassima;
 
-	// pool di thread per gestione client
-	private static final ExecutorService pool = Executors.newCachedThreadPool();
+	// attesa dell'fsync del write-ahead log prima di rispondere al client e
+	// secondi tra due compattazioni dello stato (da file configurazione)
+	private static boolean commitSincrono;
+	private static int intervalloCompattazione;
+
+	// numero di file in cui dividere gli utenti del file di stato JSON, letti e
+	// scritti in parallelo; 0 per un unico file (da file configurazione)
+	private static int shardStato;
+
+	// formato del file di stato: "json" o "binario" (da file configurazione)
+	private static String formatoStato;
+
+	// archivio degli utenti: "heap" (oggetti in heap), "offheap" (slot in
+	// memoria diretta) o "mappato" (slot in un file mappato, riaperto al riavvio
+	// dopo una chiusura corretta) (da file configurazione)
+	private static String archivioUtenti;
+
+	// connessioni in attesa di accettazione nel backlog del sistema operativo,
+	// sessioni contemporanee, gettoni al secondo e capacita' del token bucket
+	// delle richieste di login e registrazione (da file configurazione)
+	private static int backlogConnessioni;
+	private static int sessioniMassime;
+	private static int accessiAlSecondo;
+	private static int burstAccessi;
+
+	// funzione di derivazione delle nuove password ("pbkdf2" o "sha256"), costo
+	// (iterazioni), thread e coda del pool di calcolo (da file configurazione)
+	private static String funzionePassword;
+	private static int costoPassword;
+	private static int threadCredenziali;
+	private static int codaCredenziali;
+
+	// numero di utenti restituiti dalla classifica (da file configurazione)
+	private static int dimensioneClassifica;
+
+	// numero di parole di cui si conservano le statistiche (da file
+	// configurazione)
+	private static int paroleConservate;
+
+	// condivisioni in attesa di invio multicast oltre le quali vengono scartate
+	// (da file configurazione)
+	private static int codaCondivisioni;
+
+	// modalita' gestione connessioni: "thread" (un thread per client) o "nio"
+	// (reactor non bloccante) (da file configurazione)
+	private static String modalitaServer;
+
+	// tipo di executor delle sessioni in modalita' thread: "cached", "fixed" o
+	// "virtual" (un thread virtuale per client) (da file configurazione)
+	private static String executor;
 
-	// parola da indovinare inizializzata con una parola fittizia poi modificata con
-	// i metodi set dell'oggetto
-	private static final Parola parola = new Parola("", 0, 0);
+	// numero di thread del pool in modalita' fixed (da file configurazione)
+	private static int dimensionePool;
 
-	// struttura dati parole usate in passato
-	private static final Set<String> parolePassate = new HashSet<String>();
+	// pool di thread per gestione client, un solo thread reactor in modalita' nio
+	private static ExecutorService pool;
+
+	// riferimento alla parola da indovinare, fittizia fino al ripristino o alla
+	// prima estrazione
+	private static final ParolaCorrente parola = new ParolaCorrente();
+
+	// costruzione dell'indice compatto del vocabolario in heap (da file
+	// configurazione)
+	private static boolean indiceVocabolario;
+
+	// vocabolario mappato in memoria per estrazione parole e controllo tentativi
+	private static Vocabolario vocabolario;
+
+	// ordine di estrazione delle parole senza ripetizioni e prossime parole
+	// preparate in anticipo
+	private static SequenzaParole sequenzaParole;
+	private static CalendarioParole calendarioParole;
 
 	// struttura dati gestione utenti
-	private static final Map<String, DatiUtente> utenti = new HashMap<String, DatiUtente>();
+	private static RegistroUtenti utenti;
+
+	// statistiche delle ultime parole estratte
+	private static StatisticheParole statisticheParole;
+
+	// file di stato e write-ahead log
+	private static Persistenza persistenza;
 
 	public static void main(String[] args) {
 		try {
@@ -68,64 +146,61 @@ public class WordleServerMain {
 			// lettura file di configurazione Server
 			readConfig();
 
-			// ripristino stato salvato nel JSON
-			ripristinoStato(parola, utenti);
-
-			// creazione ServerSocket
-			try (ServerSocket serverSocket = new ServerSocket(porta)) {
-
-				// calcolo tempo rimasto scadenza parola
-				long tempoRimastoParola = parola.getScadenza() - System.currentTimeMillis();
-
-				// se la parola e' scaduta tempo rimasto e' 0
-				if (tempoRimastoParola < 0)
-					tempoRimastoParola = 0;
-
-				// creazione ScheduledExecutorService per cambio parola ogni scadenza
-				ScheduledExecutorService schedulerParola = Executors.newScheduledThreadPool(1);
-
-				// avvio thread cambio parola
-				schedulerParola.scheduleAtFixedRate(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							synchronized (parola) {
-								nuovaParola(parola);
-							}
-						} catch (IOException e) {
-							System.err.println("Errore I/O: " + e.getMessage());
-							System.exit(1);
-						}
-					}
-				}, tempoRimastoParola, tempoRefreshParola * 60 * 1000, TimeUnit.MILLISECONDS);
+			// mappatura vocabolario in memoria, una sola volta per tutte le sessioni
+			vocabolario = Vocabolario.apri(wordsFile, indiceVocabolario);
+			sequenzaParole = new SequenzaParole(Paths.get(sequenzaFile), vocabolario.numeroParole());
+			calendarioParole = new CalendarioParole(sequenzaParole, vocabolario, tempoRefreshParola * 60 * 1000L);
+
+			// registro utenti nell'archivio configurato
+			utenti = creaRegistro();
+
+			// ripristino stato salvato nel JSON e nel write-ahead log, avvio
+			// compattazioni periodiche
+			FileStato statoJson = new FileStatoJson(Paths.get(jsonFile), shardStato);
+			FileStato statoBinario = new FileStatoBinario(Paths.get(binFile));
+			statisticheParole = new StatisticheParole(Paths.get(paroleFile), paroleConservate);
+			if ("binario".equalsIgnoreCase(formatoStato)) {
+				persistenza = new Persistenza(statoBinario, statoJson, logFile, parola, utenti, statisticheParole,
+						commitSincrono);
+			} else {
+				persistenza = new Persistenza(statoJson, statoBinario, logFile, parola, utenti, statisticheParole,
+						commitSincrono);
+			}
+			ripristinoStato();
+			persistenza.avvia(intervalloCompattazione);
+
+			// inizializzazione InetAddress multicast
+			InetAddress indirizzoMS = null;
+			try {
+				indirizzoMS = InetAddress.getByName(indirizzoMulticast);
+			} catch (UnknownHostException e) {
+				System.err.println("Errore indirizzo multicast");
+				System.exit(1);
+			}
 
-				// Configurazione handler di terminazione, si occupa di salvare lo stato e
-				// di chiudure le risorse
-				Runtime.getRuntime().addShutdownHook(new TerminationHandler(attesaMassima, pool, serverSocket, parola,
-						utenti, jsonFile, schedulerParola));
+			// canale e thread unici di invio dei risultati condivisi
+			PubblicatoreCondivisioni condivisioni = new PubblicatoreCondivisioni(indirizzoMS, portaMulticast,
+					codaCondivisioni);
 
-				System.out.println("\nCTRL+C per chiudere il server\n");
+			// pool di calcolo delle credenziali, separato da quello delle sessioni
+			GestoreCredenziali credenziali = new GestoreCredenziali(Credenziali.funzione(funzionePassword),
+					costoPassword, threadCredenziali, codaCredenziali);
 
-				// inizializzazione InetAddress multicast
-				InetAddress indirizzoMS = null;
-				try {
-					indirizzoMS = InetAddress.getByName(indirizzoMulticast);
-				} catch (UnknownHostException e) {
-					System.err.println("Errore indirizzo multicast");
-					System.exit(1);
-				}
+			// controllo di ammissione delle connessioni e delle richieste di accesso
+			ControlloAccessi accessi = new ControlloAccessi(sessioniMassime, accessiAlSecondo, burstAccessi);
 
-				// Ciclo accettazione richieste di connesione client
-				while (true) {
-					try {
-						Socket socket = serverSocket.accept();
-						pool.execute(
-								new WordleServerThread(socket, indirizzoMS, portaMulticast, utenti, parola, wordsFile));
-					} catch (SocketException e) {
-						// eccezione sollevata quando viene eseguito il TerminationHandler
-						break;
-					}
-				}
+			// classifica costruita dagli utenti ripristinati, poi aggiornata ad ogni
+			// vittoria
+			Classifica classifica = new Classifica(dimensioneClassifica, utenti);
+
+			// componenti condivisi dalle sessioni
+			ContestoServer contesto = new ContestoServer(condivisioni, utenti, parola, vocabolario, persistenza,
+					 credenziali, accessi, classifica, statisticheParole);
+
+			if ("nio".equalsIgnoreCase(modalitaServer)) {
+				avvioServerNIO(contesto);
+			} else {
+				avvioServerThread(contesto);
 			}
 
 		} catch (FileNotFoundException e) {
@@ -138,6 +213,176 @@ public class WordleServerMain {
 
 	}
 
+	/**
+	 * Metodo che avvia il server con un thread del pool per ogni client. Ritorna
+	 * alla chiusura della ServerSocket da parte del TerminationHandler.
+	 * 
+	 * @param contesto componenti condivisi dalle sessioni
+	 * 
+	 * @throws IOException se si verifica un errore di creazione della ServerSocket
+	 */
+	private static void avvioServerThread(ContestoServer contesto) throws IOException {
+		pool = creaExecutor();
+
+		// creazione ServerSocket con backlog limitato: oltre il limite il sistema
+		// operativo rifiuta o ritarda le connessioni
+		try (ServerSocket serverSocket = new ServerSocket(porta, backlogConnessioni)) {
+
+			// avvio thread cambio parola
+			ScheduledExecutorService schedulerParola = avvioSchedulerParola();
+
+			// Configurazione handler di terminazione, si occupa di salvare lo stato e
+			// di chiudure le risorse
+			Runtime.getRuntime().addShutdownHook(
+					new TerminationHandler(attesaMassima, pool, serverSocket, persistenza, schedulerParola,
+							contesto.getCondivisioni()));
+
+			System.out.println("\nCTRL+C per chiudere il server\n");
+
+			// Ciclo accettazione richieste di connesione client
+			while (true) {
+				try {
+					Socket socket = serverSocket.accept();
+
+					// oltre il limite di sessioni nessun thread viene creato
+					if (!contesto.getAccessi().entra()) {
+						rifiuta(socket);
+						continue;
+					}
+
+					try {
+						pool.execute(new WordleServerThread(socket, contesto));
+					} catch (RejectedExecutionException e) {
+						// pool in chiusura
+						contesto.getAccessi().esci();
+						rifiuta(socket);
+					}
+				} catch (SocketException e) {
+					// eccezione sollevata quando viene eseguito il TerminationHandler
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Metodo che risponde server occupato ad una connessione oltre il limite di
+	 * sessioni e la chiude. La risposta e' breve e la socket e' appena aperta,
+	 * quindi la scrittura non blocca il ciclo di accettazione.
+	 * 
+	 * @param socket connessione rifiutata
+	 */
+	private static void rifiuta(Socket socket) {
+		try (Socket s = socket; DataOutputStream out = new DataOutputStream(s.getOutputStream())) {
+			out.writeUTF(ProtocolloTesto.rispostaOccupato);
+		} catch (IOException e) {
+			// client gia' disconnesso, nulla da fare
+		}
+	}
+
+	/**
+	 * Metodo che avvia il server non bloccante: il reactor NIO gestisce tutte le
+	 * connessioni su un unico thread del pool.
+	 * 
+	 * @param contesto componenti condivisi dalle sessioni
+	 * 
+	 * @throws IOException se si verifica un errore di apertura del canale di
+	 *                     ascolto
+	 */
+	private static void avvioServerNIO(ContestoServer contesto) throws IOException {
+		pool = Executors.newSingleThreadExecutor();
+
+		// creazione reactor e canale di ascolto
+		WordleServerNIO serverNIO = new WordleServerNIO(porta, backlogConnessioni, contesto);
+
+		// avvio thread cambio parola
+		ScheduledExecutorService schedulerParola = avvioSchedulerParola();
+
+		// il TerminationHandler chiude il reactor e attende la fine del pool
+		Runtime.getRuntime().addShutdownHook(
+				new TerminationHandler(attesaMassima, pool, serverNIO, persistenza, schedulerParola,
+						contesto.getCondivisioni()));
+
+		System.out.println("\nCTRL+C per chiudere il server\n");
+
+		pool.execute(serverNIO);
+	}
+
+	/**
+	 * Metodo che crea l'executor delle sessioni in modalita' thread in base alla
+	 * configurazione. I thread virtuali sono recuperati per riflessione perche'
+	 * disponibili solo da Java 21, su JVM precedenti si usa il pool cached.
+	 * 
+	 * @return executor su cui eseguire i WordleServerThread
+	 */
+	private static ExecutorService creaExecutor() {
+		switch (executor) {
+		case "fixed":
+			return Executors.newFixedThreadPool(dimensionePool);
+
+		case "virtual":
+			try {
+				Method virtuali = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) virtuali.invoke(null);
+			} catch (ReflectiveOperationException e) {
+				System.err.println("Thread virtuali non disponibili, uso pool cached");
+				return Executors.newCachedThreadPool();
+			}
+
+		default:
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * Metodo che crea il registro degli utenti in base alla configurazione
+	 * 
+	 * @return registro in heap o fuori heap
+	 * 
+	 * @throws IOException se si verifica un errore di apertura dell'archivio su
+	 *                     file
+	 */
+	private static RegistroUtenti creaRegistro() throws IOException {
+		switch (archivioUtenti) {
+		case "offheap":
+			return new RegistroUtentiOffHeap();
+
+		case "mappato":
+			return new RegistroUtentiOffHeap(Paths.get(utentiFile));
+
+		default:
+			return new RegistroUtentiHeap();
+		}
+	}
+
+	/**
+	 * Metodo che avvia lo ScheduledExecutorService per il cambio parola ad ogni
+	 * scadenza
+	 * 
+	 * @return lo ScheduledExecutorService da terminare alla chiusura
+	 */
+	private static ScheduledExecutorService avvioSchedulerParola() {
+		// calcolo tempo rimasto scadenza parola
+		long tempoRimastoParola = parola.get().getScadenza() - System.currentTimeMillis();
+
+		// se la parola e' scaduta tempo rimasto e' 0
+		if (tempoRimastoParola < 0)
+			tempoRimastoParola = 0;
+
+		// creazione ScheduledExecutorService per cambio parola ogni scadenza
+		ScheduledExecutorService schedulerParola = Executors.newScheduledThreadPool(1);
+
+		// avvio thread cambio parola
+		schedulerParola.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				nuovaParola();
+			}
+		}, tempoRimastoParola, tempoRefreshParola * 60 * 1000, TimeUnit.MILLISECONDS);
+
+		return schedulerParola;
+	}
+
 	/**
 	 * Metodo per leggere il file di configurazione del server.
 	 * 
@@ -153,162 +398,72 @@ public class WordleServerMain {
 			portaMulticast = Integer.parseInt(prop.getProperty("portaMulticast"));
 			tempoRefreshParola = Integer.parseInt(prop.getProperty("tempoRefreshParola"));
 			attesaMassima = Integer.parseInt(prop.getProperty("attesaMassima"));
+			commitSincrono = Boolean.parseBoolean(prop.getProperty("commitSincrono", "true").trim());
+			shardStato = Integer.parseInt(prop.getProperty("shardStato", "8").trim());
+			formatoStato = prop.getProperty("formatoStato", "json").trim();
+			intervalloCompattazione = Integer.parseInt(prop.getProperty("intervalloCompattazione", "300").trim());
+			archivioUtenti = prop.getProperty("archivioUtenti", "heap").trim().toLowerCase();
+			backlogConnessioni = Integer.parseInt(prop.getProperty("backlogConnessioni", "128").trim());
+			sessioniMassime = Integer.parseInt(prop.getProperty("sessioniMassime", "1000").trim());
+			accessiAlSecondo = Integer.parseInt(prop.getProperty("accessiAlSecondo", "50").trim());
+			burstAccessi = Integer.parseInt(prop.getProperty("burstAccessi", "200").trim());
+			funzionePassword = prop.getProperty("funzionePassword", "sha256").trim().toLowerCase();
+			costoPassword = Integer.parseInt(prop.getProperty("costoPassword", "600000").trim());
+			threadCredenziali = Integer.parseInt(prop.getProperty("threadCredenziali", "2").trim());
+			codaCredenziali = Integer.parseInt(prop.getProperty("codaCredenziali", "256").trim());
+			dimensioneClassifica = Math.min(255,
+					Integer.parseInt(prop.getProperty("dimensioneClassifica", "10").trim()));
+			paroleConservate = Math.min(255, Integer.parseInt(prop.getProperty("paroleConservate", "30").trim()));
+			codaCondivisioni = Integer.parseInt(prop.getProperty("codaCondivisioni", "4096").trim());
+			modalitaServer = prop.getProperty("modalitaServer", "thread").trim();
+			executor = prop.getProperty("executor", "cached").trim().toLowerCase();
+			dimensionePool = Integer.parseInt(prop.getProperty("dimensionePool", "64").trim());
+			indiceVocabolario = Boolean.parseBoolean(prop.getProperty("indiceVocabolario", "true").trim());
 		}
 	}
 
 	/**
-	 * Metodo per ripristinare lo stato salvato dal file JSON. Se non esiste il file
-	 * viene creato vuoto e viene scelta una parola casuale.
-	 * 
-	 * @param parola riferimento condiviso alla parola
-	 * @param utenti struttura dati condivisa per la gestione degli utenti
-	 * 
+	 * Metodo per ripristinare lo stato salvato dal file JSON e dal write-ahead
+	 * log degli eventi successivi. Se non esiste una parola salvata viene scelta una
+	 * parola casuale.
 	 * 
 	 * @throws IOException se si verifica un errore durante la lettura
 	 */
-	private static void ripristinoStato(Parola parola, Map<String, DatiUtente> utenti) throws IOException {
-
-		try (JsonReader jsonReader = new JsonReader(new BufferedReader(new FileReader(jsonFile)))) {
-
-			// inizio JSON
-			jsonReader.beginObject();
-
-			while (jsonReader.hasNext()) {
-				// lettura etichetta
-				String name = jsonReader.nextName();
-
-				if ("parola".equalsIgnoreCase(name)) {
-					parola.setParola(jsonReader.nextString());
-				} else if ("id".equalsIgnoreCase(name)) {
-					parola.setId(jsonReader.nextInt());
-				} else if ("scadenza".equalsIgnoreCase(name)) {
-					parola.setScadenza(jsonReader.nextLong());
-				} else if ("utenti".equalsIgnoreCase(name)) {
-					// inizio array utenti
-					jsonReader.beginArray();
-
-					while (jsonReader.hasNext()) {
-						String username = "";
-						String password = "";
-						int partiteGiocate = 0;
-						int partiteVinte = 0;
-						int miglioreStreakVittorie = 0;
-						int streakVittorieInCorso = 0;
-						int[] distribuzioneTentativiImpiegati = new int[12];
-						long scadenzaParolaGiocata = 0;
-
-						// apertura oggetto utente
-						jsonReader.beginObject();
-
-						while (jsonReader.hasNext()) {
-							name = jsonReader.nextName();
-
-							if ("username".equalsIgnoreCase(name)) {
-								username = jsonReader.nextString();
-							} else if ("password".equalsIgnoreCase(name)) {
-								password = jsonReader.nextString();
-							} else if ("partiteGiocate".equalsIgnoreCase(name)) {
-								partiteGiocate = jsonReader.nextInt();
-							} else if ("partiteVinte".equalsIgnoreCase(name)) {
-								partiteVinte = jsonReader.nextInt();
-							} else if ("miglioreStreakVittorie".equalsIgnoreCase(name)) {
-								miglioreStreakVittorie = jsonReader.nextInt();
-							} else if ("streakVittorieAttuale".equalsIgnoreCase(name)) {
-								streakVittorieInCorso = jsonReader.nextInt();
-							} else if ("distribuzioneTentativi".equalsIgnoreCase(name)) {
-								// apertura array distribuzione
-								jsonReader.beginArray();
-
-								for (int i = 0; i < 12; i++) {
-									distribuzioneTentativiImpiegati[i] = jsonReader.nextInt();
-								}
-								// chiusura array distribuzione
-								jsonReader.endArray();
-							} else if ("scadenzaParolaGiocata".equalsIgnoreCase(name)) {
-								scadenzaParolaGiocata = jsonReader.nextLong();
-							} else {
-								System.out.println("Errore JSON ripristino stato");
-								System.exit(1);
-
-							}
-						}
-
-						// chiusura oggetto utente
-						jsonReader.endObject();
-
-						// creazione utente presente nel JSON
-						DatiUtente utente = new DatiUtente(username, password, partiteGiocate, partiteVinte,
-								miglioreStreakVittorie, streakVittorieInCorso, distribuzioneTentativiImpiegati,
-								scadenzaParolaGiocata);
-
-						// aggiunta alla struttura dati che rappresenta gli utenti
-						utenti.put(username, utente);
-					}
-
-					jsonReader.endArray();
-				} else {
-					System.out.println("Errore JSON ripristino stato");
-					System.exit(1);
-				}
-			}
+	private static void ripristinoStato() throws IOException {
 
-			// fine JSON
-			jsonReader.endObject();
-
-		} catch (FileNotFoundException e) {
-			// file JSON non presente, creato uno nuovo vuoto
-			File fileJson = new File(jsonFile);
-			fileJson.createNewFile();
-			System.out.println("File JSON creato");
+		persistenza.ripristina();
 
+		if (parola.get().getParola().isEmpty()) {
 			// non esiste parola attuale, scelta una nuova
-			nuovaParola(parola);
+			nuovaParola();
 		}
 
 	}
 
 	/**
-	 * Metodo che estrae dal vocabolario una parola casuale e imposta la sua
-	 * scadenza
-	 * 
-	 * @param parola riferimento condiviso alla parola
-	 * 
-	 * @throws IOException se il file vocabolario non viene trovato o si verificano
-	 *                     errori di lettura
+	 * Metodo che estrae dal vocabolario la parola successiva nell'ordine
+	 * pseudocasuale, senza ripetizioni fino all'esaurimento del vocabolario, e
+	 * la pubblica alle sessioni. La parola e' di norma gia' pronta nel
+	 * calendario, preparato dopo la pubblicazione per il cambio successivo.
 	 */
-	private static void nuovaParola(Parola parola) throws IOException {
-		// apertura vocabolario
-		try (RandomAccessFile vocabolario = new RandomAccessFile(wordsFile, "r")) {
-
-			int byteParola = 11;
-
-			String parolaRandom;
-			int rand;
-			while (true) {
-				// numero casuale scelta parola
-				rand = ThreadLocalRandom.current().nextInt(0, (int) (vocabolario.length() / byteParola));
-
-				// spostamento al byte random del file
-				vocabolario.seek(rand * byteParola);
-
-				// lettura parola
-				parolaRandom = vocabolario.readLine();
-
-				// si continua se la parola scelta non e' gia' stata usata
-				if (!parolePassate.contains(parolaRandom))
-					break;
+	private static void nuovaParola() {
+		Parola nuova;
+		try {
+			// parola successiva nella permutazione, ricavata dall'id della corrente
+			nuova = calendarioParole.prossima(parola.get(), System.currentTimeMillis());
+		} catch (IOException e) {
+			// nuova permutazione non salvata, la parola corrente resta valida
+			System.err.println("Errore salvataggio sequenza parole: " + e.getMessage());
+			return;
+		}
 
-				System.out.println("Altra parola");
-			}
+		persistenza.aggiornaParola(nuova);
 
-			parolePassate.add(parolaRandom);
-			parola.setParola(parolaRandom);
-			parola.setId(rand + 1);
-			parola.setScadenza(System.currentTimeMillis() + tempoRefreshParola * 60 * 1000);
+		System.out.println("Nuova parola: " + nuova.getParola() + "\tID: " + nuova.getId() + "\tScadenza: "
+				+ nuova.getScadenza() + "\n");
 
-			System.out.println("Nuova parola: " + parola.getParola() + "\tID: " + parola.getId() + "\tScadenza: "
-					+ parola.getScadenza() + "\n");
-		}
+		// lettura dal vocabolario delle prossime parole fuori dal cambio
+		calendarioParole.prepara(nuova);
 	}
 
 }
@@ -0,0 +1,189 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * Server non bloccante: un unico thread reactor gestisce tutte le connessioni
+ * con un Selector, ogni connessione ha la propria macchina a stati Sessione.
+ * Il framing e' lo stesso di readUTF/writeUTF, quindi i client esistenti
+ * funzionano senza modifiche.
+ */
+public class WordleServerNIO implements Runnable, Closeable, Executor {
+
+	// selector e canale di ascolto
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+
+	// componenti condivisi del server
+	private final ContestoServer contesto;
+
+	// compiti da eseguire sul thread reactor, inviati da altri thread
+	private final Queue<Runnable> compiti = new ConcurrentLinkedQueue<Runnable>();
+
+	// false quando viene richiesta la chiusura
+	private volatile boolean attivo;
+
+	/**
+	 * @param porta    porta di ascolto
+	 * @param backlog  connessioni in attesa di accettazione nel sistema operativo
+	 * @param contesto componenti condivisi del server
+	 *
+	 * @throws IOException errore di apertura del canale di ascolto
+	 */
+	public WordleServerNIO(int porta, int backlog, ContestoServer contesto) throws IOException {
+		this.contesto = contesto;
+		this.attivo = true;
+
+		// apertura canale di ascolto non bloccante
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(porta), backlog);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	@Override
+	public void run() {
+		try {
+			// ciclo di gestione eventi
+			while (attivo) {
+				selector.select();
+
+				// continuazioni delle sessioni che attendevano un calcolo
+				Runnable compito;
+				while ((compito = compiti.poll()) != null)
+					compito.run();
+
+				Iterator<SelectionKey> iteratore = selector.selectedKeys().iterator();
+				while (iteratore.hasNext()) {
+					SelectionKey chiave = iteratore.next();
+					iteratore.remove();
+
+					ConnessioneNIO connessione = (ConnessioneNIO) chiave.attachment();
+					try {
+						if (chiave.isAcceptable()) {
+							accetta();
+							continue;
+						}
+
+						boolean aperta = true;
+
+						if (chiave.isReadable())
+							aperta = connessione.leggi();
+
+						if (aperta && chiave.isValid() && chiave.isWritable())
+							aperta = connessione.scrivi();
+
+						if (!aperta)
+							connessione.chiudi();
+
+					} catch (IOException e) {
+						// errore sulla singola connessione, le altre continuano
+						System.err.println("\nErrore I/O: " + e.getMessage() + "\n");
+						if (connessione != null)
+							connessione.chiudi();
+					} catch (CancelledKeyException e) {
+						if (connessione != null)
+							connessione.chiudi();
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("\nErrore selector: " + e.getMessage());
+		} finally {
+			// chiusura di tutte le connessioni con logout degli utenti
+			for (SelectionKey chiave : selector.keys()) {
+				if (chiave.attachment() != null)
+					((ConnessioneNIO) chiave.attachment()).chiudi();
+			}
+
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Metodo che accetta le nuove connessioni e le registra nel selector. Oltre
+	 * il limite di sessioni la connessione riceve subito la risposta server
+	 * occupato e viene chiusa.
+	 *
+	 * @throws IOException errore di accettazione
+	 */
+	private void accetta() throws IOException {
+		SocketChannel canale;
+		while ((canale = serverChannel.accept()) != null) {
+			if (!contesto.getAccessi().entra()) {
+				rifiuta(canale);
+				continue;
+			}
+
+			canale.configureBlocking(false);
+			canale.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			SelectionKey chiave = canale.register(selector, SelectionKey.OP_READ);
+
+			ConnessioneNIO connessione = new ConnessioneNIO(canale, chiave, this, contesto.getAccessi());
+			connessione.setSessione(new Sessione(connessione, contesto));
+			chiave.attach(connessione);
+		}
+	}
+
+	/**
+	 * Metodo che risponde server occupato ad una connessione rifiutata e la
+	 * chiude. Il frame e' breve e il buffer di invio di una connessione appena
+	 * accettata e' vuoto, quindi una sola scrittura non bloccante basta.
+	 *
+	 * @param canale connessione rifiutata
+	 */
+	private void rifiuta(SocketChannel canale) {
+		try (SocketChannel c = canale) {
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			new DataOutputStream(frame).writeUTF(ProtocolloTesto.rispostaOccupato);
+
+			c.configureBlocking(false);
+			c.write(ByteBuffer.wrap(frame.toByteArray()));
+		} catch (IOException e) {
+			// client gia' disconnesso, nulla da fare
+		}
+	}
+
+	/**
+	 * Accoda un compito da eseguire sul thread reactor e lo risveglia
+	 *
+	 * @param compito compito da eseguire
+	 */
+	@Override
+	public void execute(Runnable compito) {
+		compiti.add(compito);
+		selector.wakeup();
+	}
+
+	/**
+	 * Richiede la terminazione del reactor, le connessioni vengono chiuse dal
+	 * thread reactor stesso
+	 */
+	@Override
+	public void close() {
+		attivo = false;
+		selector.wakeup();
+	}
+
+}
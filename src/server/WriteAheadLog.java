@@ -0,0 +1,603 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log binario degli eventi di gioco. Ogni record riceve un numero
+ * di sequenza (LSN) crescente da un contatore atomico, la modifica viene
+ * applicata allo stato in memoria e il record codificato dalla sessione senza
+ * lock; sotto lock si copiano solo i byte del record nel buffer in attesa.
+ * L'ordine del log segue quindi l'ordine delle modifiche di ogni utente (una
+ * sola sessione per utente, che applica e accoda in sequenza), mentre record
+ * di utenti diversi possono comparire con LSN non crescenti: il ripristino
+ * confronta l'LSN del record con quello dell'utente. Un record e' accodato
+ * sempre dopo l'applicazione della sua modifica.
+ *
+ * Un unico thread scrittore svuota i record accodati con una sola write e un
+ * solo fsync per gruppo (group commit) e poi completa il Commit di ogni record
+ * del gruppo: le sessioni possono attenderlo o proseguire con una
+ * continuazione.
+ *
+ * Il log e' diviso in segmenti numerati (prefisso.numero); alla compattazione
+ * si passa ad un nuovo segmento e quelli precedenti, ormai contenuti nel file
+ * di stato, vengono eliminati.
+ *
+ * Formato record: lunghezza (int), CRC32 (int) di tipo, LSN e dati, tipo
+ * (byte), LSN (long), dati. Un record incompleto o con CRC errato in coda ad un
+ * segmento (crash durante la scrittura) termina la lettura del segmento.
+ */
+public class WriteAheadLog {
+
+	// tipi di record
+	public static final byte registrazione = 1;
+	public static final byte partita = 2;
+	public static final byte vittoria = 3;
+	public static final byte parola = 4;
+
+	// byte di intestazione di ogni record: lunghezza e CRC32
+	private static final int intestazione = 8;
+
+	// dimensione massima di un record, oltre si considera il segmento corrotto
+	private static final int dimensioneMassima = 64 * 1024;
+
+	/**
+	 * Dati di un record da accodare al log
+	 */
+	public interface Dati {
+		void scrivi(DataOutputStream output) throws IOException;
+	}
+
+	/**
+	 * Record accodato al log: completato con l'LSN dal thread scrittore dopo
+	 * l'fsync del gruppo che lo contiene, con IOException se la scrittura del log
+	 * e' fallita
+	 */
+	public static final class Commit extends CompletableFuture<Long> {
+
+		private final long lsn;
+
+		private Commit(long lsn) {
+			this.lsn = lsn;
+		}
+
+		public long getLsn() {
+			return lsn;
+		}
+
+	}
+
+	/**
+	 * Record letto da un segmento durante il ripristino
+	 */
+	public interface Lettore {
+		void applica(long segmento, byte tipo, long lsn, DataInputStream dati) throws IOException;
+	}
+
+	// buffer dei record con accesso all'array interno per scriverlo sul canale
+	private static final class BufferRecord extends ByteArrayOutputStream {
+		final DataOutputStream output = new DataOutputStream(this);
+
+		BufferRecord() {
+			super(4096);
+		}
+
+		void copiaIn(BufferRecord destinazione) {
+			destinazione.write(buf, 0, count);
+		}
+
+		ByteBuffer porzione(int da, int a) {
+			return ByteBuffer.wrap(buf, da, a - da);
+		}
+
+		void sovrascriviInt(int posizione, int valore) {
+			buf[posizione] = (byte) (valore >>> 24);
+			buf[posizione + 1] = (byte) (valore >>> 16);
+			buf[posizione + 2] = (byte) (valore >>> 8);
+			buf[posizione + 3] = (byte) valore;
+		}
+
+		int crc(int da, int a) {
+			CRC32 crc = new CRC32();
+			crc.update(buf, da, a - da);
+			return (int) crc.getValue();
+		}
+	}
+
+	// prefisso dei file segmento
+	private final Path prefisso;
+
+	// lock e condizioni tra sessioni e thread scrittore
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition daScrivere = lock.newCondition();
+	private final Condition scritti = lock.newCondition();
+
+	// buffer di codifica di ogni thread, un record alla volta
+	private static final ThreadLocal<BufferRecord> codifica = ThreadLocal.withInitial(BufferRecord::new);
+
+	// record accodati non ancora scritti e buffer in scrittura con i relativi
+	// commit, scambiati ad ogni gruppo
+	private BufferRecord attesa = new BufferRecord();
+	private BufferRecord inScrittura = new BufferRecord();
+	private List<Commit> commitAttesa = new ArrayList<>();
+	private List<Commit> commitInScrittura = new ArrayList<>();
+
+	// prossimo LSN da assegnare, senza lock
+	private final AtomicLong prossimoLsn;
+
+	// istante (nanosecondi) del record piu' vecchio in attesa
+	private long primoAccodamento;
+
+	// posizione in attesa da cui inizia il nuovo segmento, -1 se nessuna
+	// rotazione richiesta
+	private int confineRotazione = -1;
+
+	// numero del segmento che riceve i nuovi record e del segmento aperto dal
+	// thread scrittore, i precedenti sono completi
+	private long segmentoAttuale;
+	private long segmentoAperto;
+
+	// errore di scrittura, le sessioni in attesa vengono sbloccate con eccezione
+	private boolean errore;
+
+	// chiusura richiesta
+	private boolean chiuso;
+
+	// metriche di durabilita', protette dal lock
+	private long recordScritti;
+	private long gruppiScritti;
+	private long sommaRitardi;
+	private long ritardoMassimo;
+
+	// canale e numero del segmento aperto, usati solo dal thread scrittore
+	private FileChannel canale;
+	private long segmentoScrittore;
+	private final Thread scrittore;
+
+	/**
+	 * @param prefisso    percorso dei segmenti senza numero
+	 * @param segmento    numero del primo segmento da scrivere, successivo a
+	 *                    quelli esistenti
+	 * @param prossimoLsn primo LSN da assegnare
+	 *
+	 * @throws IOException errore di apertura del segmento
+	 */
+	public WriteAheadLog(Path prefisso, long segmento, long prossimoLsn) throws IOException {
+		this.prefisso = prefisso;
+		this.segmentoAttuale = segmento;
+		this.segmentoAperto = segmento;
+		this.prossimoLsn = new AtomicLong(prossimoLsn);
+		this.segmentoScrittore = segmento;
+		this.canale = apriSegmento(segmento);
+
+		this.scrittore = new Thread(this::ciclo, "wal-scrittore");
+		scrittore.setDaemon(true);
+		scrittore.start();
+	}
+
+	/**
+	 * Metodo che assegna un LSN, applica la modifica allo stato in memoria e, se
+	 * applicata, accoda il record. Solo la copia del record codificato avviene
+	 * sotto lock.
+	 *
+	 * @param tipo    tipo del record
+	 * @param dati    scrittura dei dati del record
+	 * @param applica modifica dello stato con l'LSN assegnato, FALSE se non va
+	 *                eseguita (es. username gia' usato)
+	 *
+	 * @return commit del record, null se la modifica non e' stata applicata
+	 */
+	public Commit accoda(byte tipo, Dati dati, LongPredicate applica) {
+		long lsn = prossimoLsn.getAndIncrement();
+		if (!applica.test(lsn))
+			return null;
+
+		BufferRecord record = codifica.get();
+		DataOutputStream output = record.output;
+		record.reset();
+		try {
+			output.writeInt(0);
+			output.writeInt(0);
+			output.writeByte(tipo);
+			output.writeLong(lsn);
+			dati.scrivi(output);
+		} catch (IOException e) {
+			// scrittura in memoria, non si verifica
+			throw new IllegalStateException(e);
+		}
+
+		int dimensione = record.size();
+		record.sovrascriviInt(0, dimensione - intestazione);
+		record.sovrascriviInt(4, record.crc(intestazione, dimensione));
+
+		Commit commit = new Commit(lsn);
+		lock.lock();
+		try {
+			record.copiaIn(attesa);
+			commitAttesa.add(commit);
+
+			if (primoAccodamento == 0)
+				primoAccodamento = System.nanoTime();
+
+			daScrivere.signal();
+		} finally {
+			lock.unlock();
+		}
+
+		return commit;
+	}
+
+	/**
+	 * Metodo che fa iniziare un nuovo segmento ai record accodati da ora in poi.
+	 * Tutti i record dei segmenti precedenti sono gia' applicati allo stato in
+	 * memoria al ritorno del metodo; modifiche applicate ma accodate dopo il
+	 * ritorno finiscono nel nuovo segmento.
+	 *
+	 * @return numero del nuovo segmento
+	 */
+	public long ruota() {
+		lock.lock();
+		try {
+			// una sola rotazione in sospeso alla volta
+			while (confineRotazione >= 0 && !errore && !chiuso)
+				scritti.awaitUninterruptibly();
+
+			confineRotazione = attesa.size();
+			segmentoAttuale++;
+			daScrivere.signal();
+			return segmentoAttuale;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return ultimo LSN assegnato
+	 */
+	public long ultimoLsn() {
+		return prossimoLsn.get() - 1;
+	}
+
+	/**
+	 * Metodo che attende che il thread scrittore abbia scritto tutti i segmenti
+	 * precedenti a quello dato
+	 *
+	 * @param segmento segmento restituito da ruota
+	 *
+	 * @throws IOException se la scrittura del log e' fallita
+	 */
+	public void attendiSegmento(long segmento) throws IOException {
+		lock.lock();
+		try {
+			while (segmentoAperto < segmento && !errore)
+				scritti.awaitUninterruptibly();
+
+			if (segmentoAperto < segmento)
+				throw new IOException("Errore scrittura write-ahead log");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Metodo che elimina i segmenti precedenti a quello dato
+	 *
+	 * @param segmento primo segmento da conservare
+	 *
+	 * @throws IOException errore di eliminazione
+	 */
+	public void eliminaPrecedenti(long segmento) throws IOException {
+		for (long numero : segmenti(prefisso)) {
+			if (numero < segmento)
+				Files.deleteIfExists(percorso(prefisso, numero));
+		}
+	}
+
+	/**
+	 * Metodo che scrive i record in attesa e termina il thread scrittore
+	 */
+	public void chiudi() {
+		lock.lock();
+		try {
+			chiuso = true;
+			daScrivere.signal();
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			scrittore.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return riepilogo delle metriche di durabilita': record e gruppi scritti,
+	 *         ritardo medio e massimo tra accodamento e fsync
+	 */
+	public String metriche() {
+		lock.lock();
+		try {
+			long medio = gruppiScritti == 0 ? 0 : sommaRitardi / gruppiScritti;
+			return "WAL: " + recordScritti + " record in " + gruppiScritti + " fsync, ritardo durabilita' medio "
+					+ medio / 1000 + " us, massimo " + ritardoMassimo / 1000 + " us";
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return ritardo massimo (nanosecondi) tra accodamento di un record e fine
+	 *         del relativo fsync
+	 */
+	public long getRitardoMassimo() {
+		lock.lock();
+		try {
+			return ritardoMassimo;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return record in attesa di fsync
+	 */
+	public long getRecordInAttesa() {
+		lock.lock();
+		try {
+			return commitAttesa.size() + commitInScrittura.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ciclo del thread scrittore: attende record, scambia i buffer, scrive il
+	 * gruppo con un solo fsync per segmento e completa i commit del gruppo
+	 */
+	private void ciclo() {
+		while (true) {
+			BufferRecord gruppo;
+			List<Commit> commit;
+			int confine;
+			long inizio;
+
+			lock.lock();
+			try {
+				while (attesa.size() == 0 && confineRotazione < 0 && !chiuso)
+					daScrivere.awaitUninterruptibly();
+
+				if (attesa.size() == 0 && confineRotazione < 0)
+					break;
+
+				// scambio buffer, le sessioni continuano ad accodare durante l'fsync
+				gruppo = attesa;
+				attesa = inScrittura;
+				inScrittura = gruppo;
+
+				commit = commitAttesa;
+				commitAttesa = commitInScrittura;
+				commitInScrittura = commit;
+
+				confine = confineRotazione;
+				confineRotazione = -1;
+				inizio = primoAccodamento;
+				primoAccodamento = 0;
+			} finally {
+				lock.unlock();
+			}
+
+			// dopo un errore i record non vengono piu' scritti
+			boolean riuscito = !errore && scriviGruppo(gruppo, confine);
+			long fine = System.nanoTime();
+
+			// continuazioni delle sessioni eseguite senza lock
+			for (Commit record : commit) {
+				if (riuscito)
+					record.complete(record.getLsn());
+				else
+					record.completeExceptionally(new IOException("Errore scrittura write-ahead log"));
+			}
+
+			lock.lock();
+			try {
+				if (riuscito) {
+					segmentoAperto = segmentoScrittore;
+					recordScritti += commit.size();
+					if (inizio != 0) {
+						gruppiScritti++;
+						sommaRitardi += fine - inizio;
+						ritardoMassimo = Math.max(ritardoMassimo, fine - inizio);
+					}
+				} else {
+					errore = true;
+				}
+				gruppo.reset();
+				commit.clear();
+				scritti.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		try {
+			canale.close();
+		} catch (IOException e) {
+			System.err.println("Errore chiusura write-ahead log: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Metodo che scrive un gruppo di record, passando al segmento successivo al
+	 * confine di rotazione
+	 *
+	 * @param gruppo  record da scrivere
+	 * @param confine posizione di inizio del nuovo segmento, -1 se nessuna
+	 *
+	 * @return TRUE se la scrittura e l'fsync sono riusciti
+	 */
+	private boolean scriviGruppo(BufferRecord gruppo, int confine) {
+		try {
+			if (confine >= 0) {
+				scriviTutto(gruppo.porzione(0, confine));
+				canale.force(false);
+				canale.close();
+				segmentoScrittore++;
+				canale = apriSegmento(segmentoScrittore);
+				scriviTutto(gruppo.porzione(confine, gruppo.size()));
+			} else {
+				scriviTutto(gruppo.porzione(0, gruppo.size()));
+			}
+			canale.force(false);
+			return true;
+		} catch (IOException e) {
+			System.err.println("Errore scrittura write-ahead log: " + e.getMessage());
+			return false;
+		}
+	}
+
+	private void scriviTutto(ByteBuffer dati) throws IOException {
+		while (dati.hasRemaining())
+			canale.write(dati);
+	}
+
+	private FileChannel apriSegmento(long numero) throws IOException {
+		return FileChannel.open(percorso(prefisso, numero), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * @param prefisso percorso dei segmenti senza numero
+	 * @param numero   numero del segmento
+	 *
+	 * @return percorso del segmento
+	 */
+	private static Path percorso(Path prefisso, long numero) {
+		return prefisso.resolveSibling(prefisso.getFileName() + "." + numero);
+	}
+
+	/**
+	 * Metodo che elenca i segmenti esistenti
+	 *
+	 * @param prefisso percorso dei segmenti senza numero
+	 *
+	 * @return numeri dei segmenti in ordine crescente
+	 *
+	 * @throws IOException errore di lettura della cartella
+	 */
+	public static List<Long> segmenti(Path prefisso) throws IOException {
+		List<Long> numeri = new ArrayList<Long>();
+		Path cartella = prefisso.toAbsolutePath().getParent();
+		String nome = prefisso.getFileName() + ".";
+
+		try (DirectoryStream<Path> file = Files.newDirectoryStream(cartella, nome + "*")) {
+			for (Path segmento : file) {
+				try {
+					numeri.add(Long.parseLong(segmento.getFileName().toString().substring(nome.length())));
+				} catch (NumberFormatException e) {
+					// file non di segmento, es. temporanei
+				}
+			}
+		}
+
+		Collections.sort(numeri);
+		return numeri;
+	}
+
+	/**
+	 * Metodo che legge in ordine i record di tutti i segmenti esistenti
+	 *
+	 * @param prefisso percorso dei segmenti senza numero
+	 * @param lettore  applicazione di ogni record allo stato
+	 *
+	 * @return ultimo LSN letto, 0 se nessun record
+	 *
+	 * @throws IOException errore di lettura o record non applicabile
+	 */
+	public static long leggi(Path prefisso, Lettore lettore) throws IOException {
+		return leggi(prefisso, 0, Long.MAX_VALUE, lettore);
+	}
+
+	/**
+	 * Metodo che legge in ordine i record dei segmenti esistenti in un intervallo
+	 *
+	 * @param prefisso percorso dei segmenti senza numero
+	 * @param da       primo segmento da leggere
+	 * @param a        primo segmento da non leggere
+	 * @param lettore  applicazione di ogni record
+	 *
+	 * @return ultimo LSN letto, 0 se nessun record
+	 *
+	 * @throws IOException errore di lettura o record non applicabile
+	 */
+	public static long leggi(Path prefisso, long da, long a, Lettore lettore) throws IOException {
+		long ultimoLsn = 0;
+		byte[] record = new byte[256];
+		CRC32 crc = new CRC32();
+
+		for (long numero : segmenti(prefisso)) {
+			if (numero < da || numero >= a)
+				continue;
+
+			try (InputStream file = Files.newInputStream(percorso(prefisso, numero));
+					DataInputStream input = new DataInputStream(new BufferedInputStream(file, 64 * 1024))) {
+
+				while (true) {
+					int lunghezza;
+					int crcAtteso;
+					try {
+						lunghezza = input.readInt();
+						crcAtteso = input.readInt();
+						if (lunghezza < 9 || lunghezza > dimensioneMassima)
+							throw new EOFException();
+
+						if (record.length < lunghezza)
+							record = new byte[Math.max(lunghezza, record.length * 2)];
+						input.readFully(record, 0, lunghezza);
+					} catch (EOFException e) {
+						// fine segmento o record troncato da un crash
+						break;
+					}
+
+					crc.reset();
+					crc.update(record, 0, lunghezza);
+					if ((int) crc.getValue() != crcAtteso) {
+						System.err.println("Record corrotto nel segmento " + numero + ", lettura interrotta");
+						break;
+					}
+
+					DataInputStream dati = new DataInputStream(new ByteArrayInputStream(record, 0, lunghezza));
+					byte tipo = dati.readByte();
+					long lsn = dati.readLong();
+					lettore.applica(numero, tipo, lsn, dati);
+					ultimoLsn = Math.max(ultimoLsn, lsn);
+				}
+			}
+		}
+
+		return ultimoLsn;
+	}
+
+}